@@ -0,0 +1,111 @@
+/**
+ * IndexBenchmark.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.Mets;
+import com.anearalone.mets.MetsIndex;
+import com.anearalone.mets.MetsStreamReader;
+import com.anearalone.mets.MetsValidator;
+
+/**
+ * Building a {@link MetsIndex}, looking IDs up in it (a file, and what refers to it), and checking
+ * a whole document's references with {@link MetsValidator}.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+    @Param({ "DMD", "FILES", "NESTED" })
+    public Shape shape;
+
+    @Param({ "1000000" })
+    public int files;
+
+    private Mets mets;
+    private MetsIndex index;
+    private MetsValidator validator;
+    private String[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path document = shape.create(files);
+        try {
+            InputStream in = Files.newInputStream(document);
+            try {
+                mets = new MetsStreamReader().read(in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            Files.delete(document);
+        }
+        index = new MetsIndex(mets);
+        validator = new MetsValidator();
+        // file IDs, in an order the caches won't predict
+        List<String> fileIDs = new ArrayList<String>();
+        for (String id : index.getIDs()) {
+            if (index.get(id) instanceof File)
+                fileIDs.add(id);
+        }
+        Collections.shuffle(fileIDs, new Random(42));
+        ids = fileIDs.toArray(new String[fileIDs.size()]);
+    }
+
+    @Benchmark
+    public MetsIndex build() {
+        return new MetsIndex(mets);
+    }
+
+    @Benchmark
+    public int lookup() {
+        String id = ids[next++ % ids.length];
+        return System.identityHashCode(index.getFile(id)) + index.getReferences(id).size();
+    }
+
+    @Benchmark
+    public int validate() {
+        return validator.validate(mets).size();
+    }
+}
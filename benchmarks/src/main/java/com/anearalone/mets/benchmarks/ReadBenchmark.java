@@ -0,0 +1,110 @@
+/**
+ * ReadBenchmark.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.anearalone.mets.Mets;
+import com.anearalone.mets.MetsReader;
+import com.anearalone.mets.MetsStreamReader;
+
+/**
+ * Parse throughput: documents/s as the score, and bytes/s as the <code>bytes</code> counter. The
+ * document is read from a file, which the OS will have cached, so this is the parser rather than
+ * the disk. Run with <code>-prof gc</code> for the allocation per document
+ * (<code>gc.alloc.rate.norm</code>).
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ReadBenchmark {
+    @Param({ "DMD", "FILES", "NESTED" })
+    public Shape shape;
+
+    @Param({ "1000000" })
+    public int files;
+
+    private Path document;
+    private long length;
+    private MetsReader reader;
+    private MetsStreamReader streamReader;
+
+    @Setup
+    public void setUp() throws Exception {
+        document = shape.create(files);
+        length = Files.size(document);
+        reader = new MetsReader();
+        streamReader = new MetsStreamReader();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(document);
+    }
+
+    @Benchmark
+    public Mets dom(Bytes bytes) throws Exception {
+        InputStream in = Files.newInputStream(document);
+        try {
+            return reader.read(in);
+        } finally {
+            in.close();
+            bytes.bytes += length;
+        }
+    }
+
+    @Benchmark
+    public Mets stream(Bytes bytes) throws Exception {
+        InputStream in = Files.newInputStream(document);
+        try {
+            return streamReader.read(in);
+        } finally {
+            in.close();
+            bytes.bytes += length;
+        }
+    }
+
+    @Benchmark
+    public Mets mapped(Bytes bytes) throws Exception {
+        try {
+            return streamReader.readMapped(document.toFile());
+        } finally {
+            bytes.bytes += length;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * RegressionGate.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares two JMH runs (written with <code>-rf csv</code>), and fails if any score has got worse
+ * by more than a given percentage, or if a benchmark in the baseline is missing from the current
+ * run (e.g. because it failed). Higher is better for rates (units ending in <code>/s</code>), and
+ * lower is better for everything per operation (times, and <code>gc.alloc.rate.norm</code> in
+ * <code>B/op</code>). The other GC figures depend on the rate, so they aren't compared.
+ * <p>
+ * A score only counts as worse if the change is also bigger than the two runs' score errors added
+ * together, so that noise in short runs isn't reported as a regression.
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.anearalone.mets.benchmarks.RegressionGate baseline.csv current.csv 10
+ * </pre>
+ *
+ * Exits with 0 if nothing is worse than that, 1 if something is (or is missing), and 2 if the files
+ * can't be read.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class RegressionGate {
+
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: RegressionGate baseline.csv current.csv [maxPercentWorse (default 5)]");
+            System.exit(2);
+        }
+        double tolerance = args.length == 3 ? Double.parseDouble(args[2]) : 5;
+        Map<String, Score> baseline;
+        Map<String, Score> current;
+        try {
+            baseline = read(args[0]);
+            current = read(args[1]);
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(2);
+            return;
+        }
+        int worse = 0;
+        int missing = 0;
+        for (Map.Entry<String, Score> e : current.entrySet()) {
+            Score before = baseline.get(e.getKey());
+            Score after = e.getValue();
+            if (before == null || before.value == 0) {
+                System.out.printf("  new   %s: %.3f %s%n", e.getKey(), after.value, after.unit);
+                continue;
+            }
+            double change = (after.value - before.value) / before.value * 100;
+            double worsening = after.higherIsBetter() ? -change : change;
+            double difference = Math.abs(after.value - before.value);
+            boolean failed = worsening > tolerance && difference > before.error + after.error;
+            if (failed)
+                worse++;
+            System.out.printf("%s %+6.1f%% %s: %.3f +/- %.3f -> %.3f +/- %.3f %s%n", failed ? "WORSE" : "  ok ",
+                    change, e.getKey(), before.value, before.error, after.value, after.error, after.unit);
+        }
+        for (Map.Entry<String, Score> e : baseline.entrySet()) {
+            if (!current.containsKey(e.getKey())) {
+                missing++;
+                System.out.printf("MISSING %s: %.3f %s%n", e.getKey(), e.getValue().value, e.getValue().unit);
+            }
+        }
+        System.out.println(worse == 0 ? "No regressions over " + tolerance + "%" : worse + " regressions over "
+                + tolerance + "%");
+        if (missing > 0)
+            System.out.println(missing + " benchmarks missing from " + args[1]);
+        System.exit(worse == 0 && missing == 0 ? 0 : 1);
+    }
+
+    /*
+     * Benchmark (with its parameters) -> score
+     */
+    private static Map<String, Score> read(String file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<String, Score>();
+        BufferedReader in = Files.newBufferedReader(Paths.get(file), Charset.forName("UTF-8"));
+        try {
+            List<String> header = split(in.readLine());
+            int benchmark = header.indexOf("Benchmark");
+            int score = header.indexOf("Score");
+            int error = -1;
+            for (int i = 0; i < header.size(); i++) {
+                // "Score Error (99.9%)"
+                if (header.get(i).startsWith("Score Error"))
+                    error = i;
+            }
+            int unit = header.indexOf("Unit");
+            if (benchmark < 0 || score < 0 || unit < 0)
+                throw new IOException(file + " isn't a JMH CSV file");
+            String line;
+            while ((line = in.readLine()) != null) {
+                List<String> fields = split(line);
+                if (fields.size() != header.size())
+                    continue;
+                String name = fields.get(benchmark);
+                if (name.contains(":gc.") && !name.endsWith(":gc.alloc.rate.norm"))
+                    continue;
+                StringBuilder key = new StringBuilder(name);
+                for (int i = 0; i < header.size(); i++) {
+                    if (header.get(i).startsWith("Param: "))
+                        key.append(' ').append(header.get(i).substring(7)).append('=').append(fields.get(i));
+                }
+                try {
+                    double value = Double.parseDouble(fields.get(score));
+                    // NaN, e.g. a counter that was never incremented
+                    if (Double.isNaN(value))
+                        continue;
+                    // NaN with a single iteration, or if the column isn't there
+                    double bound = error < 0 ? 0 : Double.parseDouble(fields.get(error));
+                    scores.put(key.toString(), new Score(value, Double.isNaN(bound) ? 0 : bound, fields.get(unit)));
+                } catch (NumberFormatException e) {
+                    // not a number at all
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return scores;
+    }
+
+    /*
+     * A line of CSV, with quoted fields
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<String>();
+        if (line == null)
+            return fields;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    field.append(line.charAt(++i));
+                else if (c == '"')
+                    quoted = false;
+                else
+                    field.append(c);
+            } else if (c == '"')
+                quoted = true;
+            else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else
+                field.append(c);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static class Score {
+        final double value;
+        // half the width of the confidence interval
+        final double error;
+        final String unit;
+
+        Score(double value, double error, String unit) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+
+        boolean higherIsBetter() {
+            return unit.endsWith("/s") || unit.endsWith("/sec") || unit.endsWith("/ms") || unit.endsWith("/us")
+                    || unit.endsWith("/min");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * RoundTripBenchmark.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.anearalone.mets.Mets;
+import com.anearalone.mets.MetsReader;
+import com.anearalone.mets.MetsStreamReader;
+import com.anearalone.mets.MetsStreamWriter;
+import com.anearalone.mets.MetsWriter;
+import com.anearalone.mets.benchmarks.WriteBenchmark.CountingOutputStream;
+
+/**
+ * The time to read a document from a file and write it back out, as an application that edits
+ * documents would.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+    @Param({ "DMD", "FILES", "NESTED" })
+    public Shape shape;
+
+    @Param({ "1000000" })
+    public int files;
+
+    private Path document;
+    private MetsReader reader;
+    private MetsWriter writer;
+    private MetsStreamReader streamReader;
+    private MetsStreamWriter streamWriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        document = shape.create(files);
+        reader = new MetsReader();
+        writer = new MetsWriter();
+        streamReader = new MetsStreamReader();
+        streamWriter = new MetsStreamWriter();
+        streamWriter.setVerbatimXmlData(true);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(document);
+    }
+
+    @Benchmark
+    public long dom() throws Exception {
+        Mets mets;
+        InputStream in = Files.newInputStream(document);
+        try {
+            mets = reader.read(in);
+        } finally {
+            in.close();
+        }
+        CountingOutputStream out = new CountingOutputStream();
+        writer.writeToOutputStream(mets, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long stream() throws Exception {
+        Mets mets = streamReader.readMapped(document.toFile());
+        CountingOutputStream out = new CountingOutputStream();
+        streamWriter.writeToOutputStream(mets, out);
+        return out.count;
+    }
+}
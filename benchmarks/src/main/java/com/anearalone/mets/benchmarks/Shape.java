@@ -0,0 +1,75 @@
+/**
+ * Shape.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.anearalone.mets.MetsGenerator;
+
+/**
+ * The kinds of document the benchmarks are run on, generated with {@link MetsGenerator} (which
+ * streams them, so that even the biggest doesn't have to be built in memory first).
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public enum Shape {
+    /** A small document that is mostly descriptive metadata: many dmdSecs of MODS */
+    DMD,
+    /** A fileSec with a great many files (see the files parameter), and a div for each */
+    FILES,
+    /** A structMap nested hundreds of divs deep */
+    NESTED;
+
+    /**
+     * @param files
+     *            the number of files, for {@link #FILES}
+     * @return a temporary file, which the caller should delete
+     * @throws IOException
+     * @throws XMLStreamException
+     */
+    public Path create(int files) throws IOException, XMLStreamException {
+        MetsGenerator generator = new MetsGenerator();
+        generator.setFileGrpUses("master");
+        generator.setAmdSecs(0);
+        switch (this) {
+        case DMD:
+            generator.setPages(10);
+            generator.setDmdSecs(200);
+            generator.setIdrefDensity(1);
+            generator.setStructMapDepth(1);
+            break;
+        case FILES:
+            generator.setPages(files);
+            generator.setDmdSecs(0);
+            generator.setStructMapDepth(1);
+            break;
+        case NESTED:
+            generator.setPages(500);
+            generator.setDmdSecs(0);
+            generator.setStructMapDepth(500);
+            generator.setStructMapFanOut(1);
+            break;
+        }
+        Path path = Files.createTempFile("mets-" + name().toLowerCase() + "-", ".xml");
+        generator.generate(0, path);
+        return path;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * WriteBenchmark.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets.benchmarks;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.anearalone.mets.Mets;
+import com.anearalone.mets.MetsStreamReader;
+import com.anearalone.mets.MetsStreamWriter;
+import com.anearalone.mets.MetsWriter;
+
+/**
+ * Write throughput: documents/s as the score, and bytes/s of XML as the <code>bytes</code>
+ * counter. The output is counted and thrown away, so this is the writer rather than the disk.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+    @Param({ "DMD", "FILES", "NESTED" })
+    public Shape shape;
+
+    @Param({ "1000000" })
+    public int files;
+
+    private Mets mets;
+    private MetsWriter writer;
+    private MetsStreamWriter streamWriter;
+    private MetsStreamWriter compactWriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        Path document = shape.create(files);
+        try {
+            InputStream in = Files.newInputStream(document);
+            try {
+                mets = new MetsStreamReader().read(in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            Files.delete(document);
+        }
+        writer = new MetsWriter();
+        streamWriter = new MetsStreamWriter();
+        compactWriter = new MetsStreamWriter();
+        compactWriter.setIndent(false);
+    }
+
+    @Benchmark
+    public long dom(Bytes bytes) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        writer.writeToOutputStream(mets, out);
+        bytes.bytes += out.count;
+        return out.count;
+    }
+
+    @Benchmark
+    public long stream(Bytes bytes) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        streamWriter.writeToOutputStream(mets, out);
+        bytes.bytes += out.count;
+        return out.count;
+    }
+
+    @Benchmark
+    public long streamCompact(Bytes bytes) throws Exception {
+        CountingOutputStream out = new CountingOutputStream();
+        compactWriter.writeToOutputStream(mets, out);
+        bytes.bytes += out.count;
+        return out.count;
+    }
+
+    /*
+     * Somewhere to write to that costs nothing
+     */
+    static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
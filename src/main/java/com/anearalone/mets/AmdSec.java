@@ -18,6 +18,10 @@ package com.anearalone.mets;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -198,6 +202,26 @@ public class AmdSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+        marshalMdSecs(w, "techMD", this.techMD);
+        marshalMdSecs(w, "rightsMD", this.rightsMD);
+        marshalMdSecs(w, "sourceMD", this.sourceMD);
+        marshalMdSecs(w, "digiprovMD", this.digiprovMD);
+    }
+
+    private static void marshalMdSecs(XMLStreamWriter w, String localName, List<MdSec> mdSecs)
+            throws XMLStreamException {
+        if (mdSecs != null) {
+            for (MdSec mds : mdSecs) {
+                w.writeStartElement("mets", localName, NS.METS.ns());
+                mds.marshal(w);
+                w.writeEndElement();
+            }
+        }
+    }
+
     @Override
     public void unmarshal(Element e) {
         super.unmarshal(e);
@@ -217,4 +241,19 @@ public class AmdSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        String localName = r.getLocalName();
+        MdSec md = new MdSec();
+        md.unmarshal(r);
+        if (localName.equals("techMD"))
+            this.getTechMD().add(md);
+        if (localName.equals("rightsMD"))
+            this.getRightsMD().add(md);
+        if (localName.equals("sourceMD"))
+            this.getSourceMD().add(md);
+        if (localName.equals("digiprovMD"))
+            this.getDigiprovMD().add(md);
+    }
+
 }
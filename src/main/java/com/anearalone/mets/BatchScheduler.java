@@ -0,0 +1,422 @@
+/**
+ * BatchScheduler.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs a {@link Task} over many files (reading or writing METS documents, say), biggest first, so
+ * that a few big files started late don't hold up the end of the batch. Every file is sized before
+ * anything starts: by its length, unless a {@link Sizer} says otherwise.
+ * <p>
+ * Files at least {@link #getLargeThreshold()} long are large. Some of the threads are dedicated to
+ * them and start on the largest straight away; the others work through the small files, biggest
+ * first, so that the small files aren't stuck behind the large ones either. A thread that runs out
+ * of its own kind of file helps with the other kind, so none sit idle while there is work left.
+ * <p>
+ * Each {@link Job} records how long it waited before it started, and how long it took, so that a
+ * batch can be tuned. Results are kept until the batch is done, so a task that makes anything big
+ * (a whole {@link Mets}, for instance) should deal with it itself and return something small.
+ * <p>
+ * Set the options before calling {@link #run(Collection, Task)}; once configured, a given instance
+ * may be reused, and may be shared between threads.
+ *
+ * @see MetsBatchReader
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class BatchScheduler {
+
+    /**
+     * Sizes files by their length.
+     */
+    public static final Sizer FILE_LENGTH = new Sizer() {
+        @Override
+        public long size(Path path) throws IOException {
+            return Files.size(path);
+        }
+    };
+
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile int largeWorkers = Math.max(1, parallelism / 4);
+    private volatile long largeThreshold = 32L * 1024 * 1024;
+    private volatile Sizer sizer = FILE_LENGTH;
+
+    /**
+     * Runs <code>task</code> on every one of <code>paths</code>, and waits until they're all
+     * done. A file that can't be sized, or that the task fails on, doesn't stop the others: its
+     * {@link Job} has the exception.
+     *
+     * @param paths
+     * @param task
+     * @return a {@link Job} for each of <code>paths</code>, in the same order, and their times
+     * @throws InterruptedException
+     *             if the calling thread is interrupted; the jobs that are running are interrupted
+     *             too, and the rest aren't started
+     */
+    public <T> Report<T> run(Collection<Path> paths, final Task<T> task) throws InterruptedException {
+        Sizer sizer = this.sizer;
+        long largeThreshold = this.largeThreshold;
+        int threads = Math.max(1, Math.min(this.parallelism, paths.size()));
+        int largeWorkers = Math.min(this.largeWorkers, threads);
+
+        List<Job<T>> jobs = new ArrayList<Job<T>>(paths.size());
+        List<Job<T>> large = new ArrayList<Job<T>>();
+        List<Job<T>> small = new ArrayList<Job<T>>();
+        for (Path path : paths) {
+            Job<T> job = new Job<T>(path);
+            jobs.add(job);
+            try {
+                job.size = sizer.size(path);
+            } catch (IOException e) {
+                job.failure = e;
+                continue;
+            }
+            job.large = job.size >= largeThreshold;
+            (job.large ? large : small).add(job);
+        }
+        Comparator<Job<T>> biggestFirst = new Comparator<Job<T>>() {
+            @Override
+            public int compare(Job<T> a, Job<T> b) {
+                return a.size < b.size ? 1 : a.size > b.size ? -1 : 0;
+            }
+        };
+        Collections.sort(large, biggestFirst);
+        Collections.sort(small, biggestFirst);
+        final ConcurrentLinkedQueue<Job<T>> largeQueue = new ConcurrentLinkedQueue<Job<T>>(large);
+        final ConcurrentLinkedQueue<Job<T>> smallQueue = new ConcurrentLinkedQueue<Job<T>>(small);
+
+        final long start = System.nanoTime();
+        List<Callable<Void>> workers = new ArrayList<Callable<Void>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final boolean forLarge = i < largeWorkers;
+            workers.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Job<T> job;
+                    while ((job = forLarge ? poll(largeQueue, smallQueue) : poll(smallQueue, largeQueue)) != null) {
+                        if (Thread.currentThread().isInterrupted())
+                            break;
+                        job.run(task, start);
+                    }
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "batch");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            for (Future<Void> f : executor.invokeAll(workers))
+                f.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return new Report<T>(jobs, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the number of jobs run at once
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *            the number of jobs to run at once; the number of processors by default
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the number of threads that take large files first
+     */
+    public int getLargeWorkers() {
+        return largeWorkers;
+    }
+
+    /**
+     * @param largeWorkers
+     *            the number of threads (of {@link #getParallelism()}) that take large files first;
+     *            a quarter of the processors by default, and at least one
+     */
+    public void setLargeWorkers(int largeWorkers) {
+        if (largeWorkers < 0)
+            throw new IllegalArgumentException("largeWorkers must not be negative");
+        this.largeWorkers = largeWorkers;
+    }
+
+    /**
+     * @return the size from which files are large
+     */
+    public long getLargeThreshold() {
+        return largeThreshold;
+    }
+
+    /**
+     * @param largeThreshold
+     *            the size from which files are large; 32MB by default
+     */
+    public void setLargeThreshold(long largeThreshold) {
+        if (largeThreshold < 0)
+            throw new IllegalArgumentException("largeThreshold must not be negative");
+        this.largeThreshold = largeThreshold;
+    }
+
+    /**
+     * @param sizer
+     *            how files are sized; {@link #FILE_LENGTH} by default
+     */
+    public void setSizer(Sizer sizer) {
+        this.sizer = sizer;
+    }
+
+    private static <T> Job<T> poll(ConcurrentLinkedQueue<Job<T>> first, ConcurrentLinkedQueue<Job<T>> then) {
+        Job<T> job = first.poll();
+        return job != null ? job : then.poll();
+    }
+
+    /**
+     * What is done to each file.
+     */
+    public interface Task<T> {
+
+        /**
+         * @param path
+         * @return anything, or null
+         * @throws Exception
+         *             which is recorded in the {@link Job}, and doesn't stop the batch
+         */
+        public T run(Path path) throws Exception;
+    }
+
+    /**
+     * Estimates the work in a file, e.g. from a header, for files whose length isn't a good guide
+     * (compressed ones, say). Only the order matters, and whether it is over
+     * {@link BatchScheduler#getLargeThreshold()}.
+     */
+    public interface Sizer {
+
+        /**
+         * @param path
+         * @return
+         * @throws IOException
+         */
+        public long size(Path path) throws IOException;
+    }
+
+    /**
+     * A file, and how its task went.
+     */
+    public static class Job<T> {
+        private final Path path;
+        private long size = -1;
+        private boolean large;
+        private T result;
+        private Exception failure;
+        private long queueNanos = -1;
+        private long processingNanos = -1;
+
+        Job(Path path) {
+            this.path = path;
+        }
+
+        void run(Task<T> task, long batchStart) {
+            long start = System.nanoTime();
+            queueNanos = start - batchStart;
+            try {
+                result = task.run(path);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                processingNanos = System.nanoTime() - start;
+            }
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return the size the file was scheduled by, or -1 if it couldn't be sized
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return whether the file was over the large threshold
+         */
+        public boolean isLarge() {
+            return large;
+        }
+
+        /**
+         * @return what the task returned
+         */
+        public T getResult() {
+            return result;
+        }
+
+        /**
+         * @return what the task (or the {@link Sizer}) threw, or null
+         */
+        public Exception getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return whether the task was run
+         */
+        public boolean isStarted() {
+            return queueNanos >= 0;
+        }
+
+        /**
+         * @return how long the job waited for a thread after the batch started, or -1 if it
+         *         wasn't started
+         */
+        public long getQueueNanos() {
+            return queueNanos;
+        }
+
+        /**
+         * @return how long the task took, or -1 if it wasn't started
+         */
+        public long getProcessingNanos() {
+            return processingNanos;
+        }
+
+        @Override
+        public String toString() {
+            String times = isStarted() ? "queued " + String.format("%.3fs", queueNanos / 1e9) + ", took "
+                    + String.format("%.3fs", processingNanos / 1e9) : "not started";
+            return path + " (" + size + " bytes): " + times + (failure == null ? "" : ", failed: " + failure);
+        }
+    }
+
+    /**
+     * The jobs of a batch.
+     */
+    public static class Report<T> {
+        private final List<Job<T>> jobs;
+        private final long elapsedNanos;
+
+        Report(List<Job<T>> jobs, long elapsedNanos) {
+            this.jobs = Collections.unmodifiableList(jobs);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return every job, in the order of the paths
+         */
+        public List<Job<T>> getJobs() {
+            return jobs;
+        }
+
+        /**
+         * @return the jobs that failed
+         */
+        public List<Job<T>> getFailures() {
+            List<Job<T>> failures = new ArrayList<Job<T>>();
+            for (Job<T> job : jobs) {
+                if (job.getFailure() != null)
+                    failures.add(job);
+            }
+            return failures;
+        }
+
+        /**
+         * @return the time from the first job starting to the last one finishing
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the total time jobs spent running
+         */
+        public long getProcessingNanos() {
+            long total = 0;
+            for (Job<T> job : jobs)
+                total += Math.max(0, job.getProcessingNanos());
+            return total;
+        }
+
+        /**
+         * @return the total time jobs spent waiting to start
+         */
+        public long getQueueNanos() {
+            long total = 0;
+            for (Job<T> job : jobs)
+                total += Math.max(0, job.getQueueNanos());
+            return total;
+        }
+
+        /**
+         * @return the longest any job waited to start
+         */
+        public long getMaxQueueNanos() {
+            long max = 0;
+            for (Job<T> job : jobs)
+                max = Math.max(max, job.getQueueNanos());
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            int large = 0;
+            for (Job<T> job : jobs) {
+                if (job.isLarge())
+                    large++;
+            }
+            return jobs.size() + " jobs (" + large + " large), " + getFailures().size() + " failed, in "
+                    + String.format("%.3fs", elapsedNanos / 1e9) + "; "
+                    + String.format("%.3fs", getProcessingNanos() / 1e9) + " processing, "
+                    + String.format("%.3fs", getQueueNanos() / 1e9) + " queued (at most "
+                    + String.format("%.3fs", getMaxQueueNanos() / 1e9) + ")";
+        }
+    }
+}
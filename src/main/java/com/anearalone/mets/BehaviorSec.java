@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -310,6 +312,13 @@ public class BehaviorSec extends IDElement implements ElementInterface {
                 // TODO
             }
 
+            @Override
+            public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                super.marshal(w);
+                if (this.label != null)
+                    w.writeAttribute("LABEL", this.label);
+            }
+
             @Override
             public void unmarshal(Element e) {
                 super.unmarshal(e);
@@ -0,0 +1,422 @@
+/**
+ * BinData.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.ByteArrayInputStream;
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.w3c.dom.Element;
+
+import com.anearalone.utils.Base64DecodingWriter;
+import com.anearalone.utils.Base64EncodingReader;
+import com.anearalone.utils.FormattingXMLStreamWriter;
+import com.anearalone.utils.StAXHelp;
+
+/**
+ * The content of a <code>mets:binData</code>, as bytes. The bytes are never held in memory: they
+ * are Base64 encoded as they are written, from a file or a stream, and decoded as they are read,
+ * into a temporary file.
+ * <p>
+ * The temporary file is deleted by {@link #delete()}, which is best called as soon as the bytes
+ * aren't needed. Otherwise it is deleted once the BinData is no longer referenced (when another
+ * binData is next read), or when the JVM exits. To keep it, use {@link #moveTo(Path)}; the file
+ * must not be used, e.g. via {@link #getPath()}, after the BinData has been let go. Where the temporary files go can be set with
+ * {@link MetsStreamReader#setBinDataDirectory(Path)}; otherwise they go in
+ * <code>java.io.tmpdir</code>.
+ * <p>
+ * Instances made from a file or an array may be written any number of times, and may be shared
+ * between threads. Those made from a stream or channel can only be written (or opened) once.
+ *
+ * @see MdSec.MdWrap#getBinData()
+ * @see FileSec.FileGrp.File.FContent#getBinData()
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public final class BinData {
+    // a property of the XMLStreamReader (see TempDirectoryReader)
+    static final String TEMP_DIRECTORY = "com.anearalone.mets.binDataDirectory";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private Path path;
+    private boolean temporary;
+    private final byte[] bytes;
+    private ReadableByteChannel channel;
+    private final long length;
+    // null unless temporary
+    private TempFile tempFile;
+
+    private BinData(Path path, boolean temporary, byte[] bytes, ReadableByteChannel channel, long length) {
+        this.path = path;
+        this.temporary = temporary;
+        if (temporary)
+            this.tempFile = TempFile.track(this, path);
+        this.bytes = bytes;
+        this.channel = channel;
+        this.length = length;
+    }
+
+    /**
+     * @param file
+     * @return the contents of <code>file</code>, read whenever they are written
+     * @throws IOException
+     *             if the size of <code>file</code> can't be read
+     */
+    public static BinData of(Path file) throws IOException {
+        return new BinData(file, false, null, null, Files.size(file));
+    }
+
+    /**
+     * @param in
+     * @return the rest of <code>in</code>, which is read (and closed) when it is first written
+     */
+    public static BinData of(InputStream in) {
+        return of(Channels.newChannel(in));
+    }
+
+    /**
+     * @param in
+     * @return the rest of <code>in</code>, which is read (and closed) when it is first written
+     */
+    public static BinData of(ReadableByteChannel in) {
+        return new BinData(null, false, null, in, -1);
+    }
+
+    /**
+     * @param bytes
+     *            not copied
+     * @return
+     */
+    public static BinData of(byte[] bytes) {
+        return new BinData(null, false, bytes, null, bytes.length);
+    }
+
+    /**
+     * @return a channel on the bytes, which the caller must close
+     * @throws IOException
+     * @throws IllegalStateException
+     *             if this was made from a stream or channel that has already been opened
+     */
+    public synchronized ReadableByteChannel openChannel() throws IOException {
+        if (path != null)
+            return FileChannel.open(path, StandardOpenOption.READ);
+        if (bytes != null)
+            return Channels.newChannel(new ByteArrayInputStream(bytes));
+        if (channel == null)
+            throw new IllegalStateException("binData from a stream can only be read once, and not at all once deleted");
+        ReadableByteChannel in = channel;
+        channel = null;
+        return in;
+    }
+
+    /**
+     * @return a stream of the bytes, which the caller must close
+     * @throws IOException
+     * @throws IllegalStateException
+     *             if this was made from a stream or channel that has already been opened
+     */
+    public InputStream openStream() throws IOException {
+        return Channels.newInputStream(openChannel());
+    }
+
+    /**
+     * @return the file holding the bytes, or null if they aren't in a file
+     */
+    public synchronized Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the number of bytes, or -1 if they are from a stream
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return whether the bytes are in a temporary file, i.e. were read from a document
+     */
+    public synchronized boolean isTemporary() {
+        return temporary && path != null;
+    }
+
+    /**
+     * Moves the temporary file holding bytes that were read to <code>target</code>, where it is
+     * kept (it is no longer temporary). Any existing file is replaced.
+     *
+     * @param target
+     * @throws IOException
+     * @throws IllegalStateException
+     *             if the bytes aren't in a temporary file
+     */
+    public synchronized void moveTo(Path target) throws IOException {
+        if (!isTemporary())
+            throw new IllegalStateException("Only binData that has been read can be moved");
+        Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+        path = target;
+        temporary = false;
+        tempFile.release();
+    }
+
+    /**
+     * Deletes the temporary file holding bytes that were read. Does nothing otherwise.
+     *
+     * @throws IOException
+     */
+    public synchronized void delete() throws IOException {
+        if (isTemporary()) {
+            Files.deleteIfExists(path);
+            path = null;
+            tempFile.release();
+        }
+    }
+
+    /**
+     * Writes the Base64 encoding of the bytes to <code>w</code>, a buffer at a time.
+     *
+     * @param w
+     * @throws XMLStreamException
+     *             if <code>w</code> does, or the bytes can't be read
+     */
+    public void writeTo(XMLStreamWriter w) throws XMLStreamException {
+        try {
+            Base64EncodingReader in = new Base64EncodingReader(openChannel());
+            try {
+                char[] buf = new char[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buf)) > 0) {
+                    // Base64 needs no escaping, and this way isn't buffered for indenting
+                    if (w instanceof FormattingXMLStreamWriter)
+                        ((FormattingXMLStreamWriter) w).writeRaw(new String(buf, 0, len));
+                    else
+                        w.writeCharacters(buf, 0, len);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Could not read binData", e);
+        }
+    }
+
+    /**
+     * Appends the Base64 encoding of the bytes to <code>binData</code>. The DOM has to hold all of
+     * it, so {@link #writeTo(XMLStreamWriter)} is preferable for anything large.
+     *
+     * @param binData
+     * @throws IllegalStateException
+     *             if the bytes can't be read
+     */
+    public void appendTo(Element binData) {
+        StringBuilder sb = new StringBuilder(length < 0 ? BUFFER_SIZE : (int) Math.min(Integer.MAX_VALUE - 8,
+                (length + 2) / 3 * 4));
+        try {
+            Base64EncodingReader in = new Base64EncodingReader(openChannel());
+            try {
+                char[] buf = new char[BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buf)) > 0)
+                    sb.append(buf, 0, len);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read binData", e);
+        }
+        binData.appendChild(binData.getOwnerDocument().createTextNode(sb.toString()));
+    }
+
+    /**
+     * Decodes a <code>mets:binData</code> into a temporary file.
+     *
+     * @param r
+     *            positioned on the <code>mets:binData</code> <code>START_ELEMENT</code>; left on
+     *            its <code>END_ELEMENT</code>
+     * @return
+     * @throws XMLStreamException
+     *             if it isn't Base64, or can't be written
+     */
+    static BinData read(XMLStreamReader r) throws XMLStreamException {
+        Object dir;
+        try {
+            dir = r.getProperty(TEMP_DIRECTORY);
+        } catch (IllegalArgumentException e) {
+            dir = null;
+        }
+        Path tmp = null;
+        try {
+            tmp = createTempFile(dir instanceof Path ? (Path) dir : null);
+            Base64DecodingWriter out = new Base64DecodingWriter(Files.newOutputStream(tmp));
+            try {
+                while (true) {
+                    int event = r.next();
+                    if (event == XMLStreamConstants.END_ELEMENT)
+                        break;
+                    if (event == XMLStreamConstants.START_ELEMENT)
+                        StAXHelp.skipElement(r);
+                    else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                            || event == XMLStreamConstants.SPACE)
+                        out.write(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                }
+            } finally {
+                out.close();
+            }
+            return new BinData(tmp, true, null, null, out.getLength());
+        } catch (CharConversionException e) {
+            deleteQuietly(tmp);
+            throw new XMLStreamException("Invalid binData: " + e.getMessage(), r.getLocation(), e);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new XMLStreamException("Could not write binData", r.getLocation(), e);
+        } catch (XMLStreamException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes a <code>mets:binData</code> from a DOM into a temporary file.
+     *
+     * @param binData
+     * @return
+     * @throws IllegalArgumentException
+     *             if it isn't Base64
+     * @throws IllegalStateException
+     *             if it can't be written
+     */
+    static BinData read(Element binData) {
+        String text = binData.getTextContent();
+        Path tmp = null;
+        try {
+            tmp = createTempFile(null);
+            Base64DecodingWriter out = new Base64DecodingWriter(Files.newOutputStream(tmp));
+            try {
+                for (int i = 0; i < text.length(); i += BUFFER_SIZE)
+                    out.write(text, i, Math.min(BUFFER_SIZE, text.length() - i));
+            } finally {
+                out.close();
+            }
+            return new BinData(tmp, true, null, null, out.getLength());
+        } catch (CharConversionException e) {
+            deleteQuietly(tmp);
+            throw new IllegalArgumentException("Invalid binData: " + e.getMessage(), e);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw new IllegalStateException("Could not write binData", e);
+        }
+    }
+
+    private static Path createTempFile(Path dir) throws IOException {
+        // files let go of since the last time are deleted now
+        TempFile.expunge();
+        return dir == null ? Files.createTempFile("binData", ".bin") : Files.createTempFile(dir, "binData", ".bin");
+    }
+
+    private static void deleteQuietly(Path tmp) {
+        if (tmp == null)
+            return;
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            // nothing else to be done
+        }
+    }
+
+    /*
+     * A temporary file, to be deleted once its BinData is unreachable, unless it has been deleted or
+     * moved already. Only the files still in use are held, unlike File.deleteOnExit(), which keeps
+     * every one it is given until the JVM exits.
+     */
+    private static final class TempFile extends PhantomReference<BinData> {
+        private static final ReferenceQueue<BinData> unreachable = new ReferenceQueue<BinData>();
+        private static final Set<TempFile> live = Collections.newSetFromMap(new ConcurrentHashMap<TempFile, Boolean>());
+        static {
+            Runtime.getRuntime().addShutdownHook(new Thread("binData cleanup") {
+                @Override
+                public void run() {
+                    for (TempFile f : live)
+                        deleteQuietly(f.path);
+                }
+            });
+        }
+        private final Path path;
+
+        private TempFile(BinData binData, Path path) {
+            super(binData, unreachable);
+            this.path = path;
+        }
+
+        static TempFile track(BinData binData, Path path) {
+            TempFile f = new TempFile(binData, path);
+            live.add(f);
+            return f;
+        }
+
+        /*
+         * Deleted or moved: not ours to delete any more
+         */
+        void release() {
+            live.remove(this);
+            clear();
+        }
+
+        static void expunge() {
+            Reference<? extends BinData> r;
+            while ((r = unreachable.poll()) != null) {
+                TempFile f = (TempFile) r;
+                if (live.remove(f))
+                    deleteQuietly(f.path);
+            }
+        }
+    }
+
+    /*
+     * Tells BinData.read() where to put its temporary files, via the TEMP_DIRECTORY property.
+     */
+    static final class TempDirectoryReader extends StreamReaderDelegate {
+        private final Path dir;
+
+        TempDirectoryReader(XMLStreamReader r, Path dir) {
+            super(r);
+            this.dir = dir;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return name.equals(TEMP_DIRECTORY) ? dir : super.getProperty(name);
+        }
+    }
+}
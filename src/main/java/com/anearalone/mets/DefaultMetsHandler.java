@@ -0,0 +1,115 @@
+/**
+ * DefaultMetsHandler.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.mets.StructMap.Div.Mptr;
+
+/**
+ * A {@link MetsHandler} that does nothing and descends into every container. Subclass it and
+ * override only what you need.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class DefaultMetsHandler implements MetsHandler {
+
+    @Override
+    public boolean onMetsStart(Mets mets) {
+        return true;
+    }
+
+    @Override
+    public void onMetsEnd(Mets mets) {
+    }
+
+    @Override
+    public void onMetsHdr(MetsHdr metsHdr) {
+    }
+
+    @Override
+    public boolean onMdSecStart(String localName, MdSec mdSec) {
+        return true;
+    }
+
+    @Override
+    public void onMdSec(String localName, MdSec mdSec) {
+    }
+
+    @Override
+    public boolean onAmdSecStart(AmdSec amdSec) {
+        return true;
+    }
+
+    @Override
+    public void onAmdSecEnd(AmdSec amdSec) {
+    }
+
+    @Override
+    public boolean onFileSecStart(FileSec fileSec) {
+        return true;
+    }
+
+    @Override
+    public void onFileSecEnd(FileSec fileSec) {
+    }
+
+    @Override
+    public boolean onFileGrpStart(FileGrp fileGrp) {
+        return true;
+    }
+
+    @Override
+    public void onFileGrpEnd(FileGrp fileGrp) {
+    }
+
+    @Override
+    public void onFile(File file) {
+    }
+
+    @Override
+    public boolean onStructMapStart(StructMap structMap) {
+        return true;
+    }
+
+    @Override
+    public void onStructMapEnd(StructMap structMap) {
+    }
+
+    @Override
+    public boolean onDivStart(Div div) {
+        return true;
+    }
+
+    @Override
+    public void onDivEnd(Div div) {
+    }
+
+    @Override
+    public void onFptr(Fptr fptr) {
+    }
+
+    @Override
+    public void onMptr(Mptr mptr) {
+    }
+
+    @Override
+    public void onStructLink(StructLink structLink) {
+    }
+}
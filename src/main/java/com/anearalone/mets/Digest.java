@@ -0,0 +1,104 @@
+/**
+ * Digest.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
+
+/**
+ * A {@link MessageDigest} for a {@link CHECKSUMTYPE}, or a {@link Checksum} for the two that aren't
+ * digests. Not thread-safe.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+class Digest {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private final MessageDigest md;
+    private final Checksum checksum;
+    private byte[] chunk;
+
+    private Digest(MessageDigest md, Checksum checksum) {
+        this.md = md;
+        this.checksum = checksum;
+    }
+
+    /*
+     * Returns null if there's no implementation
+     */
+    static Digest newInstance(CHECKSUMTYPE type) {
+        if (type == CHECKSUMTYPE.ADLER_32)
+            return new Digest(null, new Adler32());
+        if (type == CHECKSUMTYPE.CRC_32)
+            return new Digest(null, new CRC32());
+        try {
+            return new Digest(MessageDigest.getInstance(type.value()), null);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    void update(ByteBuffer buf) {
+        if (md != null) {
+            md.update(buf);
+            return;
+        }
+        // Checksum can't read a ByteBuffer (before Java 8)
+        if (chunk == null)
+            chunk = new byte[8192];
+        while (buf.hasRemaining()) {
+            int len = Math.min(chunk.length, buf.remaining());
+            buf.get(chunk, 0, len);
+            checksum.update(chunk, 0, len);
+        }
+    }
+
+    String toHex() {
+        if (md == null)
+            return String.format("%08x", checksum.getValue());
+        return toHex(md.digest());
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+            hex[i * 2 + 1] = HEX[bytes[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    /*
+     * Checksums (rather than digests) are often written without leading zeros
+     */
+    static boolean equal(CHECKSUMTYPE type, String expected, String actual) {
+        expected = expected.trim();
+        if (type == CHECKSUMTYPE.ADLER_32 || type == CHECKSUMTYPE.CRC_32) {
+            try {
+                return Long.parseLong(expected, 16) == Long.parseLong(actual, 16);
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return expected.equalsIgnoreCase(actual);
+    }
+}
@@ -0,0 +1,582 @@
+/**
+ * DigestService.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
+import com.anearalone.utils.RateLimiter;
+
+/**
+ * Computes checksums of files, for any number of {@link CHECKSUMTYPE}s at once, reading each file
+ * only once. Every buffer that is read is fed to all of the checksums that are wanted for the file.
+ * <p>
+ * Small files are read whole on a pool of threads, a file per thread, and hashed by the thread that
+ * reads them. Files at least {@link #getLargeFileThreshold()} long are pipelined: one thread reads
+ * the file into a few buffers while another thread per <code>CHECKSUMTYPE</code> hashes them, so
+ * the slowest digest (rather than the sum of them all) and the disk set the pace. Fewer large files
+ * are read at once than small ones, so that the pipelines don't take more threads than
+ * {@link #getParallelism()} between them.
+ * <p>
+ * The total number of bytes read per second can be limited, so that hashing can run alongside other
+ * work on the same storage. The limit holds across calls, so many short calls (or calls from
+ * different threads) together read no faster than one long one.
+ * <p>
+ * <code>HAVAL</code>, <code>MNP</code>, <code>TIGER</code> and <code>WHIRLPOOL</code> are only
+ * supported if a {@link java.security.Provider} is installed that supports them. Checksums are in
+ * lower case hexadecimal; <code>Adler-32</code> and <code>CRC32</code> are 8 digits long.
+ * <p>
+ * The threads and (direct) buffers are kept between calls, so one instance should be used for many
+ * calls rather than one per call. Threads that are idle for a minute stop, so an instance that is
+ * no longer used holds none; {@link #close()} stops them at once.
+ * <p>
+ * Set the options before calling {@link #digest(Map)}; once configured, a given instance may be
+ * reused, and may be shared between threads.
+ *
+ * @see MetsBuilder
+ * @see FixityVerifier
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class DigestService implements Closeable {
+    // buffers per pipeline: enough for the reader to keep ahead of the hashers
+    private static final int PIPELINE_DEPTH = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+    private volatile int bufferSize = 1024 * 1024;
+    private volatile long largeFileThreshold = 64L * 1024 * 1024;
+    private volatile long maxBytesPerSecond;
+    private volatile RateLimiter limiter;
+    // made on first use, and kept until close()
+    private ThreadPoolExecutor readers;
+    private ExecutorService hashers;
+    private boolean closed;
+    // buffers not in use, at most PIPELINE_DEPTH per thread reading
+    private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    /**
+     * @param type
+     * @return whether checksums of <code>type</code> can be computed
+     */
+    public static boolean isSupported(CHECKSUMTYPE type) {
+        return Digest.newInstance(type) != null;
+    }
+
+    /**
+     * Reads <code>path</code> once, and sets the <code>CHECKSUM</code>, <code>CHECKSUMTYPE</code>
+     * and <code>SIZE</code> of <code>file</code>.
+     *
+     * @param file
+     * @param path
+     *            the file that <code>file</code> describes
+     * @param types
+     *            the first is used for <code>CHECKSUM</code>
+     * @return every checksum of <code>path</code>, one for each of <code>types</code>
+     * @throws IOException
+     *             if <code>path</code> can't be read
+     * @throws InterruptedException
+     * @throws IllegalArgumentException
+     *             if there are no <code>types</code>, or one isn't supported
+     */
+    public Map<CHECKSUMTYPE, String> setChecksum(File file, Path path, CHECKSUMTYPE... types) throws IOException,
+            InterruptedException {
+        if (types.length == 0)
+            throw new IllegalArgumentException("At least one CHECKSUMTYPE is needed");
+        Result result = digest(path, types);
+        file.setCHECKSUMTYPE(types[0]);
+        file.setCHECKSUM(result.getChecksum(types[0]));
+        file.setSIZE(result.getSize());
+        return result.getChecksums();
+    }
+
+    /**
+     * @param path
+     * @param types
+     * @return the checksums of <code>path</code>, from one read of it
+     * @throws IOException
+     *             if <code>path</code> can't be read
+     * @throws InterruptedException
+     * @throws IllegalArgumentException
+     *             if one of <code>types</code> isn't supported
+     */
+    public Result digest(Path path, CHECKSUMTYPE... types) throws IOException, InterruptedException {
+        Result result = digest(Collections.singletonMap(path, Arrays.asList(types))).get(path);
+        if (result.getException() != null)
+            throw result.getException();
+        return result;
+    }
+
+    /**
+     * Computes the checksums of many files, in parallel. A file that can't be read doesn't stop the
+     * others: its {@link Result} has the exception.
+     *
+     * @param files
+     *            the <code>CHECKSUMTYPE</code>s wanted for each file. If there are none, the file is
+     *            only checked for its size.
+     * @return a {@link Result} for each of <code>files</code>, in the same order
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the files to be read
+     * @throws IllegalArgumentException
+     *             if one of the <code>CHECKSUMTYPE</code>s isn't supported
+     * @throws IllegalStateException
+     *             if the service has been closed
+     */
+    public Map<Path, Result> digest(Map<Path, ? extends Collection<CHECKSUMTYPE>> files)
+            throws InterruptedException {
+        int mostTypes = 0;
+        for (Collection<CHECKSUMTYPE> types : files.values()) {
+            for (CHECKSUMTYPE type : types) {
+                if (!isSupported(type))
+                    throw new IllegalArgumentException(type.value() + " is not supported");
+            }
+            mostTypes = Math.max(mostTypes, types.size());
+        }
+        ExecutorService readers;
+        ExecutorService hashers;
+        synchronized (this) {
+            start();
+            readers = this.readers;
+            hashers = this.hashers;
+        }
+        final Run run = new Run(this.bufferSize, this.largeFileThreshold,
+                Math.max(1, this.parallelism / (mostTypes + 1)), this.limiter, hashers);
+
+        List<Callable<Result>> tasks = new ArrayList<Callable<Result>>(files.size());
+        for (final Map.Entry<Path, ? extends Collection<CHECKSUMTYPE>> file : files.entrySet()) {
+            tasks.add(new Callable<Result>() {
+                @Override
+                public Result call() throws InterruptedException {
+                    return run.digest(file.getKey(), file.getValue());
+                }
+            });
+        }
+        Map<Path, Result> results = new LinkedHashMap<Path, Result>(files.size() * 4 / 3 + 1);
+        try {
+            for (Future<Result> f : readers.invokeAll(tasks)) {
+                Result result = f.get();
+                results.put(result.getPath(), result);
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            // only InterruptedException, if something else (e.g. close()) interrupted a reader
+            throw new InterruptedException();
+        }
+        return results;
+    }
+
+    /**
+     * Stops the threads, interrupting any calls in progress, and drops the buffers. The service
+     * can't be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (readers != null) {
+            readers.shutdownNow();
+            hashers.shutdownNow();
+        }
+        buffers.clear();
+        pooled.set(0);
+    }
+
+    /**
+     * @return the number of threads reading and hashing files
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *            the number of threads reading and hashing files; the number of processors by
+     *            default
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        synchronized (this) {
+            this.parallelism = parallelism;
+            if (readers != null && !closed) {
+                // the core size may never be more than the maximum
+                if (parallelism > readers.getMaximumPoolSize()) {
+                    readers.setMaximumPoolSize(parallelism);
+                    readers.setCorePoolSize(parallelism);
+                } else {
+                    readers.setCorePoolSize(parallelism);
+                    readers.setMaximumPoolSize(parallelism);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the size of the (direct) buffers files are read through
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize
+     *            the size of the (direct) buffers files are read through; 1MB by default. Up to
+     *            four times {@link #getParallelism()} of them are kept between calls.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the size from which files are read and hashed by separate threads
+     */
+    public long getLargeFileThreshold() {
+        return largeFileThreshold;
+    }
+
+    /**
+     * @param largeFileThreshold
+     *            the size from which files are read and hashed by separate threads; 64MB by default
+     */
+    public void setLargeFileThreshold(long largeFileThreshold) {
+        if (largeFileThreshold < 0)
+            throw new IllegalArgumentException("largeFileThreshold must not be negative");
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * @return the most bytes read per second, across all files, or 0 if there's no limit
+     */
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * @param maxBytesPerSecond
+     *            the most bytes to read per second, across all files and all calls (including
+     *            concurrent ones), or 0 for no limit (the default)
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0)
+            throw new IllegalArgumentException("maxBytesPerSecond must not be negative");
+        this.maxBytesPerSecond = maxBytesPerSecond;
+        this.limiter = maxBytesPerSecond > 0 ? new RateLimiter(maxBytesPerSecond) : null;
+    }
+
+    /*
+     * Makes the threads on first use
+     */
+    private void start() {
+        if (closed)
+            throw new IllegalStateException("DigestService has been closed");
+        if (readers != null)
+            return;
+        readers = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemon("digest"));
+        readers.allowCoreThreadTimeOut(true);
+        hashers = Executors.newCachedThreadPool(daemon("digest-hash"));
+    }
+
+    /*
+     * A pooled buffer, or a new one
+     */
+    private ByteBuffer takeBuffer(int size) {
+        ByteBuffer buf;
+        while ((buf = buffers.poll()) != null) {
+            pooled.decrementAndGet();
+            // those from before a change of bufferSize are dropped
+            if (buf.capacity() == size)
+                return buf;
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    private void returnBuffer(ByteBuffer buf) {
+        if (buf.capacity() != bufferSize)
+            return;
+        if (pooled.incrementAndGet() <= parallelism * PIPELINE_DEPTH)
+            buffers.offer(buf);
+        else
+            pooled.decrementAndGet();
+    }
+
+    private static ThreadFactory daemon(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /*
+     * The settings of one call to digest(Map)
+     */
+    private class Run {
+        final int bufferSize;
+        final long largeFileThreshold;
+        final RateLimiter limiter;
+        final Semaphore largeFiles;
+        final ExecutorService hashers;
+
+        Run(int bufferSize, long largeFileThreshold, int largeFiles, RateLimiter limiter, ExecutorService hashers) {
+            this.bufferSize = bufferSize;
+            this.largeFileThreshold = largeFileThreshold;
+            this.limiter = limiter;
+            this.largeFiles = new Semaphore(largeFiles);
+            this.hashers = hashers;
+        }
+
+        Result digest(Path path, Collection<CHECKSUMTYPE> types) throws InterruptedException {
+            List<Digest> digests = new ArrayList<Digest>(types.size());
+            for (CHECKSUMTYPE type : types)
+                digests.add(Digest.newInstance(type));
+            long size = 0;
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    if (digests.isEmpty())
+                        size = channel.size();
+                    else if (channel.size() < largeFileThreshold)
+                        size = read(channel, digests);
+                    else {
+                        largeFiles.acquire();
+                        try {
+                            size = pipeline(channel, digests);
+                        } finally {
+                            largeFiles.release();
+                        }
+                    }
+                } finally {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                return new Result(path, null, size, e);
+            }
+            Map<CHECKSUMTYPE, String> checksums = new EnumMap<CHECKSUMTYPE, String>(CHECKSUMTYPE.class);
+            int i = 0;
+            for (CHECKSUMTYPE type : types)
+                checksums.put(type, digests.get(i++).toHex());
+            return new Result(path, checksums, size, null);
+        }
+
+        /*
+         * Reads and hashes on this thread
+         */
+        private long read(FileChannel channel, List<Digest> digests) throws IOException, InterruptedException {
+            ByteBuffer buf = takeBuffer(bufferSize);
+            long size = 0;
+            try {
+                buf.clear();
+                while (channel.read(buf) >= 0) {
+                    if (limiter != null)
+                        limiter.acquire(buf.position());
+                    buf.flip();
+                    size += buf.remaining();
+                    for (Digest digest : digests) {
+                        digest.update(buf);
+                        buf.rewind();
+                    }
+                    buf.clear();
+                }
+            } finally {
+                returnBuffer(buf);
+            }
+            return size;
+        }
+
+        /*
+         * Reads on this thread, and hashes on one thread per digest. Each chunk goes to every
+         * hasher, and comes back to be read into again once they've all finished with it.
+         */
+        private long pipeline(FileChannel channel, List<Digest> digests) throws IOException, InterruptedException {
+            final BlockingQueue<Chunk> free = new ArrayBlockingQueue<Chunk>(PIPELINE_DEPTH);
+            for (int i = 0; i < PIPELINE_DEPTH; i++)
+                free.add(new Chunk(takeBuffer(bufferSize)));
+            List<BlockingQueue<Chunk>> queues = new ArrayList<BlockingQueue<Chunk>>(digests.size());
+            List<Future<?>> futures = new ArrayList<Future<?>>(digests.size());
+            for (final Digest digest : digests) {
+                // room for every chunk, and Chunk.END
+                final BlockingQueue<Chunk> queue = new ArrayBlockingQueue<Chunk>(PIPELINE_DEPTH + 1);
+                queues.add(queue);
+                futures.add(hashers.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws InterruptedException {
+                        RuntimeException failure = null;
+                        Chunk chunk;
+                        while ((chunk = queue.take()) != Chunk.END) {
+                            // keep handing chunks back after a failure, or the reader would wait
+                            try {
+                                if (failure == null)
+                                    digest.update(chunk.buf.duplicate());
+                            } catch (RuntimeException e) {
+                                failure = e;
+                            } finally {
+                                if (chunk.pending.decrementAndGet() == 0)
+                                    free.add(chunk);
+                            }
+                        }
+                        if (failure != null)
+                            throw failure;
+                        return null;
+                    }
+                }));
+            }
+            long size = 0;
+            try {
+                while (true) {
+                    Chunk chunk = free.take();
+                    chunk.buf.clear();
+                    if (channel.read(chunk.buf) < 0) {
+                        free.add(chunk);
+                        break;
+                    }
+                    if (limiter != null)
+                        limiter.acquire(chunk.buf.position());
+                    chunk.buf.flip();
+                    size += chunk.buf.remaining();
+                    chunk.pending.set(queues.size());
+                    for (BlockingQueue<Chunk> queue : queues)
+                        queue.add(chunk);
+                }
+            } finally {
+                for (BlockingQueue<Chunk> queue : queues)
+                    queue.add(Chunk.END);
+                try {
+                    for (Future<?> f : futures)
+                        f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    if (e.getCause() instanceof Error)
+                        throw (Error) e.getCause();
+                    throw new InterruptedException();
+                } finally {
+                    for (Future<?> f : futures)
+                        f.cancel(true);
+                    Chunk chunk;
+                    while ((chunk = free.poll()) != null)
+                        returnBuffer(chunk.buf);
+                }
+            }
+            return size;
+        }
+    }
+
+    /*
+     * A buffer, and how many hashers have still to read it
+     */
+    private static class Chunk {
+        static final Chunk END = new Chunk(null);
+        final ByteBuffer buf;
+        final AtomicInteger pending = new AtomicInteger();
+
+        Chunk(ByteBuffer buf) {
+            this.buf = buf;
+        }
+    }
+
+    /**
+     * The checksums of one file.
+     */
+    public static class Result {
+        private final Path path;
+        private final Map<CHECKSUMTYPE, String> checksums;
+        private final long size;
+        private final IOException exception;
+
+        Result(Path path, Map<CHECKSUMTYPE, String> checksums, long size, IOException exception) {
+            this.path = path;
+            this.checksums = checksums == null ? Collections.<CHECKSUMTYPE, String> emptyMap() : Collections
+                    .unmodifiableMap(checksums);
+            this.size = size;
+            this.exception = exception;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        /**
+         * @return the checksums, in lower case hexadecimal, by type; empty if the file couldn't be
+         *         read
+         */
+        public Map<CHECKSUMTYPE, String> getChecksums() {
+            return checksums;
+        }
+
+        /**
+         * @param type
+         * @return the checksum of <code>type</code>, or null if it wasn't computed
+         */
+        public String getChecksum(CHECKSUMTYPE type) {
+            return checksums.get(type);
+        }
+
+        /**
+         * @return the size of the file (or as much as was read of it)
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return why the file couldn't be read, or null if it was
+         */
+        public IOException getException() {
+            return exception;
+        }
+
+        @Override
+        public String toString() {
+            return path + (exception == null ? " " + checksums : ": " + exception);
+        }
+    }
+}
@@ -17,6 +17,10 @@ package com.anearalone.mets;
 
 import java.text.ParseException;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -35,6 +39,17 @@ public interface ElementInterface {
      */
     public void unmarshal(Element e) throws ParseException;
 
+    /**
+     * Reconstitutes classes from a pull parser. The reader must be positioned on the element's
+     * <code>START_ELEMENT</code> and is left on its <code>END_ELEMENT</code>.
+     * 
+     * @param r
+     * @throws XMLStreamException
+     *             When the underlying document cannot be parsed.
+     * @see MetsStreamReader
+     */
+    public void unmarshal(XMLStreamReader r) throws XMLStreamException;
+
     /**
      * Structures fields into a DOM Element.
      * 
@@ -47,4 +62,14 @@ public interface ElementInterface {
      * name. The MdSecs are the best case for this, but also recordID and metsDocumentID.
      */
     public void marshal(Element e, Document d);
+
+    /**
+     * Writes fields to a StAX writer. As with {@link #marshal(Element, Document)}, the caller
+     * writes the element's start and end tags; implementations write its attributes and children.
+     * 
+     * @param w
+     * @throws XMLStreamException
+     * @see MetsStreamWriter
+     */
+    public void marshal(XMLStreamWriter w) throws XMLStreamException;
 }
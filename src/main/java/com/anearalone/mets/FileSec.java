@@ -22,14 +22,17 @@ import java.util.List;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
 import com.anearalone.utils.DOMHelp;
+import com.anearalone.utils.StAXHelp;
 
 /**
  * Representation of a <code>mets:fileSec</code>
@@ -75,6 +78,19 @@ public class FileSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+        // At least one fileGrp is required, so make it if it doesn't exist
+        if (this.fileGrp == null)
+            this.getFileGrp().add(new FileGrp());
+        for (FileGrp fileGrp : this.getFileGrp()) {
+            w.writeStartElement("mets", "fileGrp", NS.METS.ns());
+            fileGrp.marshal(w);
+            w.writeEndElement();
+        }
+    }
+
     @Override
     public void unmarshal(Element fileSec) {
         super.unmarshal(fileSec);
@@ -86,6 +102,13 @@ public class FileSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        FileGrp fileGrp = new FileGrp();
+        fileGrp.unmarshal(r);
+        this.getFileGrp().add(fileGrp);
+    }
+
     /**
      * Representation of a <code>mets:fileGrp</code>
      * <p>
@@ -214,16 +237,33 @@ public class FileSec extends IDElement implements ElementInterface {
             }
         }
 
+        @Override
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            String metsNs = NS.METS.ns();
+            if (this.versdate != null)
+                w.writeAttribute("VERSDATE", this.versdate.toXMLFormat());
+            if (this.use != null)
+                w.writeAttribute("USE", this.use);
+            if (this.fileGrp != null) {
+                for (FileGrp fg : this.fileGrp) {
+                    w.writeStartElement("mets", "fileGrp", metsNs);
+                    fg.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+            if (this.file != null) {
+                for (File f : this.file) {
+                    w.writeStartElement("mets", "file", metsNs);
+                    f.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+        }
+
         @Override
         public void unmarshal(Element fileGrp) {
             super.unmarshal(fileGrp);
-            if (fileGrp.hasAttribute("VERSDATE")) {
-                DatatypeFactory dtf = MetsIO.getDataTypeFactory();
-                String value = fileGrp.getAttribute("VERSDATE");
-                this.versdate = dtf.newXMLGregorianCalendar(value);
-            }
-            if (fileGrp.hasAttribute("USE"))
-                this.use = fileGrp.getAttribute("USE");
             List<Element> children = DOMHelp.getChildElements(fileGrp);
             for (Element child : children) {
                 String localName = child.getLocalName();
@@ -240,6 +280,33 @@ public class FileSec extends IDElement implements ElementInterface {
             }
         }
 
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("VERSDATE")) {
+                DatatypeFactory dtf = MetsIO.getDataTypeFactory();
+                this.versdate = dtf.newXMLGregorianCalendar(value);
+            } else if (name.equals("USE"))
+                this.use = value;
+            else
+                super.unmarshalAttribute(name, value);
+        }
+
+        @Override
+        protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+            String localName = r.getLocalName();
+            if (localName.equals("fileGrp")) {
+                FileGrp subFileGrp = new FileGrp();
+                subFileGrp.unmarshal(r);
+                this.getFileGrp().add(subFileGrp);
+            } else if (localName.equals("file")) {
+                File file = new File();
+                file.unmarshal(r);
+                this.getFile().add(file);
+            } else {
+                super.unmarshalChild(r);
+            }
+        }
+
         /**
          * Representation of a <code>mets:file</code>
          * <p>
@@ -259,7 +326,6 @@ public class FileSec extends IDElement implements ElementInterface {
             protected XMLGregorianCalendar created;
             protected String checksum;
             protected CHECKSUMTYPE checksumtype;
-            protected static DatatypeFactory dtf;
             protected List<FLocat> fLocat;
             protected File.FContent fContent;
             protected List<Stream> stream;
@@ -276,8 +342,6 @@ public class FileSec extends IDElement implements ElementInterface {
 
             public File(String id) {
                 this.id = id;
-                if (dtf == null)
-                    dtf = MetsIO.getDataTypeFactory();
             }
 
             // internal only
@@ -723,46 +787,78 @@ public class FileSec extends IDElement implements ElementInterface {
             }
 
             @Override
-            public void unmarshal(Element file) {
-                super.unmarshal(file);
+            public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                super.marshal(w);
 
-                if (dtf == null)
-                    dtf = MetsIO.getDataTypeFactory();
+                String metsNs = NS.METS.ns();
 
-                NamedNodeMap attrs = file.getAttributes();
-                for (int i = 0; i < attrs.getLength(); i++) {
-                    Attr attr = (Attr) attrs.item(i);
-                    String name = attr.getName();
-                    String value = attr.getNodeValue();
-                    if (name.equals("ADMID"))
-                        this.admid = MetsReader.parseIDREFAttr(value);
-                    if (name.equals("SEQ"))
-                        this.seq = new Integer(value);
-                    if (name.equals("USE"))
-                        this.use = value;
-                    if (name.equals("OWNERID"))
-                        this.ownerid = value;
-                    if (name.equals("DMDID"))
-                        this.dmdid = MetsReader.parseIDREFAttr(value);
-                    if (name.equals("GROUPID"))
-                        this.groupid = value;
-                    if (name.equals("BEGIN"))
-                        this.begin = value;
-                    if (name.equals("END"))
-                        this.end = value;
-                    if (name.equals("BETYPE"))
-                        this.betype = BETYPE.fromValue(value);
-                    if (name.equals("MIMETYPE"))
-                        this.mimetype = value;
-                    if (name.equals("SIZE"))
-                        this.size = Long.parseLong(value);
-                    if (name.equals("CHECKSUM"))
-                        this.checksum = value;
-                    if (name.equals("CHECKSUMTYPE"))
-                        this.checksumtype = CHECKSUMTYPE.fromValue(value);
-                    if (name.equals("CREATED"))
-                        this.created = dtf.newXMLGregorianCalendar(value);
+                if (this.seq != null)
+                    w.writeAttribute("SEQ", this.seq.toString());
+                if (this.ownerid != null)
+                    w.writeAttribute("OWNERID", this.ownerid);
+                if (this.dmdid != null)
+                    w.writeAttribute("DMDID", MetsWriter.listToString(this.dmdid));
+                if (this.groupid != null)
+                    w.writeAttribute("GROUPID", this.groupid);
+                if (this.begin != null)
+                    w.writeAttribute("BEGIN", this.begin);
+                if (this.use != null)
+                    w.writeAttribute("USE", this.use);
+                if (this.end != null)
+                    w.writeAttribute("END", this.end);
+                if (this.betype != null)
+                    w.writeAttribute("BETYPE", this.betype.value());
+                if (this.mimetype != null)
+                    w.writeAttribute("MIMETYPE", this.mimetype);
+                if (this.size != null)
+                    w.writeAttribute("SIZE", this.size.toString());
+                if (this.checksum != null)
+                    w.writeAttribute("CHECKSUM", this.checksum);
+                if (this.checksumtype != null)
+                    w.writeAttribute("CHECKSUMTYPE", this.checksumtype.value());
+                if (this.created != null)
+                    w.writeAttribute("CREATED", this.created.toXMLFormat());
+                if (this.admid != null)
+                    w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+
+                if (this.fLocat != null) {
+                    for (FLocat f : this.fLocat) {
+                        w.writeStartElement("mets", "FLocat", metsNs);
+                        f.marshal(w);
+                        w.writeEndElement();
+                    }
+                }
+                if (this.fContent != null) {
+                    w.writeStartElement("mets", "FContent", metsNs);
+                    this.fContent.marshal(w);
+                    w.writeEndElement();
+                }
+                if (this.stream != null) {
+                    for (Stream s : this.stream) {
+                        w.writeStartElement("mets", "stream", metsNs);
+                        s.marshal(w);
+                        w.writeEndElement();
+                    }
                 }
+                if (this.transformFile != null) {
+                    for (TransformFile t : this.transformFile) {
+                        w.writeStartElement("mets", "transformFile", metsNs);
+                        t.marshal(w);
+                        w.writeEndElement();
+                    }
+                }
+                if (this.file != null) {
+                    for (File f : this.file) {
+                        w.writeStartElement("mets", "file", metsNs);
+                        f.marshal(w);
+                        w.writeEndElement();
+                    }
+                }
+            }
+
+            @Override
+            public void unmarshal(Element file) {
+                super.unmarshal(file);
 
                 List<Element> children = DOMHelp.getChildElements(file);
                 for (Element child : children) {
@@ -795,6 +891,67 @@ public class FileSec extends IDElement implements ElementInterface {
                 }
             }
 
+            @Override
+            protected void unmarshalAttribute(String name, String value) {
+                if (name.equals("ADMID"))
+                    this.admid = MetsReader.parseIDREFAttr(value);
+                else if (name.equals("SEQ"))
+                    this.seq = new Integer(value);
+                else if (name.equals("USE"))
+                    this.use = value;
+                else if (name.equals("OWNERID"))
+                    this.ownerid = value;
+                else if (name.equals("DMDID"))
+                    this.dmdid = MetsReader.parseIDREFAttr(value);
+                else if (name.equals("GROUPID"))
+                    this.groupid = value;
+                else if (name.equals("BEGIN"))
+                    this.begin = value;
+                else if (name.equals("END"))
+                    this.end = value;
+                else if (name.equals("BETYPE"))
+                    this.betype = BETYPE.fromValue(value);
+                else if (name.equals("MIMETYPE"))
+                    this.mimetype = value;
+                else if (name.equals("SIZE"))
+                    this.size = Long.parseLong(value);
+                else if (name.equals("CHECKSUM"))
+                    this.checksum = value;
+                else if (name.equals("CHECKSUMTYPE"))
+                    this.checksumtype = CHECKSUMTYPE.fromValue(value);
+                else if (name.equals("CREATED"))
+                    this.created = MetsIO.getDataTypeFactory().newXMLGregorianCalendar(value);
+                else
+                    super.unmarshalAttribute(name, value);
+            }
+
+            @Override
+            protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+                String localName = r.getLocalName();
+                if (localName.equals("FLocat")) {
+                    FLocat fLocat = new FLocat();
+                    fLocat.unmarshal(r);
+                    this.getFLocat().add(fLocat);
+                } else if (localName.equals("FContent")) {
+                    this.fContent = new FContent();
+                    this.fContent.unmarshal(r);
+                } else if (localName.equals("stream")) {
+                    Stream stream = new Stream();
+                    stream.unmarshal(r);
+                    this.getStream().add(stream);
+                } else if (localName.equals("transformFile")) {
+                    TransformFile transformFile = new TransformFile();
+                    transformFile.unmarshal(r);
+                    this.getTransformFile().add(transformFile);
+                } else if (localName.equals("file")) {
+                    File subFile = new File();
+                    subFile.unmarshal(r);
+                    this.getFile().add(subFile);
+                } else {
+                    super.unmarshalChild(r);
+                }
+            }
+
             /**
              * Enumeration of possible values for <code>@BETYPE</code>
              */
@@ -810,8 +967,6 @@ public class FileSec extends IDElement implements ElementInterface {
             }
 
             /**
-             * <strong>Warning: <code>mets:binData</code> NOT IMPLEMENTED</strong>
-             * <p>
              * From the METS Schema:
              * <p>
              * <blockquote>The file content element <FContent> is used to identify a content file
@@ -822,32 +977,31 @@ public class FileSec extends IDElement implements ElementInterface {
              */
             public static class FContent extends IDElement implements ElementInterface {
 
-                /**
-                 * <strong>Not supported in this version.</strong>
-                 */
-                protected byte[] binData;
+                protected BinData binData;
                 protected List<Element> xmlData;
+                // xmlData as read, until getXmlData() is called
+                protected XmlData xmlDataSource;
                 protected String id;
                 protected String use;
 
-                // /**
-                // * Gets the value of the binData property.
-                // *
-                // * @return possible object is byte[]
-                // */
-                // public byte[] getBinData() {
-                // return binData;
-                // }
-                //
-                // /**
-                // * Sets the value of the binData property.
-                // *
-                // * @param value
-                // * allowed object is byte[]
-                // */
-                // public void setBinData(byte[] value) {
-                // this.binData = ((byte[]) value);
-                // }
+                /**
+                 * Gets the content of the <code>mets:binData</code> child
+                 * 
+                 * @return the decoded content, or null if there is no <code>mets:binData</code>
+                 */
+                public BinData getBinData() {
+                    return binData;
+                }
+
+                /**
+                 * Sets the content of the <code>mets:binData</code> child, which is Base64 encoded
+                 * as it is written
+                 * 
+                 * @param binData
+                 */
+                public void setBinData(BinData binData) {
+                    this.binData = binData;
+                }
 
                 /**
                  * Gets the xmlData List
@@ -858,11 +1012,17 @@ public class FileSec extends IDElement implements ElementInterface {
                  * <pre>
                  * getXmlData().add(newElement);
                  * </pre>
-                 * 
+                 * <p>
+                 * <code>xmlData</code> that has been read is kept as an {@link XmlData} until the first
+                 * call, which parses it into a {@link org.w3c.dom.Document} of its own.
                  */
                 public List<Element> getXmlData() {
                     if (this.xmlData == null) {
-                        this.xmlData = new ArrayList<Element>();
+                        if (this.xmlDataSource != null)
+                            this.xmlData = this.xmlDataSource.toElements();
+                        else
+                            this.xmlData = new ArrayList<Element>();
+                        this.xmlDataSource = null;
                     }
                     return this.xmlData;
                 }
@@ -892,31 +1052,78 @@ public class FileSec extends IDElement implements ElementInterface {
                     String mns = NS.METS.ns();
                     if (this.use != null)
                         fcontent.setAttribute("USE", this.use);
-                    if (this.xmlData != null) {
+                    if (this.xmlData != null || this.xmlDataSource != null) {
                         Element xd = doc.createElementNS(mns, "mets:xmlData");
                         fcontent.appendChild(xd);
-                        for (Element e : this.xmlData) {
-                            Element data = (Element) doc.importNode(e, true);
-                            xd.appendChild(data);
+                        if (this.xmlData == null)
+                            this.xmlDataSource.appendTo(xd);
+                        else {
+                            for (Element e : this.xmlData) {
+                                Element data = (Element) doc.importNode(e, true);
+                                xd.appendChild(data);
+                            }
                         }
                     }
+                    if (this.binData != null) {
+                        Element bd = doc.createElementNS(mns, "mets:binData");
+                        fcontent.appendChild(bd);
+                        this.binData.appendTo(bd);
+                    }
+                }
+
+                @Override
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.use != null)
+                        w.writeAttribute("USE", this.use);
+                    if (this.xmlData != null || this.xmlDataSource != null) {
+                        w.writeStartElement("mets", "xmlData", NS.METS.ns());
+                        if (this.xmlData == null)
+                            this.xmlDataSource.writeTo(w);
+                        else {
+                            for (Element e : this.xmlData)
+                                StAXHelp.writeNode(w, e);
+                        }
+                        w.writeEndElement();
+                    }
+                    if (this.binData != null) {
+                        w.writeStartElement("mets", "binData", NS.METS.ns());
+                        this.binData.writeTo(w);
+                        w.writeEndElement();
+                    }
                 }
 
                 @Override
                 public void unmarshal(Element fcontent) {
                     super.unmarshal(fcontent);
-                    if (fcontent.hasAttribute("USE"))
-                        this.use = fcontent.getAttribute("USE");
                     List<Element> children = DOMHelp.getChildElements(fcontent);
                     for (Element child : children) {
                         if (child.getLocalName().equals("xmlData")) {
-                            List<Element> gChildren = DOMHelp.getChildElements(child);
-                            for (Element gChild : gChildren) {
-                                this.getXmlData().add(gChild);
-                            }
+                            this.xmlDataSource = XmlData.read(child);
+                        } else if (child.getLocalName().equals("binData")) {
+                            this.binData = BinData.read(child);
                         }
                     }
                 }
+
+                @Override
+                protected void unmarshalAttribute(String name, String value) {
+                    if (name.equals("USE"))
+                        this.use = value;
+                    else
+                        super.unmarshalAttribute(name, value);
+                }
+
+                @Override
+                protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+                    if (r.getLocalName().equals("xmlData")) {
+                        this.xmlDataSource = XmlData.read(r);
+                    } else if (r.getLocalName().equals("binData")) {
+                        this.binData = BinData.read(r);
+                    } else {
+                        super.unmarshalChild(r);
+                    }
+                }
             }
 
             /**
@@ -965,10 +1172,18 @@ public class FileSec extends IDElement implements ElementInterface {
                 }
 
                 @Override
-                public void unmarshal(Element e) {
-                    super.unmarshal(e);
-                    if (e.hasAttribute("USE"))
-                        this.use = e.getAttribute("USE");
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.use != null)
+                        w.writeAttribute("USE", this.use);
+                }
+
+                @Override
+                protected void unmarshalAttribute(String name, String value) {
+                    if (name.equals("USE"))
+                        this.use = value;
+                    else
+                        super.unmarshalAttribute(name, value);
                 }
 
             }
@@ -1158,28 +1373,42 @@ public class FileSec extends IDElement implements ElementInterface {
                 }
 
                 @Override
-                public void unmarshal(Element e) {
-                    super.unmarshal(e);
-                    NamedNodeMap attrs = e.getAttributes();
-                    for (int i = 0; i < attrs.getLength(); i++) {
-                        Attr attr = (Attr) attrs.item(i);
-                        String name = attr.getName();
-                        String value = attr.getNodeValue();
-                        if (name.equals("ADMID"))
-                            this.admid = MetsReader.parseIDREFAttr(value);
-                        if (name.equals("OWNERID"))
-                            this.ownerid = value;
-                        if (name.equals("DMDID"))
-                            this.dmdid = MetsReader.parseIDREFAttr(value);
-                        if (name.equals("BEGIN"))
-                            this.begin = value;
-                        if (name.equals("END"))
-                            this.end = value;
-                        if (name.equals("BETYPE"))
-                            this.betype = BETYPE.fromValue(value);
-                        if (name.equals("streamType"))
-                            this.streamType = value;
-                    }
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.admid != null)
+                        w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+                    if (this.ownerid != null)
+                        w.writeAttribute("OWNERID", this.ownerid);
+                    if (this.dmdid != null)
+                        w.writeAttribute("DMDID", MetsWriter.listToString(this.dmdid));
+                    if (this.streamType != null)
+                        w.writeAttribute("streamType", this.streamType);
+                    if (this.begin != null)
+                        w.writeAttribute("BEGIN", this.begin);
+                    if (this.end != null)
+                        w.writeAttribute("END", this.end);
+                    if (this.betype != null)
+                        w.writeAttribute("BETYPE", this.betype.value());
+                }
+
+                @Override
+                protected void unmarshalAttribute(String name, String value) {
+                    if (name.equals("ADMID"))
+                        this.admid = MetsReader.parseIDREFAttr(value);
+                    else if (name.equals("OWNERID"))
+                        this.ownerid = value;
+                    else if (name.equals("DMDID"))
+                        this.dmdid = MetsReader.parseIDREFAttr(value);
+                    else if (name.equals("BEGIN"))
+                        this.begin = value;
+                    else if (name.equals("END"))
+                        this.end = value;
+                    else if (name.equals("BETYPE"))
+                        this.betype = BETYPE.fromValue(value);
+                    else if (name.equals("streamType"))
+                        this.streamType = value;
+                    else
+                        super.unmarshalAttribute(name, value);
                 }
             }
 
@@ -1326,24 +1555,34 @@ public class FileSec extends IDElement implements ElementInterface {
                 }
 
                 @Override
-                public void unmarshal(Element e) {
-                    super.unmarshal(e);
-                    NamedNodeMap attrs = e.getAttributes();
-                    for (int i = 0; i < attrs.getLength(); i++) {
-                        Attr attr = (Attr) attrs.item(i);
-                        String name = attr.getName();
-                        String value = attr.getNodeValue();
-                        if (name.equals("TRANSFORMTYPE"))
-                            this.transformtype = TRANSFORMTYPE.fromValue(value);
-                        if (name.equals("TRANSFORMALGORITHM"))
-                            this.transformalgorithm = value;
-                        if (name.equals("TRANSFORMKEY"))
-                            this.transformkey = value;
-                        if (name.equals("TRANSFORMBEHAVIOR"))
-                            this.transformbehavior = value;
-                        if (name.equals("TRANSFORMORDER"))
-                            this.transformorder = new BigInteger(value);
-                    }
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.transformtype != null)
+                        w.writeAttribute("TRANSFORMTYPE", this.transformtype.value());
+                    if (this.transformalgorithm != null)
+                        w.writeAttribute("TRANSFORMALGORITHM", this.transformalgorithm);
+                    if (this.transformkey != null)
+                        w.writeAttribute("TRANSFORMKEY", this.transformkey);
+                    if (this.transformbehavior != null)
+                        w.writeAttribute("TRANSFORMBEHAVIOR", this.transformbehavior);
+                    if (this.transformorder != null)
+                        w.writeAttribute("TRANSFORMORDER", this.transformorder.toString());
+                }
+
+                @Override
+                protected void unmarshalAttribute(String name, String value) {
+                    if (name.equals("TRANSFORMTYPE"))
+                        this.transformtype = TRANSFORMTYPE.fromValue(value);
+                    else if (name.equals("TRANSFORMALGORITHM"))
+                        this.transformalgorithm = value;
+                    else if (name.equals("TRANSFORMKEY"))
+                        this.transformkey = value;
+                    else if (name.equals("TRANSFORMBEHAVIOR"))
+                        this.transformbehavior = value;
+                    else if (name.equals("TRANSFORMORDER"))
+                        this.transformorder = new BigInteger(value);
+                    else
+                        super.unmarshalAttribute(name, value);
                 }
 
                 /**
@@ -0,0 +1,626 @@
+/**
+ * FixityAudit.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FixityVerifier.Result;
+import com.anearalone.mets.FixityVerifier.Status;
+
+/**
+ * Re-verifies the files of a corpus of METS documents, over and over, so that every file is checked
+ * at least once per {@link #getInterval(TimeUnit)}. The documents are the files under a directory
+ * whose names match a glob (<code>*.xml</code> by default). Each is read with
+ * {@link MetsStreamReader#parse(InputStream, MetsHandler)}, only for its <code>mets:file</code>s, and
+ * their <code>xlink:href</code>s are resolved against the directory the document is in; a
+ * {@link FixityVerifier} does the rest. Only one document is held in memory at a time.
+ * <p>
+ * When each file was last verified, and how that went, is kept in a journal: a text file that
+ * results are appended to as they come in, and that is rewritten without the old entries at the end
+ * of each cycle. Stopping an audit (by interrupting it, or by killing the JVM) loses at most the
+ * files being read at the time, and the next cycle carries on from there. The files that were
+ * verified longest ago (or never) go first: documents are taken in order of the oldest verification
+ * of any of their files, and their files in order of their own. A document that hasn't changed and
+ * has no files due isn't read at all. A file that wasn't {@link Status#OK} last time is due every
+ * cycle, and goes first, so that it is reported until it is put right.
+ * <p>
+ * The bytes read per second can be limited, so that an audit can run for weeks alongside other work
+ * on the same storage. Run a single cycle with {@link #runCycle()}, or keep one going with
+ * {@link #schedule(ScheduledExecutorService, long, TimeUnit)}. Cycles don't overlap.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class FixityAudit {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // files verified between journal writes, at most
+    private static final int BATCH_FILES = 64;
+    private static final long BATCH_BYTES = 1024L * 1024 * 1024;
+
+    private final Path corpusDirectory;
+    private final Path journal;
+    private final DigestService digestService = new DigestService();
+    private volatile PathMatcher documentMatcher = FileSystems.getDefault().getPathMatcher("glob:*.xml");
+    private volatile long interval = TimeUnit.DAYS.toMillis(90);
+    // document (relative to corpusDirectory) -> file key -> last verification; read on first use
+    private Map<String, Map<String, Entry>> entries;
+
+    /**
+     * @param corpusDirectory
+     *            where the METS documents are, in any number of subdirectories
+     * @param journal
+     *            the file progress is kept in; created if it doesn't exist
+     */
+    public FixityAudit(Path corpusDirectory, Path journal) {
+        this.corpusDirectory = corpusDirectory.toAbsolutePath().normalize();
+        this.journal = journal;
+    }
+
+    /**
+     * Runs {@link #runCycle()} with a fixed delay between the end of one cycle and the start of the
+     * next. The schedule stops if a cycle fails (with an {@link IOException}, e.g. if the journal
+     * can't be written), and the failure can be had from the future.
+     *
+     * @param executor
+     * @param delay
+     *            between cycles
+     * @param unit
+     * @return cancel it (with interruption) to stop the audit
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService executor, long delay, TimeUnit unit) {
+        return executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runCycle();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Fixity audit of " + corpusDirectory + " failed", e);
+                }
+            }
+        }, 0, delay, unit);
+    }
+
+    /**
+     * Verifies every file that is due, i.e. that wasn't verified within the interval, or wasn't
+     * {@link Status#OK} when it was.
+     *
+     * @return what was done, and what was wrong
+     * @throws IOException
+     *             if the corpus can't be listed, or the journal can't be read or written. Documents
+     *             and files that can't be read are reported as {@link Problem}s instead.
+     * @throws InterruptedException
+     *             if the calling thread is interrupted; what was verified so far is in the journal
+     */
+    public synchronized Summary runCycle() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        if (entries == null) {
+            entries = readJournal();
+            // without any line cut short last time, which would run into the next one appended
+            writeJournal();
+        }
+        long cutoff = System.currentTimeMillis() - this.interval;
+        Summary summary = new Summary();
+        final Map<Path, Long> documents = listDocuments();
+        final Map<Path, Long> oldest = new HashMap<Path, Long>(documents.size() * 4 / 3 + 1);
+        for (Map.Entry<Path, Long> document : documents.entrySet())
+            oldest.put(document.getKey(), oldest(document.getKey(), document.getValue()));
+        List<Path> order = new ArrayList<Path>(documents.keySet());
+        Collections.sort(order, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                int c = oldest.get(a).compareTo(oldest.get(b));
+                return c != 0 ? c : a.compareTo(b);
+            }
+        });
+
+        MetsStreamReader reader = newReader();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(journal.toFile(), true), UTF_8));
+        try {
+            for (Path document : order) {
+                if (oldest.get(document) >= cutoff) {
+                    summary.documentsSkipped++;
+                    continue;
+                }
+                audit(document, reader, cutoff, out, summary);
+            }
+        } finally {
+            out.close();
+        }
+        // forget documents that have gone
+        for (Iterator<String> i = entries.keySet().iterator(); i.hasNext();) {
+            if (!documents.containsKey(corpusDirectory.resolve(i.next())))
+                i.remove();
+        }
+        writeJournal();
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    /**
+     * @param unit
+     * @return how often each file is verified
+     */
+    public long getInterval(TimeUnit unit) {
+        return unit.convert(interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param interval
+     *            how often each file is to be verified; 90 days by default. Files that were verified
+     *            more recently are skipped, unless they weren't {@link Status#OK}.
+     * @param unit
+     */
+    public void setInterval(long interval, TimeUnit unit) {
+        if (interval < 0)
+            throw new IllegalArgumentException("interval must not be negative");
+        this.interval = unit.toMillis(interval);
+    }
+
+    /**
+     * @param glob
+     *            which file names are METS documents, e.g. <code>*.xml</code> (the default) or
+     *            <code>mets.xml</code>
+     */
+    public void setDocumentGlob(String glob) {
+        this.documentMatcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    /**
+     * @return the most bytes read per second, or 0 if there's no limit
+     */
+    public long getMaxBytesPerSecond() {
+        return digestService.getMaxBytesPerSecond();
+    }
+
+    /**
+     * @param maxBytesPerSecond
+     *            the most bytes to read per second, or 0 for no limit (the default)
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        digestService.setMaxBytesPerSecond(maxBytesPerSecond);
+    }
+
+    /**
+     * @return the number of files read at once
+     */
+    public int getParallelism() {
+        return digestService.getParallelism();
+    }
+
+    /**
+     * @param parallelism
+     *            the number of files to read at once; the number of processors by default
+     */
+    public void setParallelism(int parallelism) {
+        digestService.setParallelism(parallelism);
+    }
+
+    private void audit(Path document, MetsStreamReader reader, long cutoff, Writer out, Summary summary)
+            throws IOException, InterruptedException {
+        final List<File> files = new ArrayList<File>();
+        try {
+            InputStream in = Files.newInputStream(document);
+            try {
+                reader.parse(in, new DefaultMetsHandler() {
+                    @Override
+                    public boolean onMdSecStart(String localName, MdSec mdSec) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onAmdSecStart(AmdSec amdSec) {
+                        return false;
+                    }
+
+                    @Override
+                    public void onFile(File file) {
+                        FixityVerifier.collect(file, files);
+                    }
+
+                    @Override
+                    public boolean onStructMapStart(StructMap structMap) {
+                        return false;
+                    }
+                });
+            } finally {
+                in.close();
+            }
+        } catch (NoSuchFileException e) {
+            // deleted since the corpus was listed
+            return;
+        } catch (IOException e) {
+            summary.problems.add(new Problem(document, null, null, e.toString()));
+            return;
+        } catch (XMLStreamException e) {
+            summary.problems.add(new Problem(document, null, null, e.getMessage()));
+            return;
+        }
+        summary.documentsRead++;
+
+        String name = name(document);
+        Map<String, Entry> known = entries.get(name);
+        if (known == null) {
+            known = new HashMap<String, Entry>();
+            entries.put(name, known);
+        }
+        // forget files that have gone, and put the rest in order
+        final Map<File, Long> last = new HashMap<File, Long>(files.size() * 4 / 3 + 1);
+        Map<String, Entry> present = new HashMap<String, Entry>(files.size() * 4 / 3 + 1);
+        List<File> due = new ArrayList<File>();
+        for (File file : files) {
+            String key = key(file);
+            if (key == null)
+                continue;
+            Entry entry = known.get(key);
+            if (entry != null)
+                present.put(key, entry);
+            if (entry == null || entry.isDue(cutoff)) {
+                last.put(file, entry == null || entry.status != Status.OK ? Long.MIN_VALUE : entry.verified);
+                due.add(file);
+            } else
+                summary.filesSkipped++;
+        }
+        known.keySet().retainAll(present.keySet());
+        Collections.sort(due, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return last.get(a).compareTo(last.get(b));
+            }
+        });
+
+        FixityVerifier verifier = new FixityVerifier(document.getParent(), digestService);
+        int from = 0;
+        while (from < due.size()) {
+            int to = from;
+            long bytes = 0;
+            while (to < due.size() && to - from < BATCH_FILES && bytes < BATCH_BYTES) {
+                Long size = due.get(to++).getSIZE();
+                bytes += size == null ? 0 : size;
+            }
+            FixityVerifier.Report report = verifier.verify(due.subList(from, to));
+            long now = System.currentTimeMillis();
+            for (Result result : report.getResults()) {
+                String key = key(result.getFile());
+                Entry entry = new Entry(now, result.getStatus());
+                known.put(key, entry);
+                append(out, name, key, entry);
+                if (result.getStatus() != Status.OK)
+                    summary.problems.add(new Problem(document, result.getFile().getID(), result.getStatus(),
+                            result.getMessage()));
+            }
+            out.flush();
+            summary.filesVerified += report.getResults().size();
+            summary.bytesRead += report.getBytesRead();
+            from = to;
+        }
+    }
+
+    /*
+     * When the longest-unverified file in a document was last verified, or Long.MIN_VALUE if it may
+     * have files that have never been
+     */
+    private long oldest(Path document, long modified) {
+        Map<String, Entry> known = entries.get(name(document));
+        if (known == null || known.isEmpty())
+            return Long.MIN_VALUE;
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (Entry entry : known.values()) {
+            // to be checked again straight away
+            if (entry.status != Status.OK)
+                return Long.MIN_VALUE;
+            oldest = Math.min(oldest, entry.verified);
+            newest = Math.max(newest, entry.verified);
+        }
+        // changed since it was last read, so there may be new files
+        return modified > newest ? Long.MIN_VALUE : oldest;
+    }
+
+    /*
+     * The documents in the corpus, and when they were last modified
+     */
+    private Map<Path, Long> listDocuments() throws IOException {
+        final Map<Path, Long> documents = new HashMap<Path, Long>();
+        final PathMatcher matcher = this.documentMatcher;
+        Files.walkFileTree(corpusDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && matcher.matches(file.getFileName()))
+                    documents.put(file, attrs.lastModifiedTime().toMillis());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                // e.g. deleted while being walked; it will be picked up (or not) next time
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return documents;
+    }
+
+    private String name(Path document) {
+        return corpusDirectory.relativize(document).toString();
+    }
+
+    /*
+     * What a mets:file is known as in the journal: its ID, or failing that where it is
+     */
+    private static String key(File file) {
+        if (file.getID() != null)
+            return file.getID();
+        for (File.FLocat fLocat : file.getFLocat()) {
+            if (fLocat.getXlinkHREF() != null)
+                return "@" + fLocat.getXlinkHREF();
+        }
+        return null;
+    }
+
+    private static MetsStreamReader newReader() {
+        try {
+            return new MetsStreamReader();
+        } catch (ParserConfigurationException e) {
+            // can't happen: the reader uses the platform defaults
+            throw new IllegalStateException(e);
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * One line per verification: time, status, document and file, separated by tabs. Later lines
+     * win. A line that isn't complete (because the JVM died while writing it) is ignored.
+     */
+    private Map<String, Map<String, Entry>> readJournal() throws IOException {
+        Map<String, Map<String, Entry>> entries = new HashMap<String, Map<String, Entry>>();
+        if (!Files.exists(journal))
+            return entries;
+        BufferedReader in = Files.newBufferedReader(journal, UTF_8);
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 4)
+                    continue;
+                Entry entry;
+                try {
+                    entry = new Entry(Long.parseLong(fields[0]), Status.valueOf(fields[1]));
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                String document = unescape(fields[2]);
+                Map<String, Entry> files = entries.get(document);
+                if (files == null) {
+                    files = new HashMap<String, Entry>();
+                    entries.put(document, files);
+                }
+                files.put(unescape(fields[3]), entry);
+            }
+        } finally {
+            in.close();
+        }
+        return entries;
+    }
+
+    /*
+     * Rewrites the journal with just the latest entries, atomically (where the file system allows)
+     */
+    private void writeJournal() throws IOException {
+        Path tmp = journal.resolveSibling(journal.getFileName() + ".tmp");
+        Writer out = Files.newBufferedWriter(tmp, UTF_8);
+        try {
+            for (Map.Entry<String, Map<String, Entry>> document : entries.entrySet()) {
+                for (Map.Entry<String, Entry> file : document.getValue().entrySet())
+                    append(out, document.getKey(), file.getKey(), file.getValue());
+            }
+        } finally {
+            out.close();
+        }
+        try {
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tmp, journal, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void append(Writer out, String document, String key, Entry entry) throws IOException {
+        out.write(Long.toString(entry.verified));
+        out.write('\t');
+        out.write(entry.status.name());
+        out.write('\t');
+        out.write(escape(document));
+        out.write('\t');
+        out.write(escape(key));
+        out.write('\n');
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    private static String unescape(String s) {
+        if (s.indexOf('\\') < 0)
+            return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                sb.append(c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            } else
+                sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /*
+     * When a file was last verified, and how that went
+     */
+    private static class Entry {
+        final long verified;
+        final Status status;
+
+        Entry(long verified, Status status) {
+            this.verified = verified;
+            this.status = status;
+        }
+
+        /*
+         * Files that weren't OK are checked every cycle until they are
+         */
+        boolean isDue(long cutoff) {
+            return status != Status.OK || verified < cutoff;
+        }
+    }
+
+    /**
+     * Something wrong with a document, or with one of its files.
+     */
+    public static class Problem {
+        private final Path document;
+        private final String fileID;
+        private final Status status;
+        private final String message;
+
+        Problem(Path document, String fileID, Status status, String message) {
+            this.document = document;
+            this.fileID = fileID;
+            this.status = status;
+            this.message = message;
+        }
+
+        public Path getDocument() {
+            return document;
+        }
+
+        /**
+         * @return the <code>@ID</code> of the <code>mets:file</code>, or null if the document
+         *         itself couldn't be read
+         */
+        public String getFileID() {
+            return fileID;
+        }
+
+        /**
+         * @return what was wrong with the file, or null if the document itself couldn't be read
+         */
+        public Status getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return document + (fileID == null ? "" : " " + fileID) + ": " + (status == null ? "" : status + ": ")
+                    + message;
+        }
+    }
+
+    /**
+     * What a cycle did.
+     */
+    public static class Summary {
+        private final List<Problem> problems = new ArrayList<Problem>();
+        private int documentsRead;
+        private int documentsSkipped;
+        private int filesVerified;
+        private int filesSkipped;
+        private long bytesRead;
+        private long elapsedNanos;
+
+        /**
+         * @return every file that wasn't {@link Status#OK}, and every document that couldn't be
+         *         read
+         */
+        public List<Problem> getProblems() {
+            return problems;
+        }
+
+        public int getDocumentsRead() {
+            return documentsRead;
+        }
+
+        /**
+         * @return the documents that weren't read, because none of their files were due
+         */
+        public int getDocumentsSkipped() {
+            return documentsSkipped;
+        }
+
+        public int getFilesVerified() {
+            return filesVerified;
+        }
+
+        /**
+         * @return the files that weren't verified, in documents that were read, because they
+         *         weren't due
+         */
+        public int getFilesSkipped() {
+            return filesSkipped;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return documentsRead + " documents read (" + documentsSkipped + " not due), " + filesVerified
+                    + " files verified (" + filesSkipped + " not due), " + bytesRead + " bytes in "
+                    + String.format("%.3fs", elapsedNanos / 1e9) + "; " + problems.size() + " problems";
+        }
+    }
+}
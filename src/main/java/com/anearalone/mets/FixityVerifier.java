@@ -0,0 +1,441 @@
+/**
+ * FixityVerifier.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FileSec.FileGrp.File.FLocat;
+import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
+
+/**
+ * Checks the <code>CHECKSUM</code> and <code>SIZE</code> of every <code>mets:file</code> against
+ * the file its <code>FLocat</code> points to. <code>xlink:href</code>s that are relative (or have no
+ * scheme) are resolved against a base directory; <code>file:</code> URIs are used as they are.
+ * Anything else isn't local, and is reported as such.
+ * <p>
+ * Files are read in parallel by a {@link DigestService}, each only once however many
+ * <code>mets:file</code>s point to it. The number of files read at once, and the total number of
+ * bytes read per second (across all of them), can be limited so that verification can run alongside
+ * other work on the same storage.
+ * <p>
+ * <code>CHECKSUM</code>s are compared as hexadecimal, ignoring case. <code>HAVAL</code>,
+ * <code>MNP</code>, <code>TIGER</code> and <code>WHIRLPOOL</code> are only supported if a
+ * {@link java.security.Provider} is installed that supports them.
+ * <p>
+ * Set the options before calling {@link #verify(Mets)}; once configured, a given instance may be
+ * reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class FixityVerifier {
+    private final Path baseDirectory;
+    private final DigestService digestService;
+
+    /**
+     * @param baseDirectory
+     *            what relative <code>xlink:href</code>s are relative to
+     */
+    public FixityVerifier(Path baseDirectory) {
+        this(baseDirectory, new DigestService());
+    }
+
+    /**
+     * A verifier that shares <code>digestService</code>, and so its options (including its limit on
+     * bytes read per second) with others.
+     *
+     * @param baseDirectory
+     *            what relative <code>xlink:href</code>s are relative to
+     * @param digestService
+     */
+    public FixityVerifier(Path baseDirectory, DigestService digestService) {
+        this.baseDirectory = baseDirectory;
+        this.digestService = digestService;
+    }
+
+    /**
+     * Verifies every <code>mets:file</code> in the <code>fileSec</code>, including those nested in
+     * other <code>mets:file</code>s.
+     *
+     * @param mets
+     * @return a {@link Result} for each <code>mets:file</code>, in document order
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the files to be read
+     */
+    public Report verify(Mets mets) throws InterruptedException {
+        List<File> files = new ArrayList<File>();
+        if (mets.fileSec != null) {
+            for (FileGrp fileGrp : mets.fileSec.getFileGrp())
+                collect(fileGrp, files);
+        }
+        return verify(files);
+    }
+
+    /**
+     * @param files
+     * @return a {@link Result} for each of <code>files</code>, in the same order
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting for the files to be read
+     */
+    public Report verify(List<File> files) throws InterruptedException {
+        long start = System.nanoTime();
+        // each file is read once, for every CHECKSUMTYPE any mets:file wants of it
+        List<Path> paths = new ArrayList<Path>(files.size());
+        Map<Path, Set<CHECKSUMTYPE>> wanted = new LinkedHashMap<Path, Set<CHECKSUMTYPE>>();
+        for (File file : files) {
+            Path path = null;
+            for (FLocat fLocat : file.getFLocat()) {
+                path = resolve(fLocat.getXlinkHREF());
+                if (path != null)
+                    break;
+            }
+            paths.add(path);
+            if (path == null)
+                continue;
+            Set<CHECKSUMTYPE> types = wanted.get(path);
+            if (types == null) {
+                types = EnumSet.noneOf(CHECKSUMTYPE.class);
+                wanted.put(path, types);
+            }
+            CHECKSUMTYPE type = file.getCHECKSUMTYPE();
+            if (file.getCHECKSUM() != null && type != null && DigestService.isSupported(type))
+                types.add(type);
+        }
+        Map<Path, DigestService.Result> digested = digestService.digest(wanted);
+        long bytesRead = 0;
+        for (Map.Entry<Path, Set<CHECKSUMTYPE>> e : wanted.entrySet()) {
+            if (!e.getValue().isEmpty())
+                bytesRead += digested.get(e.getKey()).getSize();
+        }
+        List<Result> results = new ArrayList<Result>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            Path path = paths.get(i);
+            results.add(verify(files.get(i), path, path == null ? null : digested.get(path)));
+        }
+        return new Report(results, bytesRead, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the number of files read at once
+     */
+    public int getParallelism() {
+        return digestService.getParallelism();
+    }
+
+    /**
+     * @param parallelism
+     *            the number of files to read at once; the number of processors by default
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        digestService.setParallelism(parallelism);
+    }
+
+    /**
+     * @return the most bytes read per second, across all files, or 0 if there's no limit
+     */
+    public long getMaxBytesPerSecond() {
+        return digestService.getMaxBytesPerSecond();
+    }
+
+    /**
+     * @param maxBytesPerSecond
+     *            the most bytes to read per second, across all files, or 0 for no limit (the
+     *            default)
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        if (maxBytesPerSecond < 0)
+            throw new IllegalArgumentException("maxBytesPerSecond must not be negative");
+        digestService.setMaxBytesPerSecond(maxBytesPerSecond);
+    }
+
+    /**
+     * @return the size of the (direct) buffer each file is read through
+     */
+    public int getBufferSize() {
+        return digestService.getBufferSize();
+    }
+
+    /**
+     * @param bufferSize
+     *            the size of the (direct) buffer each file is read through; 1MB by default
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        digestService.setBufferSize(bufferSize);
+    }
+
+    /**
+     * Resolves an <code>xlink:href</code> to a local file, without checking that it exists.
+     *
+     * @param href
+     * @return null if <code>href</code> isn't a relative reference or a <code>file:</code> URI
+     */
+    public Path resolve(String href) {
+        if (href == null)
+            return null;
+        try {
+            URI uri = new URI(href);
+            if (uri.getScheme() == null)
+                return uri.getPath() == null ? null : baseDirectory.resolve(uri.getPath()).normalize();
+            if (uri.getScheme().equalsIgnoreCase("file"))
+                return Paths.get(uri);
+            return null;
+        } catch (URISyntaxException e) {
+            // not escaped, e.g. a plain relative path with spaces in it
+            return resolveUnescaped(href);
+        } catch (IllegalArgumentException e) {
+            // e.g. a file: URI with an authority, or an InvalidPathException
+            return null;
+        }
+    }
+
+    private Path resolveUnescaped(String href) {
+        // a scheme, other than a Windows drive letter
+        if (href.matches("^[A-Za-z][A-Za-z0-9+.-]*:.*") && !href.matches("^[A-Za-z]:[\\\\/].*"))
+            return null;
+        try {
+            return baseDirectory.resolve(href).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private static void collect(FileGrp fileGrp, List<File> files) {
+        for (FileGrp sub : fileGrp.getFileGrp())
+            collect(sub, files);
+        for (File file : fileGrp.getFile())
+            collect(file, files);
+    }
+
+    static void collect(File file, List<File> files) {
+        files.add(file);
+        for (File sub : file.getFile())
+            collect(sub, files);
+    }
+
+    private static Result verify(File file, Path path, DigestService.Result digested) {
+        if (path == null)
+            return new Result(file, null, Status.NOT_LOCAL, null, -1, "no FLocat with a local xlink:href");
+        if (digested.getException() instanceof NoSuchFileException)
+            return new Result(file, path, Status.MISSING, null, -1, "no such file");
+        if (digested.getException() != null)
+            return new Result(file, path, Status.ERROR, null, digested.getSize(), digested.getException()
+                    .toString());
+        long size = digested.getSize();
+        if (file.getSIZE() != null && file.getSIZE() != size)
+            return new Result(file, path, Status.SIZE_MISMATCH, null, size, "SIZE is " + file.getSIZE()
+                    + " but the file is " + size + " bytes");
+        if (file.getCHECKSUM() == null || file.getCHECKSUMTYPE() == null)
+            return new Result(file, path, Status.NO_CHECKSUM, null, size, "no CHECKSUM and CHECKSUMTYPE");
+        String actual = digested.getChecksum(file.getCHECKSUMTYPE());
+        if (actual == null)
+            return new Result(file, path, Status.UNSUPPORTED, null, size, file.getCHECKSUMTYPE().value()
+                    + " is not supported");
+        if (Digest.equal(file.getCHECKSUMTYPE(), file.getCHECKSUM(), actual))
+            return new Result(file, path, Status.OK, actual, size, null);
+        return new Result(file, path, Status.MISMATCH, actual, size, "CHECKSUM is " + file.getCHECKSUM() + " but the "
+                + file.getCHECKSUMTYPE().value() + " of the file is " + actual);
+    }
+
+    /**
+     * The outcome of verifying a <code>mets:file</code>.
+     */
+    public enum Status {
+        /** The file's checksum (and size, if given) match */
+        OK,
+        /** The file's checksum doesn't match <code>CHECKSUM</code> */
+        MISMATCH,
+        /** The file's size doesn't match <code>SIZE</code>; the checksum wasn't compared */
+        SIZE_MISMATCH,
+        /** The file doesn't exist */
+        MISSING,
+        /** There's no <code>CHECKSUM</code> (or <code>CHECKSUMTYPE</code>); only the size was checked */
+        NO_CHECKSUM,
+        /** <code>CHECKSUMTYPE</code> isn't supported by any installed provider */
+        UNSUPPORTED,
+        /** No <code>FLocat</code> points to a local file */
+        NOT_LOCAL,
+        /** The file couldn't be read */
+        ERROR
+    }
+
+    /**
+     * The result of verifying one <code>mets:file</code>.
+     */
+    public static class Result {
+        private final File file;
+        private final Path path;
+        private final Status status;
+        private final String actualChecksum;
+        private final long size;
+        private final String message;
+
+        Result(File file, Path path, Status status, String actualChecksum, long size, String message) {
+            this.file = file;
+            this.path = path;
+            this.status = status;
+            this.actualChecksum = actualChecksum;
+            this.size = size;
+            this.message = message;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the file that was checked, or null if there wasn't one
+         */
+        public Path getPath() {
+            return path;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the checksum of the file, in lower case hexadecimal, or null if it wasn't hashed
+         */
+        public String getActualChecksum() {
+            return actualChecksum;
+        }
+
+        /**
+         * @return the size of the file (or as much as was read of it), or -1 if it wasn't found
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * @return what was wrong, or null if the status is {@link Status#OK}
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            String id = file.getID() == null ? "" : file.getID() + " ";
+            return id + status + (message == null ? "" : ": " + message);
+        }
+    }
+
+    /**
+     * The results of {@link FixityVerifier#verify(Mets)}, with totals.
+     */
+    public static class Report {
+        private final List<Result> results;
+        private final Map<Status, Integer> counts = new EnumMap<Status, Integer>(Status.class);
+        private final long bytesRead;
+        private final long elapsedNanos;
+
+        Report(List<Result> results, long bytesRead, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.bytesRead = bytesRead;
+            this.elapsedNanos = elapsedNanos;
+            for (Status s : Status.values())
+                counts.put(s, 0);
+            for (Result r : results)
+                counts.put(r.getStatus(), counts.get(r.getStatus()) + 1);
+        }
+
+        /**
+         * @return every result, in the order the files were given
+         */
+        public List<Result> getResults() {
+            return results;
+        }
+
+        /**
+         * @return the results that aren't {@link Status#OK}
+         */
+        public List<Result> getProblems() {
+            List<Result> problems = new ArrayList<Result>();
+            for (Result r : results) {
+                if (r.getStatus() != Status.OK)
+                    problems.add(r);
+            }
+            return problems;
+        }
+
+        /**
+         * @param status
+         * @return the number of results with <code>status</code>
+         */
+        public int getCount(Status status) {
+            return counts.get(status);
+        }
+
+        /**
+         * @return whether every file was verified and matched
+         */
+        public boolean isOK() {
+            return counts.get(Status.OK) == results.size();
+        }
+
+        /**
+         * @return the total bytes read
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return the average rate of reading, over the whole run
+         */
+        public double getBytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytesRead * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(results.size()).append(" files");
+            for (Map.Entry<Status, Integer> c : counts.entrySet()) {
+                if (c.getValue() > 0)
+                    sb.append(", ").append(c.getValue()).append(' ').append(c.getKey());
+            }
+            sb.append("; ").append(bytesRead).append(" bytes in ")
+                    .append(String.format("%.3f", elapsedNanos / 1e9)).append("s (")
+                    .append(String.format("%.1f", getBytesPerSecond() / (1024 * 1024))).append(" MB/s)");
+            return sb.toString();
+        }
+    }
+}
@@ -15,8 +15,17 @@
  */
 package com.anearalone.mets;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+
+import com.anearalone.utils.DOMHelp;
+import com.anearalone.utils.StAXHelp;
 
 /**
  * Superclass for any (i.e., all) METS elements that allow <code>@ID</code>.
@@ -58,6 +67,17 @@ public abstract class IDElement implements ElementInterface {
             e.setAttribute("ID", this.id);
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.anearalone.mets.ElementInterface#marshal(javax.xml.stream.XMLStreamWriter)
+     */
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        if (this.id != null)
+            w.writeAttribute("ID", this.id);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -65,7 +85,63 @@ public abstract class IDElement implements ElementInterface {
      */
     @Override
     public void unmarshal(Element e) {
-        this.id = e.hasAttribute("ID") ? e.getAttribute("ID") : null;
+        this.id = null;
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr attr = (Attr) attrs.item(i);
+            unmarshalAttribute(DOMHelp.getAttributeName(attr), attr.getNodeValue());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.anearalone.mets.ElementInterface#unmarshal(javax.xml.stream.XMLStreamReader)
+     */
+    @Override
+    public void unmarshal(XMLStreamReader r) throws XMLStreamException {
+        unmarshalAttributes(r);
+        while (StAXHelp.nextChildElement(r))
+            unmarshalChild(r);
+    }
+
+    /**
+     * Sets the field corresponding to a single attribute. Shared by the DOM and StAX unmarshallers
+     * so that each class only maps its attributes once. Subclasses should call super for any
+     * attribute they do not recognize.
+     * 
+     * @param name
+     *            the attribute name; XLink attributes are always prefixed with <code>xlink:</code>
+     * @param value
+     */
+    protected void unmarshalAttribute(String name, String value) {
+        if (name.equals("ID"))
+            this.id = value;
+    }
+
+    /**
+     * Passes each attribute on the reader's current element to
+     * {@link #unmarshalAttribute(String, String)}.
+     * 
+     * @param r
+     */
+    protected void unmarshalAttributes(XMLStreamReader r) {
+        this.id = null;
+        for (int i = 0; i < r.getAttributeCount(); i++)
+            unmarshalAttribute(StAXHelp.getAttributeName(r, i), r.getAttributeValue(i));
+    }
+
+    /**
+     * Called by {@link #unmarshal(XMLStreamReader)} for each child element. The default
+     * implementation skips the child, so subclasses only need to handle the elements they support.
+     * 
+     * @param r
+     *            positioned on the child's <code>START_ELEMENT</code>; must be left on its
+     *            <code>END_ELEMENT</code>
+     * @throws XMLStreamException
+     */
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        StAXHelp.skipElement(r);
     }
 
 }
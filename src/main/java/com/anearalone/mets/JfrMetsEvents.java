@@ -0,0 +1,249 @@
+/**
+ * JfrMetsEvents.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import com.anearalone.mets.Mets.Section;
+import com.anearalone.mets.MetsListener.Operation;
+
+/**
+ * The {@link MetsEvents} of a JVM with Flight Recorder. Only loaded (by name) if there is one, as
+ * nothing else may refer to <code>jdk.jfr</code>.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+final class JfrMetsEvents extends MetsEvents {
+
+    @Override
+    MetsProbe probe(MetsIO io, MetsListener listener, Operation operation) {
+        boolean read = operation == Operation.READ;
+        boolean documents = read ? new ReadEvent().isEnabled() : new WriteEvent().isEnabled();
+        boolean sections = read ? new SectionReadEvent().isEnabled() : new SectionWriteEvent().isEnabled();
+        boolean transforms = !read && new TransformEvent().isEnabled();
+        if (listener == null && !documents && !sections && !transforms)
+            return null;
+        return new Probe(io, listener, operation, documents, sections, transforms);
+    }
+
+    @Override
+    Validation validation(Class<?> validator) {
+        final ValidateEvent event = new ValidateEvent();
+        if (!event.isEnabled())
+            return null;
+        event.validator = validator.getSimpleName();
+        event.begin();
+        return new Validation() {
+            @Override
+            void end(String objid, int problems) {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.objid = objid;
+                    event.problems = problems;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /*
+     * Adds events to what a MetsProbe measures
+     */
+    private static final class Probe extends MetsProbe {
+        private final MetsIO io;
+        private final DocumentEvent document;
+        private final boolean sections;
+        private final boolean transforms;
+        private SectionEvent section;
+        private TransformEvent transform;
+
+        Probe(MetsIO io, MetsListener listener, Operation operation, boolean documents, boolean sections,
+                boolean transforms) {
+            super(listener, operation);
+            this.io = io;
+            this.sections = sections;
+            this.transforms = transforms;
+            if (documents) {
+                this.document = operation == Operation.READ ? new ReadEvent() : new WriteEvent();
+                this.document.begin();
+            } else
+                this.document = null;
+        }
+
+        @Override
+        long start() {
+            if (this.sections) {
+                this.section = this.operation == Operation.READ ? new SectionReadEvent() : new SectionWriteEvent();
+                this.section.begin();
+            }
+            return super.start();
+        }
+
+        @Override
+        void add(Section section, long nanos, long count) {
+            super.add(section, nanos, count);
+            SectionEvent event = this.section;
+            if (event == null)
+                return;
+            this.section = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.section = section.localName();
+                event.objid = objid();
+                event.elements = count;
+                event.commit();
+            }
+        }
+
+        @Override
+        void beginTransform() {
+            if (this.transforms) {
+                this.transform = new TransformEvent();
+                this.transform.begin();
+            }
+        }
+
+        @Override
+        void endTransform() {
+            TransformEvent event = this.transform;
+            if (event == null)
+                return;
+            this.transform = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.objid = objid();
+                event.elements = elements();
+                event.commit();
+            }
+        }
+
+        @Override
+        void done(long bytes) {
+            super.done(bytes);
+            end(bytes, null);
+        }
+
+        @Override
+        void failed(Exception e) {
+            super.failed(e);
+            end(-1, e);
+        }
+
+        private void end(long bytes, Exception failure) {
+            DocumentEvent event = this.document;
+            if (event == null)
+                return;
+            event.end();
+            if (event.shouldCommit()) {
+                event.io = this.io.getClass().getSimpleName();
+                event.objid = objid();
+                event.bytes = bytes;
+                event.elements = elements();
+                event.failure = failure == null ? null : failure.getClass().getName();
+                event.commit();
+            }
+        }
+    }
+
+    @Category("METS")
+    abstract static class DocumentEvent extends Event {
+        @Label("Reader or Writer")
+        String io;
+        @Label("OBJID")
+        String objid;
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+        @Label("Elements")
+        long elements;
+        @Label("Failure")
+        @Description("The class of the exception, if it failed")
+        String failure;
+    }
+
+    @Name(MetsEvents.READ)
+    @Label("METS Read")
+    @Description("A METS document read")
+    @Threshold("20 ms")
+    static final class ReadEvent extends DocumentEvent {
+    }
+
+    @Name(MetsEvents.WRITE)
+    @Label("METS Write")
+    @Description("A METS document written")
+    @Threshold("20 ms")
+    static final class WriteEvent extends DocumentEvent {
+    }
+
+    @Category("METS")
+    @StackTrace(false)
+    abstract static class SectionEvent extends Event {
+        @Label("Section")
+        String section;
+        @Label("OBJID")
+        String objid;
+        @Label("Elements")
+        long elements;
+    }
+
+    @Name(MetsEvents.SECTION_READ)
+    @Label("METS Section Unmarshal")
+    @Description("A top-level section of a METS document unmarshalled")
+    @Threshold("10 ms")
+    static final class SectionReadEvent extends SectionEvent {
+    }
+
+    @Name(MetsEvents.SECTION_WRITE)
+    @Label("METS Section Marshal")
+    @Description("A top-level section of a METS document marshalled")
+    @Threshold("10 ms")
+    static final class SectionWriteEvent extends SectionEvent {
+    }
+
+    @Name(MetsEvents.TRANSFORM)
+    @Label("METS Transform")
+    @Description("The DOM of a METS document serialized by MetsWriter")
+    @Category("METS")
+    @Threshold("20 ms")
+    static final class TransformEvent extends Event {
+        @Label("OBJID")
+        String objid;
+        @Label("Elements")
+        long elements;
+    }
+
+    @Name(MetsEvents.VALIDATE)
+    @Label("METS Validate")
+    @Description("A METS document validated")
+    @Category("METS")
+    @Threshold("20 ms")
+    static final class ValidateEvent extends Event {
+        @Label("Validator")
+        String validator;
+        @Label("OBJID")
+        String objid;
+        @Label("Problems")
+        long problems;
+    }
+}
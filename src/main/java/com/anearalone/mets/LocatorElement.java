@@ -15,10 +15,12 @@
  */
 package com.anearalone.mets;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 /**
  * Location fields common to <code>mets:FLocat</code>, <code>mets:mdRef</code>,
@@ -251,33 +253,52 @@ public abstract class LocatorElement extends IDElement implements ElementInterfa
     }
 
     @Override
-    public void unmarshal(Element e) {
-        super.unmarshal(e);
-        NamedNodeMap attrs = e.getAttributes();
-        for (int i = 0; i < attrs.getLength(); i++) {
-            Attr attr = (Attr) attrs.item(i);
-            String name = attr.getName();
-            String value = attr.getNodeValue();
-            if (name.equals("xlink:type"))
-                this.xlinkType = TYPE.fromValue(value);
-            if (name.equals("xlink:href"))
-                this.xlinkHREF = value;
-            if (name.equals("xlink:role"))
-                this.xlinkRole = value;
-            if (name.equals("xlink:arcrole"))
-                this.xlinkArcRole = value;
-            if (name.equals("xlink:title"))
-                this.xlinkTitle = value;
-            if (name.equals("OTHERLOCTYPE"))
-                this.otherloctype = value;
-            if (name.equals("xlink:show"))
-                this.xlinkShow = SHOW.fromValue(value);
-            if (name.equals("xlink:actuate"))
-                this.xlinkActuate = ACTUATE.fromValue(value);
-            if (name.equals("LOCTYPE"))
-                this.loctype = LOCTYPE.fromValue(value);
-        }
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+        String xns = NS.XLINK.ns(); // to keep lines short.
+
+        if (this.xlinkType != null)
+            w.writeAttribute("xlink", xns, "type", this.xlinkType.value());
+        if (this.xlinkHREF != null)
+            w.writeAttribute("xlink", xns, "href", this.xlinkHREF);
+        if (this.xlinkRole != null)
+            w.writeAttribute("xlink", xns, "role", this.xlinkRole);
+        if (this.xlinkArcRole != null)
+            w.writeAttribute("xlink", xns, "arcrole", this.xlinkArcRole);
+        if (this.xlinkTitle != null)
+            w.writeAttribute("xlink", xns, "title", this.xlinkTitle);
+        if (this.otherloctype != null)
+            w.writeAttribute("OTHERLOCTYPE", this.otherloctype);
+        if (this.xlinkShow != null)
+            w.writeAttribute("xlink", xns, "show", this.xlinkShow.value());
+        if (this.xlinkActuate != null)
+            w.writeAttribute("xlink", xns, "actuate", this.xlinkActuate.value());
+        if (this.loctype != null)
+            w.writeAttribute("LOCTYPE", this.loctype.value());
+    }
 
+    @Override
+    protected void unmarshalAttribute(String name, String value) {
+        if (name.equals("xlink:type"))
+            this.xlinkType = TYPE.fromValue(value);
+        else if (name.equals("xlink:href"))
+            this.xlinkHREF = value;
+        else if (name.equals("xlink:role"))
+            this.xlinkRole = value;
+        else if (name.equals("xlink:arcrole"))
+            this.xlinkArcRole = value;
+        else if (name.equals("xlink:title"))
+            this.xlinkTitle = value;
+        else if (name.equals("OTHERLOCTYPE"))
+            this.otherloctype = value;
+        else if (name.equals("xlink:show"))
+            this.xlinkShow = SHOW.fromValue(value);
+        else if (name.equals("xlink:actuate"))
+            this.xlinkActuate = ACTUATE.fromValue(value);
+        else if (name.equals("LOCTYPE"))
+            this.loctype = LOCTYPE.fromValue(value);
+        else
+            super.unmarshalAttribute(name, value);
     }
 
     /**
@@ -18,16 +18,18 @@ package com.anearalone.mets;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
 import com.anearalone.utils.DOMHelp;
+import com.anearalone.utils.StAXHelp;
 
 /**
  * From the METS Schema: A generic framework for pointing to/including metadata within a METS
@@ -49,8 +51,6 @@ public class MdSec extends IDElement implements ElementInterface {
      */
     protected List<String> admid;
 
-    protected static DatatypeFactory dtf;
-
     /**
      * The METS Schema requires an ID.
      * 
@@ -58,15 +58,11 @@ public class MdSec extends IDElement implements ElementInterface {
      */
     public MdSec(String id) {
         this.id = id;
-        if (dtf == null)
-            dtf = MetsIO.getDataTypeFactory();
     }
 
     // Needed for METS unmarshalling. The MdSec(String id) constructor is
     // preferred.
     protected MdSec() {
-        if (dtf == null)
-            dtf = MetsIO.getDataTypeFactory();
     }
 
     /**
@@ -206,23 +202,32 @@ public class MdSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+        if (this.admid != null)
+            w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+        if (this.groupid != null)
+            w.writeAttribute("GROUPID", this.groupid);
+        if (this.status != null)
+            w.writeAttribute("STATUS", this.status);
+        if (this.created != null)
+            w.writeAttribute("CREATED", this.created.toXMLFormat());
+        if (this.mdRef != null) {
+            w.writeStartElement("mets", "mdRef", NS.METS.ns());
+            this.mdRef.marshal(w);
+            w.writeEndElement();
+        }
+        if (this.mdWrap != null) {
+            w.writeStartElement("mets", "mdWrap", NS.METS.ns());
+            this.mdWrap.marshal(w);
+            w.writeEndElement();
+        }
+    }
+
     @Override
     public void unmarshal(Element mdSec) {
         super.unmarshal(mdSec);
-        NamedNodeMap attrs = mdSec.getAttributes();
-        for (int i = 0; i < attrs.getLength(); i++) {
-            Attr attr = (Attr) attrs.item(i);
-            String name = attr.getName();
-            String value = attr.getNodeValue();
-            if (name.equals("GROUPID"))
-                this.groupid = value;
-            if (name.equals("STATUS"))
-                this.status = value;
-            if (name.equals("CREATED"))
-                this.created = dtf.newXMLGregorianCalendar(value);
-            if (name.equals("ADMID"))
-                this.admid = MetsReader.parseIDREFAttr(value);
-        }
 
         List<Element> children = DOMHelp.getChildElements(mdSec);
         for (Element child : children) {
@@ -238,6 +243,34 @@ public class MdSec extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalAttribute(String name, String value) {
+        if (name.equals("GROUPID"))
+            this.groupid = value;
+        else if (name.equals("STATUS"))
+            this.status = value;
+        else if (name.equals("CREATED"))
+            this.created = MetsIO.getDataTypeFactory().newXMLGregorianCalendar(value);
+        else if (name.equals("ADMID"))
+            this.admid = MetsReader.parseIDREFAttr(value);
+        else
+            super.unmarshalAttribute(name, value);
+    }
+
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        String localName = r.getLocalName();
+        if (localName.equals("mdRef")) {
+            this.mdRef = new MdRef();
+            this.mdRef.unmarshal(r);
+        } else if (localName.equals("mdWrap")) {
+            this.mdWrap = new MdWrap();
+            this.mdWrap.unmarshal(r);
+        } else {
+            super.unmarshalChild(r);
+        }
+    }
+
     /**
      * Representation of a <code>mets:mdRef</code>.
      * <p>
@@ -261,18 +294,13 @@ public class MdSec extends IDElement implements ElementInterface {
         protected XMLGregorianCalendar created;
         protected String checksum;
         protected CHECKSUMTYPE checksumtype;
-        protected static DatatypeFactory dtf;
 
         public MdRef(LOCTYPE loctype, MDTYPE mdtype) {
             this.loctype = loctype;
             this.mdtype = mdtype;
-            if (dtf == null)
-                dtf = MetsIO.getDataTypeFactory();
         }
 
         private MdRef() {
-            if (dtf == null)
-                dtf = MetsIO.getDataTypeFactory();
         }
 
         /**
@@ -490,50 +518,67 @@ public class MdSec extends IDElement implements ElementInterface {
         }
 
         @Override
-        public void unmarshal(Element mdRef) {
-            super.unmarshal(mdRef);
-            NamedNodeMap attrs = mdRef.getAttributes();
-            for (int i = 0; i < attrs.getLength(); i++) {
-                Attr attr = (Attr) attrs.item(i);
-                String name = attr.getName();
-                String value = attr.getNodeValue();
-                if (name.equals("LABEL"))
-                    this.label = value;
-                if (name.equals("XPTR"))
-                    this.xptr = value;
-                if (name.equals("MDTYPE"))
-                    this.mdtype = MDTYPE.fromValue(value);
-                if (name.equals("OTHERMDTYPE"))
-                    this.othermdtype = value;
-                if (name.equals("MDTYPEVERSION"))
-                    this.mdtypeversion = value;
-                if (name.equals("MIMETYPE"))
-                    this.mimetype = value;
-                if (name.equals("SIZE"))
-                    this.size = Long.parseLong(value);
-                if (name.equals("CHECKSUM"))
-                    this.checksum = value;
-                if (name.equals("CHECKSUMTYPE"))
-                    this.checksumtype = CHECKSUMTYPE.fromValue(value);
-                if (name.equals("CREATED"))
-                    this.created = dtf.newXMLGregorianCalendar(value);
-            }
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            if (this.mimetype != null)
+                w.writeAttribute("MIMETYPE", this.mimetype);
+            if (this.size != null)
+                w.writeAttribute("SIZE", this.size.toString());
+            if (this.checksum != null)
+                w.writeAttribute("CHECKSUM", this.checksum);
+            if (this.checksumtype != null)
+                w.writeAttribute("CHECKSUMTYPE", this.checksumtype.value());
+            if (this.created != null)
+                w.writeAttribute("CREATED", this.created.toXMLFormat());
+            if (this.label != null)
+                w.writeAttribute("LABEL", this.label);
+            if (this.xptr != null)
+                w.writeAttribute("XPTR", this.xptr);
+            if (this.mdtype != null)
+                w.writeAttribute("MDTYPE", this.mdtype.value());
+            if (this.othermdtype != null)
+                w.writeAttribute("OTHERMDTYPE", this.othermdtype);
+            if (this.mdtypeversion != null)
+                w.writeAttribute("MDTYPEVERSION", this.mdtypeversion);
+        }
+
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("LABEL"))
+                this.label = value;
+            else if (name.equals("XPTR"))
+                this.xptr = value;
+            else if (name.equals("MDTYPE"))
+                this.mdtype = MDTYPE.fromValue(value);
+            else if (name.equals("OTHERMDTYPE"))
+                this.othermdtype = value;
+            else if (name.equals("MDTYPEVERSION"))
+                this.mdtypeversion = value;
+            else if (name.equals("MIMETYPE"))
+                this.mimetype = value;
+            else if (name.equals("SIZE"))
+                this.size = Long.parseLong(value);
+            else if (name.equals("CHECKSUM"))
+                this.checksum = value;
+            else if (name.equals("CHECKSUMTYPE"))
+                this.checksumtype = CHECKSUMTYPE.fromValue(value);
+            else if (name.equals("CREATED"))
+                this.created = MetsIO.getDataTypeFactory().newXMLGregorianCalendar(value);
+            else
+                super.unmarshalAttribute(name, value);
         }
     }
 
     /**
-     * <strong>Note: <code>mets:binData</code> is not supported in this version</strong>
-     * <p>
-     * Representation of a <code>mets:mdRef</code>.
+     * Representation of a <code>mets:mdWrap</code>.
      */
     public static class MdWrap extends IDElement implements ElementInterface {
 
         protected String label;
-        /**
-         * <strong>Not supported in this version.</strong>
-         */
-        protected byte[] binData;
+        protected BinData binData;
         protected List<Element> xmlData;
+        // xmlData as read, until getXmlData() is called
+        protected XmlData xmlDataSource;
         protected MDTYPE mdtype;
         protected String othermdtype;
         protected String mdtypeversion;
@@ -542,7 +587,6 @@ public class MdSec extends IDElement implements ElementInterface {
         protected XMLGregorianCalendar created;
         protected String checksum;
         protected CHECKSUMTYPE checksumtype;
-        protected static DatatypeFactory dtf;
 
         // for internal use
         protected MdWrap() {
@@ -555,23 +599,24 @@ public class MdSec extends IDElement implements ElementInterface {
             this.mdtype = mdtype;
         }
 
-        // /**
-        // * Gets the base 64 value of the <code>mets:binData</code> child
-        // *
-        // * @return possible object is byte[]
-        // */
-        // public byte[] getBinData() {
-        // return binData;
-        // }
-        //
-        // /**
-        // * Sets the <code>mets:binData</code> child
-        // *
-        // * @param binData
-        // */
-        // public void setBinData(byte[] binData) {
-        // this.binData = ((byte[]) binData);
-        // }
+        /**
+         * Gets the content of the <code>mets:binData</code> child
+         * 
+         * @return the decoded content, or null if there is no <code>mets:binData</code>
+         */
+        public BinData getBinData() {
+            return binData;
+        }
+
+        /**
+         * Sets the content of the <code>mets:binData</code> child, which is Base64 encoded as it
+         * is written
+         * 
+         * @param binData
+         */
+        public void setBinData(BinData binData) {
+            this.binData = binData;
+        }
 
         /**
          * Gets the value of <code>@LABEL</code>
@@ -601,11 +646,17 @@ public class MdSec extends IDElement implements ElementInterface {
          * <pre>
          * getXmlData().add(newElement);
          * </pre>
-         * 
+         * <p>
+         * <code>xmlData</code> that has been read is kept as an {@link XmlData} until the first
+         * call, which parses it into a {@link org.w3c.dom.Document} of its own.
          */
         public List<Element> getXmlData() {
             if (this.xmlData == null) {
-                this.xmlData = new ArrayList<Element>();
+                if (this.xmlDataSource != null)
+                    this.xmlData = this.xmlDataSource.toElements();
+                else
+                    this.xmlData = new ArrayList<Element>();
+                this.xmlDataSource = null;
             }
             return this.xmlData;
         }
@@ -782,55 +833,111 @@ public class MdSec extends IDElement implements ElementInterface {
                 mdWrap.setAttribute("OTHERMDTYPE", this.othermdtype);
             if (this.mdtypeversion != null)
                 mdWrap.setAttribute("MDTYPEVERSION", this.mdtypeversion);
-            if (this.xmlData != null) {
+            if (this.xmlData != null || this.xmlDataSource != null) {
                 Element xd = doc.createElementNS(NS.METS.ns(), "mets:xmlData");
                 mdWrap.appendChild(xd);
-                for (Element e : this.xmlData) {
-                    Element data = (Element) doc.importNode(e, true);
-                    xd.appendChild(data);
+                if (this.xmlData == null)
+                    this.xmlDataSource.appendTo(xd);
+                else {
+                    for (Element e : this.xmlData) {
+                        Element data = (Element) doc.importNode(e, true);
+                        xd.appendChild(data);
+                    }
                 }
             }
-            // binData : byte[]
+            if (this.binData != null) {
+                Element bd = doc.createElementNS(NS.METS.ns(), "mets:binData");
+                mdWrap.appendChild(bd);
+                this.binData.appendTo(bd);
+            }
+        }
+
+        @Override
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            if (this.mimetype != null)
+                w.writeAttribute("MIMETYPE", this.mimetype);
+            if (this.size != null)
+                w.writeAttribute("SIZE", this.size.toString());
+            if (this.checksum != null)
+                w.writeAttribute("CHECKSUM", this.checksum);
+            if (this.checksumtype != null)
+                w.writeAttribute("CHECKSUMTYPE", this.checksumtype.value());
+            if (this.created != null)
+                w.writeAttribute("CREATED", this.created.toXMLFormat());
+            if (this.label != null)
+                w.writeAttribute("LABEL", this.label);
+            if (this.mdtype != null)
+                w.writeAttribute("MDTYPE", this.mdtype.value());
+            if (this.othermdtype != null)
+                w.writeAttribute("OTHERMDTYPE", this.othermdtype);
+            if (this.mdtypeversion != null)
+                w.writeAttribute("MDTYPEVERSION", this.mdtypeversion);
+            if (this.xmlData != null || this.xmlDataSource != null) {
+                w.writeStartElement("mets", "xmlData", NS.METS.ns());
+                if (this.xmlData == null)
+                    this.xmlDataSource.writeTo(w);
+                else {
+                    for (Element e : this.xmlData)
+                        StAXHelp.writeNode(w, e);
+                }
+                w.writeEndElement();
+            }
+            if (this.binData != null) {
+                w.writeStartElement("mets", "binData", NS.METS.ns());
+                this.binData.writeTo(w);
+                w.writeEndElement();
+            }
         }
 
         @Override
         public void unmarshal(Element mdWrap) {
             super.unmarshal(mdWrap);
-            NamedNodeMap attrs = mdWrap.getAttributes();
-            for (int i = 0; i < attrs.getLength(); i++) {
-                Attr attr = (Attr) attrs.item(i);
-                String name = attr.getName();
-                String value = attr.getNodeValue();
-                if (name.equals("LABEL"))
-                    this.label = value;
-                if (name.equals("MDTYPE"))
-                    this.mdtype = MDTYPE.fromValue(value);
-                if (name.equals("OTHERMDTYPE"))
-                    this.othermdtype = value;
-                if (name.equals("MDTYPEVERSION"))
-                    this.mdtypeversion = value;
-                if (name.equals("MIMETYPE"))
-                    this.mimetype = value;
-                if (name.equals("SIZE"))
-                    this.size = Long.parseLong(value);
-                if (name.equals("CHECKSUM"))
-                    this.checksum = value;
-                if (name.equals("CHECKSUMTYPE"))
-                    this.checksumtype = CHECKSUMTYPE.fromValue(value);
-                if (name.equals("CREATED"))
-                    this.created = dtf.newXMLGregorianCalendar(value);
-            }
-            // xmlData
+            // xmlData, binData
             List<Element> children = DOMHelp.getChildElements(mdWrap);
             for (Element child : children) {
                 if (child.getLocalName().equals("xmlData")) {
-                    List<Element> gChildren = DOMHelp.getChildElements(child);
-                    for (Element gChild : gChildren) {
-                        this.getXmlData().add(gChild);
-                    }
+                    this.xmlDataSource = XmlData.read(child);
+                } else if (child.getLocalName().equals("binData")) {
+                    this.binData = BinData.read(child);
                 }
             }
         }
+
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("LABEL"))
+                this.label = value;
+            else if (name.equals("MDTYPE"))
+                this.mdtype = MDTYPE.fromValue(value);
+            else if (name.equals("OTHERMDTYPE"))
+                this.othermdtype = value;
+            else if (name.equals("MDTYPEVERSION"))
+                this.mdtypeversion = value;
+            else if (name.equals("MIMETYPE"))
+                this.mimetype = value;
+            else if (name.equals("SIZE"))
+                this.size = Long.parseLong(value);
+            else if (name.equals("CHECKSUM"))
+                this.checksum = value;
+            else if (name.equals("CHECKSUMTYPE"))
+                this.checksumtype = CHECKSUMTYPE.fromValue(value);
+            else if (name.equals("CREATED"))
+                this.created = MetsIO.getDataTypeFactory().newXMLGregorianCalendar(value);
+            else
+                super.unmarshalAttribute(name, value);
+        }
+
+        @Override
+        protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+            if (r.getLocalName().equals("xmlData")) {
+                this.xmlDataSource = XmlData.read(r);
+            } else if (r.getLocalName().equals("binData")) {
+                this.binData = BinData.read(r);
+            } else {
+                super.unmarshalChild(r);
+            }
+        }
     }
 
     /**
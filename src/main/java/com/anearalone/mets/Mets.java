@@ -19,10 +19,12 @@ package com.anearalone.mets;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.w3c.dom.Attr;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.utils.DOMHelp;
 
@@ -68,6 +70,7 @@ public class Mets extends IDElement implements ElementInterface {
     protected String objid;
     protected String profile;
     protected String type;
+    protected MetsIndex index;
 
     /**
      * Constructs an empty, valid METS object.
@@ -275,31 +278,37 @@ public class Mets extends IDElement implements ElementInterface {
         this.profile = profile;
     }
 
+    /**
+     * Gets the {@link MetsIndex} of this document, building it if it hasn't been yet. The index is
+     * not kept up to date as the document changes; call {@link MetsIndex#rebuild()} when needed.
+     * 
+     * @return the index
+     */
+    public MetsIndex getIndex() {
+        if (index == null) {
+            index = new MetsIndex(this);
+        }
+        return this.index;
+    }
+
     /*
      * Reconstitute our fields from a DOM
      */
     @Override
     public void unmarshal(Element root) {
-        super.unmarshal(root);
+        unmarshal(root, null);
+    }
 
-        NamedNodeMap attrs = root.getAttributes();
-        for (int i = 0; i < attrs.getLength(); i++) {
-            Attr attr = (Attr) attrs.item(i);
-            String name = attr.getName();
-            String value = attr.getNodeValue();
-            if (name.equals("OBJID"))
-                this.objid = value;
-            if (name.equals("PROFILE"))
-                this.profile = value;
-            if (name.equals("LABEL"))
-                this.label = value;
-            if (name.equals("TYPE"))
-                this.type = value;
-        }
+    /*
+     * As unmarshal(Element), timing each section if there is a probe
+     */
+    void unmarshal(Element root, MetsProbe probe) {
+        super.unmarshal(root);
 
         List<Element> children = DOMHelp.getChildElements(root);
         for (Element child : children) {
             String localName = child.getLocalName();
+            long start = probe == null ? 0 : probe.start();
             if (localName.equals("metsHdr")) {
                 this.metsHdr = new MetsHdr();
                 this.metsHdr.unmarshal(child);
@@ -327,16 +336,75 @@ public class Mets extends IDElement implements ElementInterface {
                 this.structLink = new StructLink();
                 this.structLink.unmarshal(child);
             }
+            if (probe != null) {
+                Section section = Section.fromLocalName(localName);
+                if (section != null)
+                    probe.end(section, start, child);
+            }
         }
 
         // TODO: behaviorSec
 
     }
 
+    @Override
+    protected void unmarshalAttribute(String name, String value) {
+        if (name.equals("OBJID"))
+            this.objid = value;
+        else if (name.equals("PROFILE"))
+            this.profile = value;
+        else if (name.equals("LABEL"))
+            this.label = value;
+        else if (name.equals("TYPE"))
+            this.type = value;
+        else
+            super.unmarshalAttribute(name, value);
+    }
+
+    /*
+     * Reconstitute our children from a pull parser; the mirror of unmarshal(Element)
+     */
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        String localName = r.getLocalName();
+        if (localName.equals("metsHdr")) {
+            this.metsHdr = new MetsHdr();
+            this.metsHdr.unmarshal(r);
+        } else if (localName.equals("dmdSec")) {
+            MdSec dmdSec = new MdSec();
+            dmdSec.unmarshal(r);
+            this.getDmdSec().add(dmdSec);
+        } else if (localName.equals("amdSec")) {
+            AmdSec amdSec = new AmdSec();
+            amdSec.unmarshal(r);
+            this.getAmdSec().add(amdSec);
+        } else if (localName.equals("fileSec")) {
+            this.fileSec = new FileSec();
+            this.fileSec.unmarshal(r);
+        } else if (localName.equals("structMap")) {
+            StructMap structMap = new StructMap();
+            structMap.unmarshal(r);
+            this.getStructMap().add(structMap);
+        } else if (localName.equals("structLink")) {
+            this.structLink = new StructLink();
+            this.structLink.unmarshal(r);
+        } else {
+            // behaviorSec isn't supported (nor by unmarshal(Element)), so it is skipped
+            super.unmarshalChild(r);
+        }
+    }
+
     /*
      * Arrange our fields into a DOM
      */
     public void marshal(Element root, Document doc) {
+        marshal(root, doc, null);
+    }
+
+    /*
+     * As marshal(Element, Document), timing each section if there is a probe
+     */
+    void marshal(Element root, Document doc, MetsProbe probe) {
         String metsNs = NS.METS.ns();
 
         // set up namespace declarations and schema references
@@ -361,27 +429,39 @@ public class Mets extends IDElement implements ElementInterface {
         // CHILDREN
         // metsHdr
         if (this.metsHdr != null) {
+            long start = probe == null ? 0 : probe.start();
             Element metsHdr = doc.createElementNS(metsNs, "mets:metsHdr");
             this.metsHdr.marshal(metsHdr, doc);
             root.appendChild(metsHdr);
+            if (probe != null)
+                probe.end(Section.METS_HDR, start, metsHdr);
         }
         // dmdSec
         for (MdSec dmd : this.getDmdSec()) {
+            long start = probe == null ? 0 : probe.start();
             Element dmdSec = doc.createElementNS(metsNs, "mets:dmdSec");
             dmd.marshal(dmdSec, doc);
             root.appendChild(dmdSec);
+            if (probe != null)
+                probe.end(Section.DMD_SEC, start, dmdSec);
         }
         // amdSec
         for (AmdSec amd : this.getAmdSec()) {
+            long start = probe == null ? 0 : probe.start();
             Element amdSec = doc.createElementNS(metsNs, "mets:amdSec");
             amd.marshal(amdSec, doc);
             root.appendChild(amdSec);
+            if (probe != null)
+                probe.end(Section.AMD_SEC, start, amdSec);
         }
         // fileSec
         if (this.fileSec != null) {
+            long start = probe == null ? 0 : probe.start();
             Element fileSec = doc.createElementNS(metsNs, "mets:fileSec");
             this.fileSec.marshal(fileSec, doc);
             root.appendChild(fileSec);
+            if (probe != null)
+                probe.end(Section.FILE_SEC, start, fileSec);
         }
 
         // structMap. One is REQUIRED in order to be valid, so add one if
@@ -389,18 +469,160 @@ public class Mets extends IDElement implements ElementInterface {
         if (this.structMap == null)
             this.getStructMap().add(new StructMap());
         for (StructMap s : this.getStructMap()) {
+            long start = probe == null ? 0 : probe.start();
             Element smap = doc.createElementNS(metsNs, "mets:structMap");
             s.marshal(smap, doc);
             root.appendChild(smap);
+            if (probe != null)
+                probe.end(Section.STRUCT_MAP, start, smap);
         }
 
         if (this.structLink != null) {
+            long start = probe == null ? 0 : probe.start();
             Element slink = doc.createElementNS(metsNs, "mets:structLink");
             this.structLink.marshal(slink, doc);
             root.appendChild(slink);
+            if (probe != null)
+                probe.end(Section.STRUCT_LINK, start, slink);
         }
 
         // TODO: behaviorSec
     }
 
+    /*
+     * Stream our fields; the caller writes the mets:mets start and end tags
+     */
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        marshal(w, null);
+    }
+
+    /*
+     * As marshal(XMLStreamWriter), timing each section if there is a probe
+     */
+    void marshal(XMLStreamWriter w, MetsProbe probe) throws XMLStreamException {
+        String metsNs = NS.METS.ns();
+        marshalAttributes(w);
+
+        if (this.metsHdr != null) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "metsHdr", metsNs);
+            this.metsHdr.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.METS_HDR, start);
+        }
+        for (MdSec dmd : this.getDmdSec()) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "dmdSec", metsNs);
+            dmd.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.DMD_SEC, start);
+        }
+        for (AmdSec amd : this.getAmdSec()) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "amdSec", metsNs);
+            amd.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.AMD_SEC, start);
+        }
+        if (this.fileSec != null) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "fileSec", metsNs);
+            this.fileSec.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.FILE_SEC, start);
+        }
+
+        // structMap. One is REQUIRED in order to be valid, so add one if
+        // necessary;
+        if (this.structMap == null)
+            this.getStructMap().add(new StructMap());
+        for (StructMap s : this.getStructMap()) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "structMap", metsNs);
+            s.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.STRUCT_MAP, start);
+        }
+
+        if (this.structLink != null) {
+            long start = probe == null ? 0 : probe.start();
+            w.writeStartElement("mets", "structLink", metsNs);
+            this.structLink.marshal(w);
+            w.writeEndElement();
+            if (probe != null)
+                probe.end(Section.STRUCT_LINK, start);
+        }
+
+        // behaviorSec isn't supported (nor by marshal(Element, Document)), so it isn't written
+    }
+
+    /*
+     * Namespace declarations, schema references and attributes only, e.g. for MetsGenerator, which
+     * streams the sections itself
+     */
+    void marshalAttributes(XMLStreamWriter w) throws XMLStreamException {
+        // set up namespace declarations and schema references
+        w.writeNamespace("mets", NS.METS.ns());
+        w.writeNamespace("xlink", NS.XLINK.ns());
+        w.writeNamespace("xsi", NS.XSI.ns());
+        w.writeAttribute("xsi", NS.XSI.ns(), "schemaLocation", NS.METS.schemaLoc());
+
+        // ID
+        super.marshal(w);
+
+        if (this.objid != null)
+            w.writeAttribute("OBJID", this.objid);
+        if (this.profile != null)
+            w.writeAttribute("PROFILE", this.profile);
+        if (this.label != null)
+            w.writeAttribute("LABEL", this.label);
+        if (this.type != null)
+            w.writeAttribute("TYPE", this.type);
+    }
+
+    /**
+     * The top-level sections of a METS document, e.g. for choosing which of them
+     * {@link MetsStreamReader#read(java.io.InputStream, java.util.EnumSet)} should unmarshal.
+     */
+    public enum Section {
+        METS_HDR("metsHdr"), //
+        DMD_SEC("dmdSec"), //
+        AMD_SEC("amdSec"), //
+        FILE_SEC("fileSec"), //
+        STRUCT_MAP("structMap"), //
+        STRUCT_LINK("structLink"), //
+        BEHAVIOR_SEC("behaviorSec");
+
+        private final String localName;
+
+        Section(String localName) {
+            this.localName = localName;
+        }
+
+        /**
+         * @return the local name of the section's element
+         */
+        public String localName() {
+            return localName;
+        }
+
+        /**
+         * @param localName
+         * @return the Section for the element, or null if it isn't one
+         */
+        public static Section fromLocalName(String localName) {
+            for (Section s : Section.values()) {
+                if (s.localName.equals(localName)) {
+                    return s;
+                }
+            }
+            return null;
+        }
+    }
+
 }
@@ -0,0 +1,333 @@
+/**
+ * MetsBatchReader.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reads many METS documents at once, on an {@link ExecutorService}, handing each {@link Mets} (or
+ * the reason it couldn't be read) to a {@link Callback} as it is done.
+ * <p>
+ * Only so many documents are in flight (being read, or read but not yet handed over) at a time:
+ * once {@link #getMaxInFlight()} are, no more paths are taken until the callback has caught up. So
+ * however many paths there are, and however slow the callback is, no more than that many
+ * {@link Mets} are held at once. Paths are taken from an {@link Iterator} (a
+ * {@link java.nio.file.DirectoryStream}, say), so they needn't be listed up front either.
+ * <p>
+ * The callback is called on the thread that called {@link #read(Iterator, Callback)}, one document
+ * at a time, in the order the documents were finished, or with {@link #setOrdered(boolean)}, in the
+ * order of the paths. In order, a slow document holds back those after it until it's done (but no
+ * more than {@link #getMaxInFlight()} of them).
+ * <p>
+ * Unless an executor is given, documents are read on virtual threads, one per document, if the JVM
+ * has them (Java 21 and later), and otherwise on a pool of a thread per processor. Either way, no
+ * more than {@link #getMaxInFlight()} are read at once.
+ * <p>
+ * Set the options before calling {@link #read(Iterator, Callback)}; once configured, a given
+ * instance may be reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsBatchReader {
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = virtualThreadPerTaskExecutor();
+    private final Parser parser;
+    private volatile ExecutorService executor;
+    private volatile int maxInFlight = 2 * Runtime.getRuntime().availableProcessors();
+    private volatile boolean ordered;
+
+    /**
+     * Reads with <code>reader</code>.
+     *
+     * @param reader
+     */
+    public MetsBatchReader(final MetsStreamReader reader) {
+        this(new Parser() {
+            @Override
+            public Mets parse(InputStream in) throws Exception {
+                return reader.read(in);
+            }
+        });
+    }
+
+    /**
+     * Reads with <code>reader</code>, into DOMs first.
+     *
+     * @param reader
+     */
+    public MetsBatchReader(final MetsReader reader) {
+        this(new Parser() {
+            @Override
+            public Mets parse(InputStream in) throws Exception {
+                return reader.read(in);
+            }
+        });
+    }
+
+    private MetsBatchReader(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Reads every document in <code>paths</code>, and waits until every one has been handed to
+     * <code>callback</code>.
+     *
+     * @param paths
+     * @param callback
+     * @throws InterruptedException
+     *             if the calling thread is interrupted; the documents being read are abandoned
+     * @throws RuntimeException
+     *             if <code>callback</code> (or <code>paths</code>) throws one; the documents being
+     *             read are abandoned
+     */
+    public void read(Iterator<Path> paths, Callback callback) throws InterruptedException {
+        int maxInFlight = this.maxInFlight;
+        boolean ordered = this.ordered;
+        ExecutorService executor = this.executor;
+        boolean ownExecutor = executor == null;
+        if (ownExecutor)
+            executor = newExecutor();
+
+        final BlockingQueue<Outcome> done = new LinkedBlockingQueue<Outcome>();
+        Map<Long, Future<?>> running = new HashMap<Long, Future<?>>();
+        // finished, but waiting for those before them to be handed over
+        Map<Long, Outcome> waiting = new HashMap<Long, Outcome>();
+        long submitted = 0;
+        long delivered = 0;
+        boolean finished = false;
+        try {
+            while (paths.hasNext()) {
+                // wait for documents to be handed over while there are too many in flight
+                while (submitted - delivered >= maxInFlight)
+                    delivered += receive(done.take(), running, waiting, delivered, ordered, callback);
+                // and hand over any others that are done, without waiting
+                Outcome outcome;
+                while ((outcome = done.poll()) != null)
+                    delivered += receive(outcome, running, waiting, delivered, ordered, callback);
+                final long seq = submitted++;
+                final Path path = paths.next();
+                running.put(seq, executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.add(read(seq, path));
+                    }
+                }));
+            }
+            while (submitted > delivered)
+                delivered += receive(done.take(), running, waiting, delivered, ordered, callback);
+            finished = true;
+        } finally {
+            if (ownExecutor)
+                executor.shutdownNow();
+            else if (!finished) {
+                for (Future<?> f : running.values())
+                    f.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @param paths
+     * @param callback
+     * @throws InterruptedException
+     * @see #read(Iterator, Callback)
+     */
+    public void read(Iterable<Path> paths, Callback callback) throws InterruptedException {
+        read(paths.iterator(), callback);
+    }
+
+    /**
+     * @return the executor documents are read on, or null if the reader makes its own
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param executor
+     *            to read documents on, or null (the default) for the reader to make its own for
+     *            each batch. It is not shut down by the reader.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return the most documents in flight at once
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @param maxInFlight
+     *            the most documents that are being read, or have been read but not yet handed to
+     *            the callback; twice the number of processors by default
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * @return whether documents are handed over in the order of their paths
+     */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * @param ordered
+     *            true to hand documents over in the order of their paths, false (the default) to
+     *            hand each over as soon as it has been read
+     */
+    public void setOrdered(boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    private Outcome read(long seq, Path path) {
+        try {
+            InputStream in = Files.newInputStream(path);
+            try {
+                return new Outcome(seq, path, parser.parse(in), null);
+            } finally {
+                in.close();
+            }
+        } catch (Throwable t) {
+            // including Errors, which are thrown on the calling thread
+            return new Outcome(seq, path, null, t);
+        }
+    }
+
+    /*
+     * Hands over outcome, or (in order) all of the waiting outcomes it is the first of. Returns the
+     * number handed over.
+     */
+    private static int receive(Outcome outcome, Map<Long, Future<?>> running, Map<Long, Outcome> waiting,
+            long delivered, boolean ordered, Callback callback) {
+        running.remove(outcome.seq);
+        if (!ordered) {
+            outcome.deliver(callback);
+            return 1;
+        }
+        waiting.put(outcome.seq, outcome);
+        int n = 0;
+        while ((outcome = waiting.remove(delivered + n)) != null) {
+            outcome.deliver(callback);
+            n++;
+        }
+        return n;
+    }
+
+    private static ExecutorService newExecutor() {
+        if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null) {
+            try {
+                return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            } catch (IllegalAccessException e) {
+                // fall back to platform threads
+            } catch (InvocationTargetException e) {
+                // likewise
+            }
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "mets-reader");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /*
+     * Executors.newVirtualThreadPerTaskExecutor(), if there is one
+     */
+    private static Method virtualThreadPerTaskExecutor() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /*
+     * MetsReader and MetsStreamReader, alike
+     */
+    private interface Parser {
+        Mets parse(InputStream in) throws Exception;
+    }
+
+    /*
+     * A document that has been read, or not
+     */
+    private static class Outcome {
+        final long seq;
+        final Path path;
+        final Mets mets;
+        final Throwable failure;
+
+        Outcome(long seq, Path path, Mets mets, Throwable failure) {
+            this.seq = seq;
+            this.path = path;
+            this.mets = mets;
+            this.failure = failure;
+        }
+
+        void deliver(Callback callback) {
+            if (failure == null)
+                callback.onRead(path, mets);
+            else if (failure instanceof Error)
+                throw (Error) failure;
+            else
+                callback.onFailure(path, (Exception) failure);
+        }
+    }
+
+    /**
+     * Receives the documents read by {@link MetsBatchReader#read(Iterator, Callback)}, one at a
+     * time, on the thread that called it.
+     */
+    public interface Callback {
+
+        /**
+         * @param path
+         * @param mets
+         */
+        public void onRead(Path path, Mets mets);
+
+        /**
+         * @param path
+         * @param e
+         *            why <code>path</code> couldn't be read, e.g. an {@link java.io.IOException}, or
+         *            an {@link javax.xml.stream.XMLStreamException} if it isn't well-formed
+         */
+        public void onFailure(Path path, Exception e);
+    }
+}
@@ -0,0 +1,422 @@
+/**
+ * MetsBuilder.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+import javax.xml.datatype.DatatypeFactory;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FileSec.FileGrp.File.FLocat;
+import com.anearalone.mets.LocatorElement.LOCTYPE;
+import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+
+/**
+ * Builds a <code>fileSec</code> from directories of files, one <code>fileGrp</code> per directory,
+ * with its <code>@USE</code>. The directories are walked in parallel, for each file's
+ * <code>CREATED</code> and <code>MIMETYPE</code> (a guess, from the file system or the file name),
+ * and then every file is read once by a {@link DigestService}, for its <code>SIZE</code> and
+ * checksums (as many <code>CHECKSUMTYPE</code>s as are wanted).
+ * <p>
+ * Each file gets an <code>FLocat</code> whose <code>xlink:href</code> is relative to a base
+ * directory (so that {@link FixityVerifier} can check it later), or a <code>file:</code> URI if the
+ * file isn't under it. Files are in path order within each <code>fileGrp</code>, and have
+ * <code>@ID</code>s from the <code>@USE</code> and their position, e.g.
+ * <code>FILE_master_000001</code>.
+ * <p>
+ * Optionally, a <code>structMap</code> with a <code>div</code> per page can be added: files with the
+ * same path, less extension, in each directory (e.g. <code>master/0001.tif</code> and
+ * <code>jpeg/0001.jpg</code>) are taken to be the same page.
+ * <p>
+ * Set the options before calling {@link #build(Mets)}; once configured, a given instance may be
+ * reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsBuilder {
+    private final Path baseDirectory;
+    private final Map<String, Path> directories = Collections.synchronizedMap(new LinkedHashMap<String, Path>());
+    private volatile List<CHECKSUMTYPE> checksumTypes = Collections.singletonList(CHECKSUMTYPE.SHA_256);
+    private final DigestService digestService = new DigestService();
+    private volatile boolean pageSequence;
+
+    /**
+     * @param baseDirectory
+     *            what <code>xlink:href</code>s are relative to, usually where the METS document will
+     *            be
+     */
+    public MetsBuilder(Path baseDirectory) {
+        this.baseDirectory = baseDirectory.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Adds a directory, whose files (and those of its subdirectories) make up a
+     * <code>fileGrp</code>. <code>fileGrp</code>s are in the order that their directories were
+     * added.
+     *
+     * @param use
+     *            the <code>@USE</code> of the <code>fileGrp</code>, e.g. "master"
+     * @param directory
+     */
+    public void addDirectory(String use, Path directory) {
+        directories.put(use, directory.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Walks the directories, reads every file, and sets <code>mets</code>'s <code>fileSec</code>
+     * (replacing any it had). If {@link #setPageSequence(boolean)} is set, a page sequence
+     * <code>structMap</code> is added too.
+     *
+     * @param mets
+     * @return every checksum of every file, by <code>mets:file</code>, in document order. The first
+     *         is also the file's <code>CHECKSUM</code>.
+     * @throws IOException
+     *             if a directory or file can't be read
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while the files are read
+     * @throws IllegalStateException
+     *             if a <code>CHECKSUMTYPE</code> isn't supported
+     */
+    public Map<File, Map<CHECKSUMTYPE, String>> build(Mets mets) throws IOException, InterruptedException {
+        final List<CHECKSUMTYPE> types = this.checksumTypes;
+        for (CHECKSUMTYPE type : types) {
+            if (!DigestService.isSupported(type))
+                throw new IllegalStateException(type.value() + " is not supported");
+        }
+        Map<String, Path> dirs;
+        synchronized (directories) {
+            dirs = new LinkedHashMap<String, Path>(directories);
+        }
+        ForkJoinPool pool = new ForkJoinPool(digestService.getParallelism());
+        Map<String, List<Entry>> walked = new LinkedHashMap<String, List<Entry>>();
+        try {
+            List<Future<List<Entry>>> futures = new ArrayList<Future<List<Entry>>>();
+            for (Path dir : dirs.values())
+                futures.add(pool.submit(new DirTask(dir)));
+            int i = 0;
+            for (String use : dirs.keySet())
+                walked.put(use, futures.get(i++).get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        // then every file is read once, for all of the checksums
+        Map<Path, List<CHECKSUMTYPE>> wanted = new LinkedHashMap<Path, List<CHECKSUMTYPE>>();
+        for (List<Entry> entries : walked.values()) {
+            for (Entry entry : entries)
+                wanted.put(entry.path, types);
+        }
+        Map<Path, DigestService.Result> digested = digestService.digest(wanted);
+
+        Map<File, Map<CHECKSUMTYPE, String>> checksums = new LinkedHashMap<File, Map<CHECKSUMTYPE, String>>();
+        // page (path less extension) -> the files for it, in fileGrp order
+        Map<String, List<File>> pages = new TreeMap<String, List<File>>();
+        FileSec fileSec = new FileSec();
+        DatatypeFactory dtf = MetsIO.getDataTypeFactory();
+        for (Map.Entry<String, List<Entry>> grp : walked.entrySet()) {
+            String use = grp.getKey();
+            FileGrp fileGrp = new FileGrp();
+            fileGrp.setUse(use);
+            int n = 0;
+            for (Entry entry : grp.getValue()) {
+                DigestService.Result result = digested.get(entry.path);
+                if (result.getException() != null)
+                    throw result.getException();
+                File file = new File(String.format("FILE_%s_%06d", ncName(use), ++n));
+                file.setSIZE(result.getSize());
+                GregorianCalendar created = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+                created.setTimeInMillis(entry.created);
+                file.setCREATED(dtf.newXMLGregorianCalendar(created));
+                file.setMIMETYPE(entry.mimeType);
+                file.setCHECKSUMTYPE(types.get(0));
+                file.setCHECKSUM(result.getChecksum(types.get(0)));
+                FLocat fLocat = new FLocat();
+                fLocat.setLOCTYPE(LOCTYPE.URL);
+                fLocat.setXlinkHREF(href(entry.path));
+                file.getFLocat().add(fLocat);
+                fileGrp.getFile().add(file);
+                checksums.put(file, result.getChecksums());
+
+                String page = dirs.get(use).relativize(entry.path).toString();
+                int dot = page.lastIndexOf('.');
+                if (dot > Math.max(page.lastIndexOf('/'), page.lastIndexOf('\\')))
+                    page = page.substring(0, dot);
+                List<File> files = pages.get(page);
+                if (files == null) {
+                    files = new ArrayList<File>();
+                    pages.put(page, files);
+                }
+                files.add(file);
+            }
+            fileSec.getFileGrp().add(fileGrp);
+        }
+        mets.setFileSec(fileSec);
+        if (this.pageSequence)
+            mets.getStructMap().add(pageSequence(pages));
+        return checksums;
+    }
+
+    /**
+     * @return the <code>CHECKSUMTYPE</code>s computed for each file
+     */
+    public List<CHECKSUMTYPE> getChecksumTypes() {
+        return checksumTypes;
+    }
+
+    /**
+     * @param checksumTypes
+     *            the <code>CHECKSUMTYPE</code>s to compute for each file. The first is used for
+     *            <code>CHECKSUM</code>. SHA-256 by default.
+     */
+    public void setChecksumTypes(CHECKSUMTYPE... checksumTypes) {
+        if (checksumTypes.length == 0)
+            throw new IllegalArgumentException("At least one CHECKSUMTYPE is needed");
+        this.checksumTypes = Collections.unmodifiableList(new ArrayList<CHECKSUMTYPE>(Arrays.asList(checksumTypes)));
+    }
+
+    /**
+     * @return the number of files read at once
+     */
+    public int getParallelism() {
+        return digestService.getParallelism();
+    }
+
+    /**
+     * @param parallelism
+     *            the number of files (and directories) read at once; the number of processors by
+     *            default
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        digestService.setParallelism(parallelism);
+    }
+
+    /**
+     * @return the size of the (direct) buffer each file is read through
+     */
+    public int getBufferSize() {
+        return digestService.getBufferSize();
+    }
+
+    /**
+     * @param bufferSize
+     *            the size of the (direct) buffer each file is read through; 1MB by default
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1)
+            throw new IllegalArgumentException("bufferSize must be at least 1");
+        digestService.setBufferSize(bufferSize);
+    }
+
+    /**
+     * @return whether a page sequence <code>structMap</code> is added
+     */
+    public boolean isPageSequence() {
+        return pageSequence;
+    }
+
+    /**
+     * @param pageSequence
+     *            true to add a <code>structMap</code> with a <code>div</code> per page (false by
+     *            default)
+     */
+    public void setPageSequence(boolean pageSequence) {
+        this.pageSequence = pageSequence;
+    }
+
+    private String href(Path path) {
+        if (!path.startsWith(baseDirectory))
+            return path.toUri().toString();
+        StringBuilder rel = new StringBuilder();
+        for (Path segment : baseDirectory.relativize(path)) {
+            if (rel.length() > 0)
+                rel.append('/');
+            else if (segment.toString().indexOf(':') >= 0)
+                // or it would look like a scheme
+                rel.append("./");
+            rel.append(segment.toString());
+        }
+        try {
+            return new URI(null, null, rel.toString(), null).getRawPath();
+        } catch (URISyntaxException e) {
+            // can't happen: there's only a path, which is quoted as needed
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static StructMap pageSequence(Map<String, List<File>> pages) {
+        StructMap structMap = new StructMap();
+        structMap.setType("physical");
+        Div sequence = new Div();
+        sequence.setType("sequence");
+        int order = 0;
+        for (List<File> files : pages.values()) {
+            Div page = new Div();
+            page.setType("page");
+            page.setORDER(BigInteger.valueOf(++order));
+            for (File file : files) {
+                Fptr fptr = new Fptr();
+                fptr.setFILEID(file.getID());
+                page.getFptr().add(fptr);
+            }
+            sequence.getDiv().add(page);
+        }
+        structMap.setDiv(sequence);
+        return structMap;
+    }
+
+    /*
+     * Makes a USE fit in an ID
+     */
+    private static String ncName(String use) {
+        StringBuilder sb = new StringBuilder(use.length());
+        for (int i = 0; i < use.length(); i++) {
+            char c = use.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-'
+                    || c == '.' || c == '_';
+            sb.append(ok ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    /*
+     * What's learned from reading a file
+     */
+    private static class Entry {
+        final Path path;
+        final long created;
+        final String mimeType;
+
+        Entry(Path path, long created, String mimeType) {
+            this.path = path;
+            this.created = created;
+            this.mimeType = mimeType;
+        }
+    }
+
+    /*
+     * Lets IOExceptions out of a ForkJoinTask
+     */
+    private static class UncheckedIOException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedIOException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /*
+     * Lists a directory, and its subdirectories in parallel. The result is in path order.
+     */
+    private static class DirTask extends RecursiveTask<List<Entry>> {
+        private static final long serialVersionUID = 1L;
+        private final Path dir;
+
+        DirTask(Path dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        protected List<Entry> compute() {
+            List<Path> children = new ArrayList<Path>();
+            try {
+                DirectoryStream<Path> stream = Files.newDirectoryStream(dir);
+                try {
+                    for (Path child : stream)
+                        children.add(child);
+                } finally {
+                    stream.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            Collections.sort(children);
+            List<Object> found = new ArrayList<Object>(children.size());
+            List<DirTask> tasks = new ArrayList<DirTask>();
+            try {
+                for (Path child : children) {
+                    // symbolic links to directories aren't followed, so there can't be cycles
+                    if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                        DirTask task = new DirTask(child);
+                        tasks.add(task);
+                        found.add(task);
+                    } else if (Files.isRegularFile(child)) {
+                        BasicFileAttributes attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                        found.add(new Entry(child, attrs.creationTime().toMillis(), mimeType(child)));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            invokeAll(tasks);
+            List<Entry> entries = new ArrayList<Entry>();
+            for (Object o : found) {
+                if (o instanceof DirTask)
+                    entries.addAll(((DirTask) o).join());
+                else
+                    entries.add((Entry) o);
+            }
+            return entries;
+        }
+
+        private static String mimeType(Path path) throws IOException {
+            String mimeType = Files.probeContentType(path);
+            if (mimeType == null)
+                mimeType = URLConnection.guessContentTypeFromName(path.getFileName().toString());
+            return mimeType;
+        }
+    }
+}
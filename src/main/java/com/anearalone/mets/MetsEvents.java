@@ -0,0 +1,133 @@
+/**
+ * MetsEvents.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import com.anearalone.mets.MetsListener.Operation;
+
+/**
+ * JDK Flight Recorder events for slow METS operations, so that they show up in a recording next
+ * to GC, I/O and everything else that was going on. Each is recorded only if it takes at least its
+ * threshold:
+ * <table>
+ * <tr><th>Event</th><th>Threshold</th><th>Fields</th></tr>
+ * <tr><td>{@value #READ}</td><td>20 ms</td><td>reader, OBJID, bytes, elements, failure</td></tr>
+ * <tr><td>{@value #WRITE}</td><td>20 ms</td><td>writer, OBJID, bytes, elements, failure</td></tr>
+ * <tr><td>{@value #SECTION_READ}</td><td>10 ms</td><td>section, OBJID, elements</td></tr>
+ * <tr><td>{@value #SECTION_WRITE}</td><td>10 ms</td><td>section, OBJID, elements</td></tr>
+ * <tr><td>{@value #TRANSFORM}</td><td>20 ms</td><td>OBJID, elements</td></tr>
+ * <tr><td>{@value #VALIDATE}</td><td>20 ms</td><td>validator, OBJID, problems</td></tr>
+ * </table>
+ * A read or write event covers the whole document, including (for {@link MetsReader}) building
+ * the DOM; a section event covers each section's unmarshalling or marshalling; a transform event
+ * covers {@link MetsWriter}'s serialization of the DOM it has built.
+ * <p>
+ * The events are on by default, so any recording (e.g. <code>-XX:StartFlightRecording</code>)
+ * includes them. Thresholds, like other settings, can be changed for a recording, in a
+ * <code>.jfc</code> file:
+ *
+ * <pre>
+ * &lt;event name=&quot;com.anearalone.mets.Read&quot;&gt;
+ *   &lt;setting name=&quot;enabled&quot;&gt;true&lt;/setting&gt;
+ *   &lt;setting name=&quot;threshold&quot;&gt;100 ms&lt;/setting&gt;
+ * &lt;/event&gt;
+ * </pre>
+ *
+ * or programmatically, with <code>recording.enable(MetsEvents.READ).withThreshold(...)</code>.
+ * <p>
+ * While no recording has them enabled, they cost a check per document. Flight Recorder needs Java
+ * 11 or later (or 8u262); on earlier JVMs there are no events, and nothing else changes.
+ *
+ * @see MetsListener
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public abstract class MetsEvents {
+    public static final String READ = "com.anearalone.mets.Read";
+    public static final String WRITE = "com.anearalone.mets.Write";
+    public static final String SECTION_READ = "com.anearalone.mets.SectionRead";
+    public static final String SECTION_WRITE = "com.anearalone.mets.SectionWrite";
+    public static final String TRANSFORM = "com.anearalone.mets.Transform";
+    public static final String VALIDATE = "com.anearalone.mets.Validate";
+
+    // before INSTANCE, which may be it
+    private static final MetsEvents NONE = new MetsEvents() {
+        @Override
+        MetsProbe probe(MetsIO io, MetsListener listener, Operation operation) {
+            return listener == null ? null : new MetsProbe(listener, operation);
+        }
+
+        @Override
+        Validation validation(Class<?> validator) {
+            return null;
+        }
+    };
+    static final MetsEvents INSTANCE = load();
+
+    // only JfrMetsEvents, and NONE
+    MetsEvents() {
+    }
+
+    /**
+     * @return whether the JVM has Flight Recorder, so that the events can be recorded
+     */
+    public static boolean isAvailable() {
+        return INSTANCE != NONE;
+    }
+
+    /**
+     * @param io
+     *            the reader or writer
+     * @param listener
+     *            its listener, or null
+     * @param operation
+     * @return a probe for a document, or null if neither the listener nor a recording wants one
+     */
+    abstract MetsProbe probe(MetsIO io, MetsListener listener, Operation operation);
+
+    /**
+     * @param validator
+     * @return a validation to end when it's done, or null if no recording wants it
+     */
+    abstract Validation validation(Class<?> validator);
+
+    /**
+     * A validation being timed.
+     */
+    abstract static class Validation {
+
+        /**
+         * @param objid
+         *            or null, if not known
+         * @param problems
+         */
+        abstract void end(String objid, int problems);
+    }
+
+    /*
+     * The JFR classes are only loaded if the JVM has Flight Recorder
+     */
+    private static MetsEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (MetsEvents) Class.forName("com.anearalone.mets.JfrMetsEvents").getDeclaredConstructor()
+                    .newInstance();
+        } catch (Exception e) {
+            return NONE;
+        } catch (LinkageError e) {
+            return NONE;
+        }
+    }
+}
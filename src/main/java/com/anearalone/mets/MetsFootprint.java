@@ -0,0 +1,538 @@
+/**
+ * MetsFootprint.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Estimates how much heap a {@link Mets} retains, by walking everything it refers to, and reports
+ * the bytes and the number of objects by section, and by class. Meant for sizing caches of parsed
+ * documents (e.g. as a cache's weigher), and for planning capacity.
+ * <p>
+ * What a document retains isn't only the model objects and their strings. Each <code>xmlData</code>
+ * that has been asked for as DOM {@link org.w3c.dom.Element}s keeps a whole
+ * {@link org.w3c.dom.Document} alive; every <code>ORDER</code> is a {@link BigInteger}, and every
+ * date an {@link XMLGregorianCalendar}; and each list (of <code>DMDID</code>s, <code>fptr</code>s,
+ * and so on) is an {@link ArrayList} with an array of its own. These are all counted, as is the
+ * document's {@link MetsIndex}, if it has one (as its own section).
+ * <p>
+ * Sizes are estimated from each class's fields, for a 64-bit HotSpot JVM, with or without
+ * compressed references (see {@link #setCompressedOops(boolean)}). The insides of JDK classes that
+ * can't be looked into (strings, collections, DOM nodes, and the like) are estimated from what
+ * they hold. Objects are counted once, under the first section that reaches them, in document
+ * order; anything shared with other documents (interned strings, say) is counted as if it
+ * weren't. Memory outside the heap (e.g. <code>xmlData</code> read with
+ * {@link MetsStreamReader#readMapped(java.io.File)}) isn't counted.
+ * <p>
+ * Measuring takes time and memory in proportion to the number of objects, so for a weigher on a
+ * hot path it's better to measure once, when a document is cached, than every time it is weighed.
+ * A document mustn't be modified while it is being measured.
+ * <p>
+ * A given instance may be reused as necessary, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsFootprint {
+    private static final String[] OPAQUE_PACKAGES = { "java.", "javax.", "sun.", "com.sun.", "jdk.", "org.w3c.",
+            "org.xml." };
+    private static final boolean COMPACT_STRINGS = !System.getProperty("java.specification.version").startsWith(
+            "1.");
+    private volatile boolean compressedOops = Runtime.getRuntime().maxMemory() < 32L * 1024 * 1024 * 1024;
+
+    /**
+     * Walks everything <code>mets</code> refers to.
+     *
+     * @param mets
+     * @return the estimated bytes and objects, by section and by class
+     */
+    public Report measure(Mets mets) {
+        Walk walk = new Walk(compressedOops);
+        walk.section("mets", mets);
+        walk.section("metsHdr", mets.metsHdr);
+        walk.section("dmdSec", mets.dmdSec);
+        walk.section("amdSec", mets.amdSec);
+        walk.section("fileSec", mets.fileSec);
+        walk.section("structMap", mets.structMap);
+        walk.section("structLink", mets.structLink);
+        walk.section("behaviorSec", mets.behaviorSec);
+        walk.section("index", mets.index);
+        return new Report(walk.sections, walk.classes);
+    }
+
+    /**
+     * @param mets
+     * @return the estimated bytes that <code>mets</code> retains
+     * @see #measure(Mets)
+     */
+    public long estimate(Mets mets) {
+        return measure(mets).getBytes();
+    }
+
+    /**
+     * @return whether references are estimated as compressed (4 bytes) rather than 8
+     */
+    public boolean isCompressedOops() {
+        return compressedOops;
+    }
+
+    /**
+     * @param compressedOops
+     *            true if the JVM compresses references (as it does by default for heaps under 32GB),
+     *            false if not; by default, true if this JVM's maximum heap is under 32GB
+     */
+    public void setCompressedOops(boolean compressedOops) {
+        this.compressedOops = compressedOops;
+    }
+
+    /*
+     * One measurement
+     */
+    private static class Walk {
+        final int headerSize;
+        final int arrayHeaderSize;
+        final int referenceSize;
+        final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        final Deque<Object> stack = new ArrayDeque<Object>();
+        final Map<Class<?>, ClassInfo> classInfo = new HashMap<Class<?>, ClassInfo>();
+        final Map<String, Usage> sections = new LinkedHashMap<String, Usage>();
+        final Map<String, Usage> classes = new HashMap<String, Usage>();
+        Usage section;
+
+        Walk(boolean compressedOops) {
+            headerSize = compressedOops ? 12 : 16;
+            arrayHeaderSize = compressedOops ? 16 : 24;
+            referenceSize = compressedOops ? 4 : 8;
+        }
+
+        void section(String name, Object root) {
+            section = new Usage();
+            sections.put(name, section);
+            if (root instanceof Mets) {
+                // only the root element itself: its sections are walked as sections of their own
+                Mets mets = (Mets) root;
+                seen.add(mets);
+                count(mets.getClass().getName(), shallowSize(mets.getClass()));
+                push(mets.id);
+                push(mets.objid);
+                push(mets.label);
+                push(mets.type);
+                push(mets.profile);
+            } else if (root != null)
+                stack.push(root);
+            while (!stack.isEmpty()) {
+                Object o = stack.pop();
+                if (seen.add(o))
+                    visit(o);
+            }
+        }
+
+        void visit(Object o) {
+            Class<?> c = o.getClass();
+            if (c.isArray()) {
+                Class<?> component = c.getComponentType();
+                int length = Array.getLength(o);
+                count(component.getName() + "[]", arraySize(component, length));
+                if (!component.isPrimitive()) {
+                    for (Object e : (Object[]) o)
+                        push(e);
+                }
+            } else if (o instanceof String) {
+                String s = (String) o;
+                count(c.getName(), shallowSize(c));
+                count(COMPACT_STRINGS ? "byte[]" : "char[]", stringArraySize(s));
+            } else if (o instanceof Node) {
+                visitNode((Node) o);
+            } else if (o instanceof Collection && isOpaque(c)) {
+                visitCollection((Collection<?>) o);
+            } else if (o instanceof Map && isOpaque(c)) {
+                visitMap((Map<?, ?>) o);
+            } else if (o instanceof BigInteger) {
+                count(c.getName(), shallowSize(c));
+                count("int[]", arraySize(int.class, (((BigInteger) o).bitLength() + 31) / 32));
+            } else if (o instanceof BigDecimal) {
+                BigDecimal d = (BigDecimal) o;
+                count(c.getName(), shallowSize(c));
+                if (d.precision() > 18) // otherwise it's held in a long
+                    push(d.unscaledValue());
+            } else if (o instanceof XMLGregorianCalendar) {
+                XMLGregorianCalendar cal = (XMLGregorianCalendar) o;
+                count(c.getName(), shallowSize(c));
+                push(cal.getEon());
+                push(cal.getFractionalSecond());
+            } else if (o instanceof ByteBuffer) {
+                ByteBuffer b = (ByteBuffer) o;
+                count(c.getName(), shallowSize(c));
+                if (b.hasArray()) // a direct (or mapped) buffer's contents aren't on the heap
+                    push(b.array());
+            } else if (o instanceof Path) {
+                count(c.getName(), shallowSize(c));
+                count("byte[]", arraySize(byte.class, o.toString().length()));
+            } else if (o instanceof java.io.File) {
+                count(c.getName(), shallowSize(c));
+                push(((java.io.File) o).getPath());
+            } else if (o instanceof Enum || o instanceof Class) {
+                // shared by every document
+                return;
+            } else {
+                ClassInfo info = info(c);
+                count(c.getName(), info.shallowSize);
+                for (Field f : info.references) {
+                    try {
+                        push(f.get(o));
+                    } catch (IllegalAccessException e) {
+                        // can't happen: the fields were made accessible
+                        throw new IllegalStateException(e);
+                    }
+                }
+            }
+        }
+
+        /*
+         * A node keeps its whole tree (and its document) alive, so the walk goes up as well as
+         * down
+         */
+        void visitNode(Node n) {
+            count(n.getClass().getName(), shallowSize(n.getClass()));
+            push(n.getParentNode());
+            push(n.getOwnerDocument());
+            for (Node child = n.getFirstChild(); child != null; child = child.getNextSibling())
+                push(child);
+            push(n.getNodeName());
+            push(n.getLocalName());
+            push(n.getNamespaceURI());
+            if (n.getNodeType() != Node.ELEMENT_NODE && n.getNodeType() != Node.DOCUMENT_NODE)
+                push(n.getNodeValue());
+            // (an element without attributes makes an empty map if it's asked for it)
+            NamedNodeMap attrs = n.hasAttributes() ? n.getAttributes() : null;
+            if (attrs != null && seen.add(attrs)) {
+                count(attrs.getClass().getName(), shallowSize(attrs.getClass()));
+                // which holds its nodes in a list
+                count(ArrayList.class.getName(), shallowSize(ArrayList.class));
+                count("java.lang.Object[]", arraySize(Object.class, capacity(attrs.getLength())));
+                for (int i = 0; i < attrs.getLength(); i++)
+                    push(attrs.item(i));
+            }
+        }
+
+        void visitCollection(Collection<?> collection) {
+            Class<?> c = collection.getClass();
+            count(c.getName(), shallowSize(c));
+            if (collection instanceof Set) {
+                // a HashSet is a HashMap
+                count(HashMap.class.getName(), shallowSize(HashMap.class));
+                visitHashTable(collection.size(), collection instanceof java.util.LinkedHashSet);
+            } else if (!collection.isEmpty()) {
+                // an ArrayList, or something like it
+                count("java.lang.Object[]", arraySize(Object.class, capacity(collection.size())));
+            }
+            for (Object e : collection)
+                push(e);
+        }
+
+        void visitMap(Map<?, ?> map) {
+            Class<?> c = map.getClass();
+            count(c.getName(), shallowSize(c));
+            if (map instanceof TreeMap) {
+                // key, value, left, right, parent, color
+                count("java.util.TreeMap$Entry", align(headerSize + 5 * referenceSize + 1), map.size());
+            } else if (map instanceof IdentityHashMap) {
+                count("java.lang.Object[]", arraySize(Object.class, 2 * tableSize(map.size())));
+            } else if (!(map instanceof HashMap) && !(map instanceof LinkedHashMap)) {
+                // some wrapper: count what it wraps as a HashMap
+                count(HashMap.class.getName(), shallowSize(HashMap.class));
+                visitHashTable(map.size(), false);
+            } else
+                visitHashTable(map.size(), map instanceof LinkedHashMap);
+            for (Map.Entry<?, ?> e : map.entrySet()) {
+                push(e.getKey());
+                push(e.getValue());
+            }
+        }
+
+        void visitHashTable(int size, boolean linked) {
+            if (size == 0)
+                return;
+            count("java.util.HashMap$Node[]", arraySize(Object.class, tableSize(size)));
+            // hash, key, value, next (and before, after)
+            int node = align(headerSize + 4 + (linked ? 5 : 3) * referenceSize);
+            count(linked ? "java.util.LinkedHashMap$Entry" : "java.util.HashMap$Node", node, size);
+        }
+
+        void push(Object o) {
+            if (o != null && !seen.contains(o))
+                stack.push(o);
+        }
+
+        void count(String className, long bytes) {
+            count(className, bytes, 1);
+        }
+
+        void count(String className, long bytes, long objects) {
+            section.add(bytes * objects, objects);
+            Usage usage = classes.get(className);
+            if (usage == null) {
+                usage = new Usage();
+                classes.put(className, usage);
+            }
+            usage.add(bytes * objects, objects);
+        }
+
+        long stringArraySize(String s) {
+            if (!COMPACT_STRINGS)
+                return arraySize(char.class, s.length());
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) > 0xFF)
+                    return arraySize(char.class, s.length());
+            }
+            return arraySize(byte.class, s.length());
+        }
+
+        long arraySize(Class<?> component, int length) {
+            return align(arrayHeaderSize + (long) length * fieldSize(component));
+        }
+
+        long shallowSize(Class<?> c) {
+            return info(c).shallowSize;
+        }
+
+        ClassInfo info(Class<?> c) {
+            ClassInfo info = classInfo.get(c);
+            if (info == null) {
+                info = new ClassInfo(c, this);
+                classInfo.put(c, info);
+            }
+            return info;
+        }
+
+        int fieldSize(Class<?> type) {
+            if (type == long.class || type == double.class)
+                return 8;
+            if (type == int.class || type == float.class)
+                return 4;
+            if (type == short.class || type == char.class)
+                return 2;
+            if (type == byte.class || type == boolean.class)
+                return 1;
+            return referenceSize;
+        }
+
+        long align(long size) {
+            return (size + 7) & ~7L;
+        }
+
+        int align(int size) {
+            return (size + 7) & ~7;
+        }
+
+        /*
+         * The capacity of a list that was grown to size one element at a time
+         */
+        static int capacity(int size) {
+            int capacity = 10;
+            while (capacity < size)
+                capacity += capacity >> 1;
+            return capacity;
+        }
+
+        /*
+         * The table length of a hash table holding size entries, at the default load factor
+         */
+        static int tableSize(int size) {
+            int table = 16;
+            while (table * 3 / 4 < size)
+                table <<= 1;
+            return table;
+        }
+    }
+
+    private static boolean isOpaque(Class<?> c) {
+        String name = c.getName();
+        for (String prefix : OPAQUE_PACKAGES) {
+            if (name.startsWith(prefix))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * A class's estimated size, and the fields to follow, if it can be looked into
+     */
+    private static class ClassInfo {
+        final long shallowSize;
+        final List<Field> references = new ArrayList<Field>();
+
+        ClassInfo(Class<?> c, Walk walk) {
+            long size = walk.headerSize;
+            for (Class<?> k = c; k != null; k = k.getSuperclass()) {
+                // fields inherited from an opaque class are counted, not followed
+                boolean opaque = isOpaque(k);
+                for (Field f : k.getDeclaredFields()) {
+                    if (Modifier.isStatic(f.getModifiers()))
+                        continue;
+                    size += walk.fieldSize(f.getType());
+                    if (!opaque && !f.getType().isPrimitive()) {
+                        f.setAccessible(true);
+                        references.add(f);
+                    }
+                }
+            }
+            this.shallowSize = walk.align(size);
+        }
+    }
+
+    /**
+     * Bytes and objects.
+     */
+    public static class Usage {
+        private long bytes;
+        private long objects;
+
+        void add(long bytes, long objects) {
+            this.bytes += bytes;
+            this.objects += objects;
+        }
+
+        /**
+         * @return the estimated bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of objects (including arrays)
+         */
+        public long getObjects() {
+            return objects;
+        }
+
+        @Override
+        public String toString() {
+            return bytes + " bytes in " + objects + " objects";
+        }
+    }
+
+    /**
+     * What a document retains.
+     */
+    public static class Report {
+        private final Map<String, Usage> sections;
+        private final Map<String, Usage> classes;
+        private final long bytes;
+        private final long objects;
+
+        Report(Map<String, Usage> sections, Map<String, Usage> classes) {
+            this.sections = Collections.unmodifiableMap(sections);
+            List<Map.Entry<String, Usage>> byBytes = new ArrayList<Map.Entry<String, Usage>>(classes.entrySet());
+            Collections.sort(byBytes, new Comparator<Map.Entry<String, Usage>>() {
+                @Override
+                public int compare(Map.Entry<String, Usage> a, Map.Entry<String, Usage> b) {
+                    long x = a.getValue().getBytes();
+                    long y = b.getValue().getBytes();
+                    return x < y ? 1 : x > y ? -1 : a.getKey().compareTo(b.getKey());
+                }
+            });
+            Map<String, Usage> sorted = new LinkedHashMap<String, Usage>();
+            for (Map.Entry<String, Usage> e : byBytes)
+                sorted.put(e.getKey(), e.getValue());
+            this.classes = Collections.unmodifiableMap(sorted);
+            long bytes = 0;
+            long objects = 0;
+            for (Usage usage : sections.values()) {
+                bytes += usage.getBytes();
+                objects += usage.getObjects();
+            }
+            this.bytes = bytes;
+            this.objects = objects;
+        }
+
+        /**
+         * @return the estimated bytes retained in all
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of objects retained in all
+         */
+        public long getObjects() {
+            return objects;
+        }
+
+        /**
+         * @return by section, in document order: "mets" (the root element itself), "metsHdr",
+         *         "dmdSec", "amdSec", "fileSec", "structMap", "structLink", "behaviorSec" and
+         *         "index" (the {@link MetsIndex}, if it has been built)
+         */
+        public Map<String, Usage> getSections() {
+            return sections;
+        }
+
+        /**
+         * @return by class name (arrays as e.g. <code>byte[]</code>), biggest first
+         */
+        public Map<String, Usage> getClasses() {
+            return classes;
+        }
+
+        /**
+         * @return the sections, and the ten biggest classes
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("%,d bytes in %,d objects%n", bytes, objects));
+            for (Map.Entry<String, Usage> e : sections.entrySet()) {
+                sb.append(String.format("  %-12s %,15d bytes %,12d objects%n", e.getKey(), e.getValue().getBytes(),
+                        e.getValue().getObjects()));
+            }
+            int n = 0;
+            for (Map.Entry<String, Usage> e : classes.entrySet()) {
+                if (n++ == 10)
+                    break;
+                sb.append(String.format("  %,15d bytes %,12d objects  %s%n", e.getValue().getBytes(),
+                        e.getValue().getObjects(), e.getKey()));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,655 @@
+/**
+ * MetsGenerator.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+import javax.xml.XMLConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FileSec.FileGrp.File.FLocat;
+import com.anearalone.mets.LocatorElement.LOCTYPE;
+import com.anearalone.mets.MdSec.MDTYPE;
+import com.anearalone.mets.MdSec.MdWrap;
+import com.anearalone.mets.MetsHdr.Agent;
+import com.anearalone.mets.SharedEnums.CHECKSUMTYPE;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.utils.FormattingXMLStreamWriter;
+
+/**
+ * Generates synthetic METS documents, e.g. for load testing, or for benchmarks that need documents
+ * of a given size and shape. Each document has:
+ * <ul>
+ * <li>a <code>metsHdr</code>;</li>
+ * <li>{@link #getDmdSecs()} <code>dmdSec</code>s of MODS, and {@link #getAmdSecs()}
+ * <code>amdSec</code>s, each with a <code>techMD</code> and a <code>digiprovMD</code>, all with
+ * <code>xmlData</code> of about {@link #getXmlDataSize()} characters;</li>
+ * <li>a <code>fileSec</code> with a <code>fileGrp</code> for each of {@link #getFileGrpUses()},
+ * nested {@link #getFileGrpDepth()} deep, each with a file per page;</li>
+ * <li>a <code>structMap</code> {@link #getStructMapDepth()} <code>div</code>s deep, each
+ * <code>div</code> having up to {@link #getStructMapFanOut()} children, and each page
+ * <code>div</code> an <code>fptr</code> to its file in each <code>fileGrp</code>.</li>
+ * </ul>
+ * Files refer to <code>techMD</code>s (<code>ADMID</code>), and <code>div</code>s to
+ * <code>dmdSec</code>s (<code>DMDID</code>), as often as {@link #getIdrefDensity()} says.
+ * <p>
+ * Generation is deterministic: the same options, seed and document number always give the same
+ * bytes, whatever else has been generated, so that numbers measured on a corpus can be compared
+ * across runs (and across machines). Even the <code>metsHdr</code>'s <code>LASTMODDATE</code>,
+ * which {@link MetsStreamWriter} always sets to the time of writing, is fixed.
+ * <p>
+ * Documents are built from the model classes, but a section (or a <code>file</code>, or a
+ * <code>div</code>) at a time, and streamed straight to the output, so that even a document of
+ * millions of files isn't held in memory.
+ * <p>
+ * Set the options before calling {@link #generate(long, OutputStream)}; once configured, a given
+ * instance may be reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsGenerator {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern NCNAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.-]*");
+    // Oct 16, 2011 (UTC), from which dates are generated
+    private static final long EPOCH = 1318723200000L;
+    private static final long DECADE = 10L * 365 * 24 * 60 * 60 * 1000;
+    private static final String MODS = "http://www.loc.gov/mods/v3";
+    private static final String SYNTHETIC = "urn:x-mets-api:synthetic";
+    private static final String[][] FORMATS = { { "image/tiff", "tif" }, { "image/jp2", "jp2" },
+            { "image/jpeg", "jpg" }, { "text/xml", "xml" }, { "application/pdf", "pdf" } };
+    private static final String[] WORDS = { "lorem", "ipsum", "dolor", "sit", "amet", "consectetur",
+            "adipiscing", "elit", "sed", "do", "eiusmod", "tempor", "incididunt", "ut", "labore", "et",
+            "dolore", "magna", "aliqua", "enim", "ad", "minim", "veniam", "quis", "nostrud",
+            "exercitation", "ullamco", "laboris", "nisi", "aliquip", "ex", "ea", "commodo",
+            "consequat" };
+
+    private volatile long seed;
+    private volatile int pages = 100;
+    private volatile List<String> fileGrpUses = Collections.unmodifiableList(Arrays.asList("master",
+            "derivative"));
+    private volatile int fileGrpDepth = 1;
+    private volatile int structMapDepth = 2;
+    private volatile int structMapFanOut = 10;
+    private volatile int dmdSecs = 10;
+    private volatile int amdSecs = 10;
+    private volatile double idrefDensity = 0.5;
+    private volatile int xmlDataSize = 1024;
+    private volatile boolean indent = true;
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Writes document number <code>n</code> as UTF-8. The stream is flushed but not closed.
+     *
+     * @param n
+     *            which document; each is different, but always the same for the same options and
+     *            seed
+     * @param out
+     * @throws XMLStreamException
+     */
+    public void generate(long n, OutputStream out) throws XMLStreamException {
+        new Run(n).write(out);
+    }
+
+    /**
+     * Writes document number <code>n</code> to <code>file</code>, replacing it if it exists.
+     *
+     * @param n
+     * @param file
+     * @throws IOException
+     * @throws XMLStreamException
+     * @see #generate(long, OutputStream)
+     */
+    public void generate(long n, Path file) throws IOException, XMLStreamException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            generate(n, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes documents 0 to <code>documents - 1</code> to <code>directory</code> (which is made if
+     * necessary), as <code>mets-000000.xml</code> and so on, {@link #getParallelism()} at a time.
+     *
+     * @param directory
+     * @param documents
+     * @return the files written, in order
+     * @throws IOException
+     * @throws XMLStreamException
+     * @throws InterruptedException
+     *             if the calling thread is interrupted; the documents being written are abandoned
+     */
+    public List<Path> generateCorpus(Path directory, int documents) throws IOException, XMLStreamException,
+            InterruptedException {
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<Path>(documents);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(documents);
+        for (int i = 0; i < documents; i++) {
+            final int n = i;
+            final Path path = directory.resolve(String.format("mets-%06d.xml", i));
+            paths.add(path);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException, XMLStreamException {
+                    generate(n, path);
+                    return null;
+                }
+            });
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, documents)),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "mets-generator");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            for (Future<Void> f : executor.invokeAll(tasks))
+                f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof XMLStreamException)
+                throw (XMLStreamException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return paths;
+    }
+
+    /**
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed
+     *            what every document is generated from, with its number; 0 by default
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the number of pages in each document
+     */
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * @param pages
+     *            the number of pages in each document, i.e. of files in each <code>fileGrp</code>,
+     *            and of page <code>div</code>s; 100 by default
+     */
+    public void setPages(int pages) {
+        if (pages < 1)
+            throw new IllegalArgumentException("pages must be at least 1");
+        this.pages = pages;
+    }
+
+    /**
+     * @return the <code>@USE</code>s of the <code>fileGrp</code>s
+     */
+    public List<String> getFileGrpUses() {
+        return fileGrpUses;
+    }
+
+    /**
+     * @param uses
+     *            the <code>@USE</code>s of the <code>fileGrp</code>s, one <code>fileGrp</code>
+     *            each, which are also used in <code>@ID</code>s, so must be NCNames; "master" and
+     *            "derivative" by default
+     */
+    public void setFileGrpUses(String... uses) {
+        if (uses.length == 0)
+            throw new IllegalArgumentException("at least one fileGrp is required");
+        for (String use : uses) {
+            if (use == null || !NCNAME.matcher(use).matches())
+                throw new IllegalArgumentException("Not an NCName: " + use);
+        }
+        this.fileGrpUses = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(uses)));
+    }
+
+    /**
+     * @return how deep <code>fileGrp</code>s are nested
+     */
+    public int getFileGrpDepth() {
+        return fileGrpDepth;
+    }
+
+    /**
+     * @param fileGrpDepth
+     *            how deep <code>fileGrp</code>s are nested, with the files in the innermost; 1 (no
+     *            nesting) by default
+     */
+    public void setFileGrpDepth(int fileGrpDepth) {
+        if (fileGrpDepth < 1)
+            throw new IllegalArgumentException("fileGrpDepth must be at least 1");
+        this.fileGrpDepth = fileGrpDepth;
+    }
+
+    /**
+     * @return the number of levels of <code>div</code> above the pages
+     */
+    public int getStructMapDepth() {
+        return structMapDepth;
+    }
+
+    /**
+     * @param structMapDepth
+     *            the number of levels of <code>div</code> above the page <code>div</code>s,
+     *            including the root; 2 by default
+     */
+    public void setStructMapDepth(int structMapDepth) {
+        if (structMapDepth < 1)
+            throw new IllegalArgumentException("structMapDepth must be at least 1");
+        this.structMapDepth = structMapDepth;
+    }
+
+    /**
+     * @return the most children a <code>div</code> above the pages has
+     */
+    public int getStructMapFanOut() {
+        return structMapFanOut;
+    }
+
+    /**
+     * @param structMapFanOut
+     *            the most child <code>div</code>s a <code>div</code> above the pages has, the pages
+     *            being shared between them; 10 by default. With 1, the <code>structMap</code> is a
+     *            chain of {@link #getStructMapDepth()} <code>div</code>s with the pages at the end.
+     */
+    public void setStructMapFanOut(int structMapFanOut) {
+        if (structMapFanOut < 1)
+            throw new IllegalArgumentException("structMapFanOut must be at least 1");
+        this.structMapFanOut = structMapFanOut;
+    }
+
+    /**
+     * @return the number of <code>dmdSec</code>s
+     */
+    public int getDmdSecs() {
+        return dmdSecs;
+    }
+
+    /**
+     * @param dmdSecs
+     *            the number of <code>dmdSec</code>s; 10 by default
+     */
+    public void setDmdSecs(int dmdSecs) {
+        if (dmdSecs < 0)
+            throw new IllegalArgumentException("dmdSecs must not be negative");
+        this.dmdSecs = dmdSecs;
+    }
+
+    /**
+     * @return the number of <code>amdSec</code>s
+     */
+    public int getAmdSecs() {
+        return amdSecs;
+    }
+
+    /**
+     * @param amdSecs
+     *            the number of <code>amdSec</code>s; 10 by default
+     */
+    public void setAmdSecs(int amdSecs) {
+        if (amdSecs < 0)
+            throw new IllegalArgumentException("amdSecs must not be negative");
+        this.amdSecs = amdSecs;
+    }
+
+    /**
+     * @return the proportion of files and <code>div</code>s with <code>ADMID</code>s or
+     *         <code>DMDID</code>s
+     */
+    public double getIdrefDensity() {
+        return idrefDensity;
+    }
+
+    /**
+     * @param idrefDensity
+     *            from 0 to 1, the proportion of files that refer to a <code>techMD</code>, and of
+     *            <code>div</code>s that refer to a <code>dmdSec</code> (the root <code>div</code>
+     *            always does, if there are any); 0.5 by default
+     */
+    public void setIdrefDensity(double idrefDensity) {
+        if (!(idrefDensity >= 0 && idrefDensity <= 1))
+            throw new IllegalArgumentException("idrefDensity must be from 0 to 1");
+        this.idrefDensity = idrefDensity;
+    }
+
+    /**
+     * @return about how many characters of text each <code>xmlData</code> has
+     */
+    public int getXmlDataSize() {
+        return xmlDataSize;
+    }
+
+    /**
+     * @param xmlDataSize
+     *            about how many characters of text each <code>xmlData</code> has; 1024 by default
+     */
+    public void setXmlDataSize(int xmlDataSize) {
+        if (xmlDataSize < 0)
+            throw new IllegalArgumentException("xmlDataSize must not be negative");
+        this.xmlDataSize = xmlDataSize;
+    }
+
+    /**
+     * @return whether whitespace is added to indent elements (the default)
+     */
+    public boolean isIndent() {
+        return indent;
+    }
+
+    /**
+     * @param indent
+     *            true to indent as {@link MetsStreamWriter} does, false to add no whitespace
+     */
+    public void setIndent(boolean indent) {
+        this.indent = indent;
+    }
+
+    /**
+     * @return the number of documents {@link #generateCorpus(Path, int)} writes at once
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *            the number of documents {@link #generateCorpus(Path, int)} writes at once; the
+     *            number of processors by default
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
+
+    /*
+     * One document, with a snapshot of the options
+     */
+    private class Run {
+        final long n;
+        final Random random;
+        final int pages = MetsGenerator.this.pages;
+        final List<String> uses = MetsGenerator.this.fileGrpUses;
+        final int fileGrpDepth = MetsGenerator.this.fileGrpDepth;
+        final int structMapDepth = MetsGenerator.this.structMapDepth;
+        final int structMapFanOut = MetsGenerator.this.structMapFanOut;
+        final int dmdSecs = MetsGenerator.this.dmdSecs;
+        final int amdSecs = MetsGenerator.this.amdSecs;
+        final double idrefDensity = MetsGenerator.this.idrefDensity;
+        final int xmlDataSize = MetsGenerator.this.xmlDataSize;
+        final Document doc = MetsIO.newDocument();
+        final String metsNs = NS.METS.ns();
+        int divs;
+
+        Run(long n) {
+            this.n = n;
+            // documents don't depend on each other, only on the seed and their number
+            this.random = new Random(seed ^ (0x9E3779B97F4A7C15L * (n + 1)));
+        }
+
+        void write(OutputStream out) throws XMLStreamException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8), BUFFER_SIZE);
+            XMLGregorianCalendar created = date();
+            FixedDateXMLStreamWriter w = new FixedDateXMLStreamWriter(writer, indent, created.toXMLFormat());
+            w.writeStartDocument("UTF-8", "1.0", false);
+            w.writeStartElement("mets", "mets", metsNs);
+            Mets mets = new Mets();
+            mets.setOBJID(String.format("synthetic-%06d", n));
+            mets.setLabel("Synthetic document " + n);
+            mets.setType("book");
+            mets.marshalAttributes(w);
+
+            MetsHdr hdr = new MetsHdr();
+            hdr.setCREATEDATE(created);
+            hdr.setRECORDSTATUS("synthetic");
+            Agent agent = new Agent(Agent.ROLE.CREATOR, MetsGenerator.class.getName());
+            agent.setTYPE(Agent.AGENTTYPE.OTHER);
+            agent.setOTHERTYPE("SOFTWARE");
+            hdr.getAgent().add(agent);
+            w.writeStartElement("mets", "metsHdr", metsNs);
+            hdr.marshal(w);
+            w.writeEndElement();
+
+            for (int i = 1; i <= dmdSecs; i++) {
+                MdSec dmd = new MdSec(String.format("DMD_%06d", i));
+                MdWrap wrap = new MdWrap(MDTYPE.MODS);
+                wrap.getXmlData().add(payload(MODS, "mods", "mods"));
+                dmd.setMdWrap(wrap);
+                w.writeStartElement("mets", "dmdSec", metsNs);
+                dmd.marshal(w);
+                w.writeEndElement();
+            }
+            for (int i = 1; i <= amdSecs; i++) {
+                AmdSec amd = new AmdSec();
+                amd.setID(String.format("AMD_%06d", i));
+                amd.getTechMD().add(synthetic(String.format("TECH_%06d", i), "technical"));
+                amd.getDigiprovMD().add(synthetic(String.format("DIGIPROV_%06d", i), "event"));
+                w.writeStartElement("mets", "amdSec", metsNs);
+                amd.marshal(w);
+                w.writeEndElement();
+            }
+
+            w.writeStartElement("mets", "fileSec", metsNs);
+            for (int g = 0; g < uses.size(); g++)
+                writeFileGrp(w, g, 1);
+            w.writeEndElement();
+
+            w.writeStartElement("mets", "structMap", metsNs);
+            w.writeAttribute("TYPE", "physical");
+            writeDiv(w, 1, 1, pages + 1);
+            w.writeEndElement();
+
+            w.writeEndElement();
+            w.writeEndDocument();
+            w.close();
+        }
+
+        /*
+         * The fileGrp for uses[g] at the given depth, and those nested in it
+         */
+        void writeFileGrp(XMLStreamWriter w, int g, int depth) throws XMLStreamException {
+            String use = uses.get(g);
+            FileGrp fileGrp = new FileGrp();
+            if (depth == 1) {
+                fileGrp.setID("FILEGRP_" + use);
+                fileGrp.setUse(use);
+            } else
+                fileGrp.setID("FILEGRP_" + use + "_" + depth);
+            w.writeStartElement("mets", "fileGrp", metsNs);
+            fileGrp.marshal(w); // just its attributes, as it is empty
+            if (depth < fileGrpDepth)
+                writeFileGrp(w, g, depth + 1);
+            else {
+                String[] format = FORMATS[g % FORMATS.length];
+                for (int p = 1; p <= pages; p++) {
+                    File file = new File(fileID(g, p));
+                    file.setMIMETYPE(format[0]);
+                    file.setSIZE(1024L + random.nextInt(64 * 1024 * 1024));
+                    file.setCREATED(date());
+                    file.setCHECKSUMTYPE(CHECKSUMTYPE.SHA_256);
+                    file.setCHECKSUM(hex(32));
+                    file.setGROUPID(String.format("PAGE_%06d", p));
+                    if (amdSecs > 0 && random.nextDouble() < idrefDensity)
+                        file.getADMID().add(String.format("TECH_%06d", 1 + random.nextInt(amdSecs)));
+                    FLocat fLocat = new FLocat();
+                    fLocat.setLOCTYPE(LOCTYPE.URL);
+                    fLocat.setXlinkHREF(String.format("%s/%06d.%s", use, p, format[1]));
+                    file.getFLocat().add(fLocat);
+                    w.writeStartElement("mets", "file", metsNs);
+                    file.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+            w.writeEndElement();
+        }
+
+        /*
+         * A div at the given level, for pages [from, to): either the page divs themselves, or up
+         * to structMapFanOut divs a level down, sharing them
+         */
+        void writeDiv(XMLStreamWriter w, int level, int from, int to) throws XMLStreamException {
+            Div div = new Div();
+            div.setID(String.format("DIV_%06d", ++divs));
+            div.setType(level == 1 ? "book" : "section");
+            if (dmdSecs > 0 && (level == 1 || random.nextDouble() < idrefDensity))
+                div.getDMDID().add(String.format("DMD_%06d", level == 1 ? 1 : 1 + random.nextInt(dmdSecs)));
+            w.writeStartElement("mets", "div", metsNs);
+            div.marshal(w); // just its attributes, as it is empty
+            if (level < structMapDepth) {
+                int size = to - from;
+                int chunk = (size + structMapFanOut - 1) / structMapFanOut;
+                for (int start = from; start < to; start += chunk)
+                    writeDiv(w, level + 1, start, Math.min(start + chunk, to));
+            } else {
+                for (int p = from; p < to; p++) {
+                    Div page = new Div();
+                    page.setID(String.format("DIV_%06d", ++divs));
+                    page.setType("page");
+                    page.setORDER(BigInteger.valueOf(p));
+                    page.setORDERLABEL(Integer.toString(p));
+                    if (dmdSecs > 0 && random.nextDouble() < idrefDensity)
+                        page.getDMDID().add(String.format("DMD_%06d", 1 + random.nextInt(dmdSecs)));
+                    for (int g = 0; g < uses.size(); g++) {
+                        Fptr fptr = new Fptr();
+                        fptr.setFILEID(fileID(g, p));
+                        page.getFptr().add(fptr);
+                    }
+                    w.writeStartElement("mets", "div", metsNs);
+                    page.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+            w.writeEndElement();
+        }
+
+        String fileID(int g, int p) {
+            return String.format("FILE_%s_%06d", uses.get(g), p);
+        }
+
+        MdSec synthetic(String id, String root) {
+            MdSec mdSec = new MdSec(id);
+            MdWrap wrap = new MdWrap(MDTYPE.OTHER);
+            wrap.setOTHERMDTYPE("SYNTHETIC");
+            wrap.getXmlData().add(payload(SYNTHETIC, "syn", root));
+            mdSec.setMdWrap(wrap);
+            return mdSec;
+        }
+
+        /*
+         * An element with notes of random words, about xmlDataSize characters in all
+         */
+        Element payload(String ns, String prefix, String localName) {
+            Element root = doc.createElementNS(ns, prefix + ":" + localName);
+            root.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, "xmlns:" + prefix, ns);
+            int written = 0;
+            StringBuilder text = new StringBuilder();
+            while (written < xmlDataSize) {
+                text.setLength(0);
+                int length = Math.min(xmlDataSize - written, 80 + random.nextInt(160));
+                while (text.length() < length) {
+                    if (text.length() > 0)
+                        text.append(' ');
+                    text.append(WORDS[random.nextInt(WORDS.length)]);
+                }
+                Element note = doc.createElementNS(ns, prefix + ":note");
+                note.setTextContent(text.toString());
+                root.appendChild(note);
+                written += text.length();
+            }
+            return root;
+        }
+
+        XMLGregorianCalendar date() {
+            GregorianCalendar c = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+            c.setTimeInMillis(EPOCH + (long) (random.nextDouble() * DECADE) / 1000 * 1000);
+            return MetsIO.getDataTypeFactory().newXMLGregorianCalendar(c);
+        }
+
+        String hex(int bytes) {
+            byte[] b = new byte[bytes];
+            random.nextBytes(b);
+            return Digest.toHex(b);
+        }
+    }
+
+    /*
+     * Writes the one LASTMODDATE, from MetsHdr, as the given date rather than now
+     */
+    private static class FixedDateXMLStreamWriter extends FormattingXMLStreamWriter {
+        private final String lastModDate;
+
+        FixedDateXMLStreamWriter(Writer out, boolean indent, String lastModDate) {
+            super(out, indent);
+            this.lastModDate = lastModDate;
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value) throws XMLStreamException {
+            super.writeAttribute(localName, "LASTMODDATE".equals(localName) ? lastModDate : value);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * MetsHandler.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.mets.StructMap.Div.Mptr;
+
+/**
+ * Callbacks for {@link MetsStreamReader#parse(java.io.InputStream, MetsHandler)}, which reads a
+ * METS document in a single pass without building a {@link Mets} tree.
+ * <p>
+ * Container elements (<code>mets</code>, <code>amdSec</code>, <code>fileSec</code>,
+ * <code>fileGrp</code>, <code>structMap</code> and <code>div</code>) are reported by a start and an
+ * end method. The object passed to them only has its attributes populated; its child lists are
+ * never filled in, so heap use does not grow with the size of the document. If a start method
+ * returns <code>false</code> the element's subtree is skipped by the parser without being
+ * unmarshalled, and the matching end method is not called.
+ * <p>
+ * The <code>mdSec</code>s are offered by {@link #onMdSecStart(String, MdSec)} with their
+ * attributes, and, unless it returns <code>false</code>, unmarshalled (including their
+ * <code>xmlData</code>) and handed over whole. Everything else (<code>metsHdr</code>,
+ * <code>file</code>, <code>fptr</code>, <code>mptr</code> and <code>structLink</code>) is fully
+ * unmarshalled and handed over whole. Objects are not reused by the parser, so handlers may keep
+ * references to them.
+ * <p>
+ * Extend {@link DefaultMetsHandler} to only override the methods of interest.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public interface MetsHandler {
+
+    /**
+     * @param mets
+     *            the root element's attributes
+     * @return false to skip the whole document
+     */
+    public boolean onMetsStart(Mets mets);
+
+    public void onMetsEnd(Mets mets);
+
+    public void onMetsHdr(MetsHdr metsHdr);
+
+    /**
+     * Called at the start of each <code>dmdSec</code>, and of each <code>techMD</code>,
+     * <code>rightsMD</code>, <code>sourceMD</code> and <code>digiprovMD</code> inside an
+     * <code>amdSec</code>.
+     *
+     * @param localName
+     *            the name of the element, e.g. <code>"dmdSec"</code> or <code>"techMD"</code>
+     * @param mdSec
+     *            the element's attributes (<code>ID</code>, <code>CREATED</code> etc.)
+     * @return false to skip it, <code>mdWrap</code>, <code>mdRef</code> and all, without
+     *         {@link #onMdSec(String, MdSec)} being called
+     */
+    public boolean onMdSecStart(String localName, MdSec mdSec);
+
+    /**
+     * Called with each <code>mdSec</code> that {@link #onMdSecStart(String, MdSec)} didn't skip.
+     *
+     * @param localName
+     *            the name of the element, e.g. <code>"dmdSec"</code> or <code>"techMD"</code>
+     * @param mdSec
+     *            the same object, now complete
+     */
+    public void onMdSec(String localName, MdSec mdSec);
+
+    public boolean onAmdSecStart(AmdSec amdSec);
+
+    public void onAmdSecEnd(AmdSec amdSec);
+
+    public boolean onFileSecStart(FileSec fileSec);
+
+    public void onFileSecEnd(FileSec fileSec);
+
+    public boolean onFileGrpStart(FileGrp fileGrp);
+
+    public void onFileGrpEnd(FileGrp fileGrp);
+
+    /**
+     * @param file
+     *            the complete file, including any nested <code>file</code>s
+     */
+    public void onFile(File file);
+
+    public boolean onStructMapStart(StructMap structMap);
+
+    public void onStructMapEnd(StructMap structMap);
+
+    public boolean onDivStart(Div div);
+
+    public void onDivEnd(Div div);
+
+    public void onFptr(Fptr fptr);
+
+    public void onMptr(Mptr mptr);
+
+    public void onStructLink(StructLink structLink);
+}
@@ -22,11 +22,13 @@ import java.util.List;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.utils.DOMHelp;
 
@@ -309,23 +311,47 @@ public class MetsHdr extends IDElement implements ElementInterface {
         }
     }
 
-    public void unmarshal(Element metsHdr) {
-        super.unmarshal(metsHdr);
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
         DatatypeFactory dtf = MetsIO.getDataTypeFactory();
-        NamedNodeMap attrs = metsHdr.getAttributes();
-        for (int i = 0; i < attrs.getLength(); i++) {
-            Attr attr = (Attr) attrs.item(i);
-            String name = attr.getName();
-            String value = attr.getNodeValue();
-            if (name.equals("RECORDSTATUS"))
-                this.recordstatus = value;
-            if (name.equals("CREATEDATE"))
-                this.createdate = dtf.newXMLGregorianCalendar(value);
-            if (name.equals("LASTMODDATE"))
-                this.lastmoddate = dtf.newXMLGregorianCalendar(value);
-            if (name.equals("ADMID"))
-                this.admid = MetsReader.parseIDREFAttr(value);
+        if (this.recordstatus != null)
+            w.writeAttribute("RECORDSTATUS", this.recordstatus);
+        if (this.admid != null)
+            w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+
+        // as for the DOM, CREATEDATE defaults to now, and LASTMODDATE is always now
+        if (this.createdate != null)
+            w.writeAttribute("CREATEDATE", this.createdate.toXMLFormat());
+        else {
+            GregorianCalendar gc = new GregorianCalendar();
+            w.writeAttribute("CREATEDATE", dtf.newXMLGregorianCalendar(gc).toXMLFormat());
+        }
+        GregorianCalendar gc = new GregorianCalendar();
+        w.writeAttribute("LASTMODDATE", dtf.newXMLGregorianCalendar(gc).toXMLFormat());
+
+        if (this.agent != null) {
+            for (Agent a : this.agent) {
+                w.writeStartElement("mets", "agent", NS.METS.ns());
+                a.marshal(w);
+                w.writeEndElement();
+            }
+        }
+        if (this.altRecordID != null) {
+            for (RecordID a : this.altRecordID) {
+                w.writeStartElement("mets", "altRecordID", NS.METS.ns());
+                a.marshal(w);
+                w.writeEndElement();
+            }
         }
+        if (this.metsDocumentID != null) {
+            w.writeStartElement("mets", "metsDocumentID", NS.METS.ns());
+            this.metsDocumentID.marshal(w);
+            w.writeEndElement();
+        }
+    }
+
+    public void unmarshal(Element metsHdr) {
+        super.unmarshal(metsHdr);
 
         List<Element> children = DOMHelp.getChildElements(metsHdr);
         for (Element child : children) {
@@ -347,6 +373,40 @@ public class MetsHdr extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalAttribute(String name, String value) {
+        DatatypeFactory dtf = MetsIO.getDataTypeFactory();
+        if (name.equals("RECORDSTATUS"))
+            this.recordstatus = value;
+        else if (name.equals("CREATEDATE"))
+            this.createdate = dtf.newXMLGregorianCalendar(value);
+        else if (name.equals("LASTMODDATE"))
+            this.lastmoddate = dtf.newXMLGregorianCalendar(value);
+        else if (name.equals("ADMID"))
+            this.admid = MetsReader.parseIDREFAttr(value);
+        else
+            super.unmarshalAttribute(name, value);
+    }
+
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        String localName = r.getLocalName();
+        if (localName.equals("agent")) {
+            Agent agent = new Agent();
+            agent.unmarshal(r);
+            this.getAgent().add(agent);
+        } else if (localName.equals("altRecordID")) {
+            RecordID aid = new RecordID();
+            aid.unmarshal(r);
+            this.getAltRecordID().add(aid);
+        } else if (localName.equals("metsDocumentID")) {
+            this.metsDocumentID = new RecordID();
+            this.metsDocumentID.unmarshal(r);
+        } else {
+            super.unmarshalChild(r);
+        }
+    }
+
     /**
      * Representation of a <code>mets:agent</code>.
      * <p>
@@ -516,23 +576,34 @@ public class MetsHdr extends IDElement implements ElementInterface {
             }
         }
 
+        @Override
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            w.writeAttribute("ROLE", this.role.value()); // required
+            if (this.agenttype != null)
+                w.writeAttribute("AGENTTYPE", this.agenttype.value());
+            if (this.otherrole != null)
+                w.writeAttribute("OTHERROLE", this.otherrole);
+            if (this.othertype != null)
+                w.writeAttribute("OTHERTYPE", this.othertype);
+            // name is required
+            w.writeStartElement("mets", "name", NS.METS.ns());
+            if (this.name != null)
+                w.writeCharacters(this.name);
+            w.writeEndElement();
+            if (this.note != null) {
+                for (String n : this.note) {
+                    w.writeStartElement("mets", "note", NS.METS.ns());
+                    if (n != null)
+                        w.writeCharacters(n);
+                    w.writeEndElement();
+                }
+            }
+        }
+
         @Override
         public void unmarshal(Element e) {
             super.unmarshal(e);
-            NamedNodeMap attrs = e.getAttributes();
-            for (int i = 0; i < attrs.getLength(); i++) {
-                Attr attr = (Attr) attrs.item(i);
-                String name = attr.getName();
-                String value = attr.getNodeValue();
-                if (name.equals("ROLE"))
-                    this.role = ROLE.fromValue(value);
-                if (name.equals("AGENTTYPE"))
-                    this.agenttype = AGENTTYPE.fromValue(value);
-                if (name.equals("OTHERROLE"))
-                    this.otherrole = value;
-                if (name.equals("OTHERTYPE"))
-                    this.othertype = value;
-            }
 
             List<Element> children = DOMHelp.getChildElements(e);
             for (Element child : children) {
@@ -557,6 +628,31 @@ public class MetsHdr extends IDElement implements ElementInterface {
 
         }
 
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("ROLE"))
+                this.role = ROLE.fromValue(value);
+            else if (name.equals("AGENTTYPE"))
+                this.agenttype = AGENTTYPE.fromValue(value);
+            else if (name.equals("OTHERROLE"))
+                this.otherrole = value;
+            else if (name.equals("OTHERTYPE"))
+                this.othertype = value;
+            else
+                super.unmarshalAttribute(name, value);
+        }
+
+        @Override
+        protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+            String localName = r.getLocalName();
+            if (localName.equals("note"))
+                this.getNote().add(r.getElementText());
+            else if (localName.equals("name"))
+                this.name = r.getElementText();
+            else
+                super.unmarshalChild(r);
+        }
+
         /**
          * Enumeration of allowed values for <code>@AGENTTYPE</code>
          */
@@ -646,12 +742,32 @@ public class MetsHdr extends IDElement implements ElementInterface {
                 rid.setAttribute("TYPE", this.type);
         }
 
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            if (this.type != null)
+                w.writeAttribute("TYPE", this.type);
+            if (this.identifier != null)
+                w.writeCharacters(this.identifier);
+        }
+
         public void unmarshal(Element rid) {
             super.unmarshal(rid);
             if (rid.getTextContent() != null)
                 this.identifier = rid.getTextContent();
-            if (rid.hasAttribute("TYPE"))
-                this.type = rid.getAttribute("TYPE");
+        }
+
+        @Override
+        public void unmarshal(XMLStreamReader r) throws XMLStreamException {
+            unmarshalAttributes(r);
+            this.identifier = r.getElementText();
+        }
+
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("TYPE"))
+                this.type = value;
+            else
+                super.unmarshalAttribute(name, value);
         }
 
     }
@@ -21,43 +21,144 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.w3c.dom.Document;
+
 /**
  * Abstract Class for {@link MetsReader} and {@link MetsWriter}
+ * <p>
+ * Readers and writers are safe to share between threads. The JAXP objects they use (which are not)
+ * are confined to the thread that uses them: each thread lazily gets its own {@link DocumentBuilder}
+ * and {@link DatatypeFactory}, and keeps it for later calls.
  * 
  * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
  * @since Sep 2, 2010
  */
 public abstract class MetsIO {
-    protected static DocumentBuilderFactory dbfac;
-    protected static DocumentBuilder docBuilder;
-    protected static DatatypeFactory datatypeFactory;
+    private static final DocumentBuilderFactory dbfac;
+    static {
+        dbfac = DocumentBuilderFactory.newInstance();
+        dbfac.setNamespaceAware(true);
+    }
+    private static final ThreadLocal<DocumentBuilder> docBuilders = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<DatatypeFactory> datatypeFactories = new ThreadLocal<DatatypeFactory>();
+    private volatile boolean indexing;
+    private volatile MetsListener listener;
 
     public MetsIO() throws ParserConfigurationException, DatatypeConfigurationException {
-        dbfac = DocumentBuilderFactory.newInstance();
-        dbfac.setFeature("http://xml.org/sax/features/namespaces", true);
-        docBuilder = dbfac.newDocumentBuilder();
+        // fail early if the parser or the DatatypeFactory can't be configured
+        newDocBuilder();
+        if (datatypeFactories.get() == null)
+            datatypeFactories.set(DatatypeFactory.newInstance());
     }
 
     /**
-     * @return the dataTypeFactory
+     * @return the calling thread's DatatypeFactory
+     * @throws IllegalStateException
+     *             if no DatatypeFactory implementation is available
      */
     public static DatatypeFactory getDataTypeFactory() {
+        DatatypeFactory datatypeFactory = datatypeFactories.get();
         if (datatypeFactory == null) {
             try {
                 datatypeFactory = DatatypeFactory.newInstance();
             } catch (DatatypeConfigurationException e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace();
+                // not once a reader or writer has been made: its constructor already made one
+                throw new IllegalStateException(e);
             }
+            datatypeFactories.set(datatypeFactory);
         }
         return datatypeFactory;
     }
 
     /**
-     * @return the docBuilder
+     * @return a new, empty DOM Document, e.g. to hold <code>xmlData</code> read from a stream
      */
-    public DocumentBuilder getDocBuilder() {
+    protected static Document newDocument() {
+        return threadDocBuilder().newDocument();
+    }
+
+    /**
+     * @return the calling thread's DocumentBuilder, which must not be handed to other threads
+     */
+    protected static DocumentBuilder threadDocBuilder() {
+        DocumentBuilder docBuilder = docBuilders.get();
+        if (docBuilder == null) {
+            try {
+                docBuilder = newDocBuilder();
+            } catch (ParserConfigurationException e) {
+                // can't happen: the constructor already built one from the same factory
+                throw new IllegalStateException(e);
+            }
+            docBuilders.set(docBuilder);
+        }
         return docBuilder;
     }
 
+    private static DocumentBuilder newDocBuilder() throws ParserConfigurationException {
+        // factories aren't thread-safe
+        synchronized (dbfac) {
+            return dbfac.newDocumentBuilder();
+        }
+    }
+
+    /**
+     * @return the calling thread's docBuilder
+     */
+    public DocumentBuilder getDocBuilder() {
+        return threadDocBuilder();
+    }
+
+    /**
+     * @return whether readers build a {@link MetsIndex} of each document they read
+     */
+    public boolean isIndexing() {
+        return indexing;
+    }
+
+    /**
+     * @param indexing
+     *            true for readers to build a {@link MetsIndex} of each document as part of reading
+     *            it, so that it is ready from {@link Mets#getIndex()}. Has no effect on writers.
+     */
+    public void setIndexing(boolean indexing) {
+        this.indexing = indexing;
+    }
+
+    /**
+     * Builds <code>mets</code>'s index if {@link #isIndexing()}.
+     * 
+     * @param mets
+     * @return mets
+     */
+    protected Mets index(Mets mets) {
+        if (this.indexing)
+            mets.index = new MetsIndex(mets);
+        return mets;
+    }
+
+    /**
+     * @return what documents read or written are reported to, or null
+     */
+    public MetsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @param listener
+     *            what to report each document read or written to, e.g. a {@link MetsMetrics}; null
+     *            (the default) for nothing to be measured
+     */
+    public void setListener(MetsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param operation
+     * @return a probe to measure a document with, or null if there is no listener, and no flight
+     *         recording (see {@link MetsEvents}) wants one
+     */
+    MetsProbe probe(MetsListener.Operation operation) {
+        return MetsEvents.INSTANCE.probe(this, this.listener, operation);
+    }
+
 }
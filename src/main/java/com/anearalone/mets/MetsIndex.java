@@ -0,0 +1,458 @@
+/**
+ * MetsIndex.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.anearalone.mets.BehaviorSec.Behavior;
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FileSec.FileGrp.File.Stream;
+import com.anearalone.mets.MetsHdr.Agent;
+import com.anearalone.mets.MetsHdr.RecordID;
+import com.anearalone.mets.StructLink.StructLinkChild;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.mets.StructMap.Div.Fptr.Area;
+import com.anearalone.mets.StructMap.Div.Fptr.FptrChild;
+import com.anearalone.mets.StructMap.Div.Fptr.Par;
+import com.anearalone.mets.StructMap.Div.Fptr.Seq;
+
+/**
+ * Maps <code>@ID</code>s to the elements of a {@link Mets} that carry them, so that IDREFs (e.g.
+ * {@link Fptr#getFILEID()} or {@link Div#getDMDID()}) can be resolved in constant time rather than
+ * by walking the document.
+ * <p>
+ * It also works in reverse: for each ID, it records every {@link Reference} to it, e.g. which
+ * <code>fptr</code>s and <code>area</code>s point to a <code>file</code>, or which
+ * <code>div</code>s, <code>file</code>s and <code>stream</code>s have a <code>techMD</code> in
+ * their <code>@ADMID</code>. References are recorded whether or not their targets exist.
+ * <p>
+ * The index is a snapshot: it is built in a single walk of the object tree and is not updated as
+ * the tree is changed via its getters and setters. Call {@link #rebuild()} after changing the
+ * tree. If an ID occurs more than once (which makes the document invalid), the first occurrence in
+ * document order is indexed.
+ * <p>
+ * Readers build the index as part of reading a document when
+ * {@link MetsIO#setIndexing(boolean)} is set; otherwise it is built on the first call to
+ * {@link Mets#getIndex()}. Like the rest of the model, an index is not safe to rebuild while other
+ * threads are using it.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsIndex {
+    private final Mets mets;
+    private Map<String, IDElement> elements;
+    private Map<String, List<Reference>> references;
+    // the div and file being walked, if any
+    private Div currentDiv;
+    private File currentFile;
+
+    /**
+     * Builds an index of <code>mets</code>.
+     *
+     * @param mets
+     */
+    public MetsIndex(Mets mets) {
+        this.mets = mets;
+        rebuild();
+    }
+
+    /**
+     * Re-reads the whole {@link Mets}, e.g. after elements have been added, removed, or had their
+     * IDs changed.
+     */
+    public void rebuild() {
+        this.elements = new HashMap<String, IDElement>();
+        this.references = new HashMap<String, List<Reference>>();
+        indexMets();
+        this.currentDiv = null;
+        this.currentFile = null;
+    }
+
+    /**
+     * @param id
+     * @return the element with <code>@ID</code> <code>id</code>, or null
+     */
+    public IDElement get(String id) {
+        return elements.get(id);
+    }
+
+    /**
+     * @param id
+     * @param type
+     * @return the element with <code>@ID</code> <code>id</code>, or null if there is none or it is
+     *         not a <code>type</code>
+     */
+    public <T extends IDElement> T get(String id, Class<T> type) {
+        IDElement e = elements.get(id);
+        return type.isInstance(e) ? type.cast(e) : null;
+    }
+
+    /**
+     * @param id
+     * @return the <code>file</code> with <code>@ID</code> <code>id</code>, or null
+     */
+    public File getFile(String id) {
+        return get(id, File.class);
+    }
+
+    /**
+     * @param id
+     * @return the <code>dmdSec</code>, <code>techMD</code>, <code>rightsMD</code>,
+     *         <code>sourceMD</code> or <code>digiprovMD</code> with <code>@ID</code>
+     *         <code>id</code>, or null
+     */
+    public MdSec getMdSec(String id) {
+        return get(id, MdSec.class);
+    }
+
+    /**
+     * @param id
+     * @return the <code>div</code> with <code>@ID</code> <code>id</code>, or null
+     */
+    public Div getDiv(String id) {
+        return get(id, Div.class);
+    }
+
+    /**
+     * @param id
+     * @return the <code>amdSec</code> with <code>@ID</code> <code>id</code>, or null
+     */
+    public AmdSec getAmdSec(String id) {
+        return get(id, AmdSec.class);
+    }
+
+    public boolean contains(String id) {
+        return elements.containsKey(id);
+    }
+
+    /**
+     * @return the indexed IDs, as an unmodifiable view
+     */
+    public Set<String> getIDs() {
+        return Collections.unmodifiableSet(elements.keySet());
+    }
+
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * @param id
+     * @return every reference to <code>id</code>, in document order; empty if there are none
+     */
+    public List<Reference> getReferences(String id) {
+        List<Reference> refs = references.get(id);
+        if (refs == null)
+            return Collections.emptyList();
+        return Collections.unmodifiableList(refs);
+    }
+
+    /**
+     * E.g. the <code>div</code>s that manifest a given <code>file</code> (via their
+     * <code>fptr</code>s and <code>area</code>s), or that have a given <code>dmdSec</code>.
+     * 
+     * @param id
+     * @return the <code>div</code>s that refer to <code>id</code>, themselves or through one of
+     *         their <code>fptr</code>s, without duplicates, in document order
+     */
+    public Set<Div> getReferencingDivs(String id) {
+        Set<Div> divs = new LinkedHashSet<Div>();
+        for (Reference ref : getReferences(id))
+            if (ref.getDiv() != null)
+                divs.add(ref.getDiv());
+        return divs;
+    }
+
+    /**
+     * E.g. the <code>file</code>s that use a given <code>techMD</code>.
+     * 
+     * @param id
+     * @return the <code>file</code>s that refer to <code>id</code>, themselves or through one of
+     *         their <code>stream</code>s, without duplicates, in document order
+     */
+    public Set<File> getReferencingFiles(String id) {
+        Set<File> files = new LinkedHashSet<File>();
+        for (Reference ref : getReferences(id))
+            if (ref.getFile() != null)
+                files.add(ref.getFile());
+        return files;
+    }
+
+    /**
+     * @return the IDs that are referred to, whether or not they exist, as an unmodifiable view
+     */
+    public Set<String> getReferencedIDs() {
+        return Collections.unmodifiableSet(references.keySet());
+    }
+
+    /**
+     * @return the indexed {@link Mets}
+     */
+    public Mets getMets() {
+        return mets;
+    }
+
+    /*
+     * The walk reads fields directly so that the getters don't create empty lists along the way.
+     */
+
+    private void add(IDElement e) {
+        if (e != null && e.id != null && !elements.containsKey(e.id))
+            elements.put(e.id, e);
+    }
+
+    private void ref(IDElement source, String attribute, String target) {
+        if (target == null)
+            return;
+        List<Reference> refs = references.get(target);
+        if (refs == null) {
+            refs = new ArrayList<Reference>(2);
+            references.put(target, refs);
+        }
+        refs.add(new Reference(source, attribute, target, currentDiv, currentFile));
+    }
+
+    private void ref(IDElement source, String attribute, List<String> targets) {
+        if (targets != null)
+            for (String target : targets)
+                ref(source, attribute, target);
+    }
+
+    private void indexMets() {
+        add(mets);
+        MetsHdr hdr = mets.metsHdr;
+        if (hdr != null) {
+            add(hdr);
+            ref(hdr, "ADMID", hdr.admid);
+            if (hdr.agent != null)
+                for (Agent a : hdr.agent)
+                    add(a);
+            if (hdr.altRecordID != null)
+                for (RecordID rid : hdr.altRecordID)
+                    add(rid);
+            add(hdr.metsDocumentID);
+        }
+        indexMdSecs(mets.dmdSec);
+        if (mets.amdSec != null) {
+            for (AmdSec amd : mets.amdSec) {
+                add(amd);
+                indexMdSecs(amd.techMD);
+                indexMdSecs(amd.rightsMD);
+                indexMdSecs(amd.sourceMD);
+                indexMdSecs(amd.digiprovMD);
+            }
+        }
+        if (mets.fileSec != null) {
+            add(mets.fileSec);
+            indexFileGrps(mets.fileSec.fileGrp);
+        }
+        if (mets.structMap != null) {
+            for (StructMap smap : mets.structMap) {
+                add(smap);
+                if (smap.div != null)
+                    indexDiv(smap.div);
+            }
+        }
+        if (mets.structLink != null) {
+            add(mets.structLink);
+            if (mets.structLink.smLinkOrSmLinkGrp != null)
+                for (StructLinkChild slc : mets.structLink.smLinkOrSmLinkGrp)
+                    add(slc);
+        }
+        indexBehaviorSecs(mets.behaviorSec);
+    }
+
+    private void indexMdSecs(List<MdSec> mdSecs) {
+        if (mdSecs == null)
+            return;
+        for (MdSec md : mdSecs) {
+            add(md);
+            ref(md, "ADMID", md.admid);
+            add(md.mdRef);
+            add(md.mdWrap);
+        }
+    }
+
+    private void indexFileGrps(List<FileGrp> fileGrps) {
+        if (fileGrps == null)
+            return;
+        for (FileGrp fg : fileGrps) {
+            add(fg);
+            indexFileGrps(fg.fileGrp);
+            indexFiles(fg.file);
+        }
+    }
+
+    private void indexFiles(List<File> files) {
+        if (files == null)
+            return;
+        for (File f : files) {
+            File parent = currentFile;
+            currentFile = f;
+            add(f);
+            ref(f, "ADMID", f.admid);
+            ref(f, "DMDID", f.dmdid);
+            if (f.fLocat != null)
+                for (IDElement e : f.fLocat)
+                    add(e);
+            add(f.fContent);
+            if (f.stream != null) {
+                for (Stream st : f.stream) {
+                    add(st);
+                    ref(st, "ADMID", st.admid);
+                    ref(st, "DMDID", st.dmdid);
+                }
+            }
+            if (f.transformFile != null)
+                for (IDElement e : f.transformFile)
+                    add(e);
+            indexFiles(f.file);
+            currentFile = parent;
+        }
+    }
+
+    private void indexDiv(Div div) {
+        Div parent = currentDiv;
+        currentDiv = div;
+        add(div);
+        ref(div, "DMDID", div.dmdid);
+        ref(div, "ADMID", div.admid);
+        if (div.mptr != null)
+            for (IDElement e : div.mptr)
+                add(e);
+        if (div.fptr != null) {
+            for (Fptr fptr : div.fptr) {
+                add(fptr);
+                ref(fptr, "FILEID", fptr.fileid);
+                indexFptrChild(fptr.par);
+                indexFptrChild(fptr.seq);
+                indexFptrChild(fptr.area);
+            }
+        }
+        if (div.div != null)
+            for (Div d : div.div)
+                indexDiv(d);
+        currentDiv = parent;
+    }
+
+    private void indexFptrChild(FptrChild child) {
+        if (child == null)
+            return;
+        add(child);
+        List<FptrChild> children = null;
+        if (child instanceof Area) {
+            Area area = (Area) child;
+            ref(area, "FILEID", area.fileid);
+            ref(area, "ADMID", area.admid);
+        } else if (child instanceof Par)
+            children = ((Par) child).areaOrSeq;
+        else if (child instanceof Seq)
+            children = ((Seq) child).areaOrPar;
+        if (children != null)
+            for (FptrChild c : children)
+                indexFptrChild(c);
+    }
+
+    private void indexBehaviorSecs(List<BehaviorSec> behaviorSecs) {
+        if (behaviorSecs == null)
+            return;
+        for (BehaviorSec bs : behaviorSecs) {
+            add(bs);
+            indexBehaviorSecs(bs.behaviorSec);
+            if (bs.behavior != null) {
+                for (Behavior b : bs.behavior) {
+                    add(b);
+                    ref(b, "STRUCTID", b.structid);
+                    ref(b, "ADMID", b.admid);
+                    add(b.interfaceDef);
+                    add(b.mechanism);
+                }
+            }
+        }
+    }
+
+    /**
+     * One IDREF: the element and attribute it occurs in, and the ID it refers to. For elements in
+     * the <code>structMap</code> or <code>fileSec</code>, the enclosing <code>div</code> or
+     * <code>file</code> is recorded too.
+     */
+    public static class Reference {
+        private final IDElement element;
+        private final String attribute;
+        private final String target;
+        private final Div div;
+        private final File file;
+
+        Reference(IDElement element, String attribute, String target, Div div, File file) {
+            this.element = element;
+            this.attribute = attribute;
+            this.target = target;
+            this.div = div;
+            this.file = file;
+        }
+
+        /**
+         * @return the element whose attribute holds the reference, e.g. an {@link Fptr}
+         */
+        public IDElement getElement() {
+            return element;
+        }
+
+        /**
+         * @return the name of the attribute holding the reference, e.g. <code>"FILEID"</code>
+         */
+        public String getAttribute() {
+            return attribute;
+        }
+
+        /**
+         * @return the referenced ID
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        /**
+         * @return the element if it is a <code>div</code>, else the <code>div</code> it is in (if
+         *         any)
+         */
+        public Div getDiv() {
+            return div;
+        }
+
+        /**
+         * @return the element if it is a <code>file</code>, else the <code>file</code> it is in
+         *         (if any)
+         */
+        public File getFile() {
+            return file;
+        }
+
+        @Override
+        public String toString() {
+            return element.getClass().getSimpleName() + "/@" + attribute + "=" + target;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * MetsListener.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import com.anearalone.mets.Mets.Section;
+
+/**
+ * Receives measurements from {@link MetsReader}, {@link MetsStreamReader}, {@link MetsWriter} and
+ * {@link MetsStreamWriter}, for monitoring where the time goes. Set one with
+ * {@link MetsIO#setListener(MetsListener)}; without one, nothing is measured.
+ * <p>
+ * For each document read or written, {@link #onSection(Operation, Section, long, long)} is called
+ * for each kind of section the document has, and then
+ * {@link #onDocument(Operation, long, long, long)}, or instead {@link #onFailure(Operation, long,
+ * Exception)} if it couldn't be read or written. Calls are made on the thread doing the reading or
+ * writing, after it is done, so listeners should be quick, and must be thread-safe if the reader or
+ * writer is shared.
+ * <p>
+ * Section times only cover unmarshalling (or marshalling) the section. {@link MetsReader} parses
+ * the whole document into a DOM first, and {@link MetsWriter} serializes the whole DOM last, so
+ * for those most of the time is the document's own. <code>xmlData</code> written verbatim by
+ * {@link MetsStreamWriter#setVerbatimXmlData(boolean)} is copied rather than written element by
+ * element, so its elements aren't counted.
+ * {@link MetsStreamReader#parse(java.io.InputStream, MetsHandler)} isn't measured, as most of its
+ * time is the handler's.
+ *
+ * @see MetsMetrics
+ * @see MetsEvents
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public interface MetsListener {
+
+    /**
+     * Whether a document was read or written.
+     */
+    public enum Operation {
+        READ, WRITE
+    }
+
+    /**
+     * @param operation
+     * @param section
+     * @param nanos
+     *            the time taken by every section of this kind in the document, e.g. all of the
+     *            <code>dmdSec</code>s
+     * @param elements
+     *            the number of elements in them, including the sections' own
+     */
+    public void onSection(Operation operation, Section section, long nanos, long elements);
+
+    /**
+     * @param operation
+     * @param nanos
+     *            the time taken by the whole document
+     * @param bytes
+     *            the size of the XML
+     * @param elements
+     *            the number of elements in the document
+     */
+    public void onDocument(Operation operation, long nanos, long bytes, long elements);
+
+    /**
+     * @param operation
+     * @param nanos
+     *            the time taken until it failed
+     * @param e
+     *            what was thrown
+     */
+    public void onFailure(Operation operation, long nanos, Exception e);
+}
@@ -0,0 +1,442 @@
+/**
+ * MetsMetrics.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.anearalone.mets.Mets.Section;
+
+/**
+ * A {@link MetsListener} that keeps counts, rates and latency histograms of the documents read and
+ * written, and publishes them over JMX as a {@link MetsMetricsMXBean}, under
+ * <code>com.anearalone.mets:type=MetsMetrics,name=</code><i>name</i>. For example:
+ *
+ * <pre>
+ * MetsMetrics metrics = new MetsMetrics(&quot;ingest&quot;);
+ * metrics.register();
+ * reader.setListener(metrics);
+ * writer.setListener(metrics);
+ * </pre>
+ *
+ * Recording is lock-free, other than a brief lock per document for the rate, so one instance can
+ * be shared by every reader and writer in an application. Latencies are kept in histograms with
+ * eight buckets per power of two, so percentiles are within about 6% of the true value, in
+ * constant memory.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsMetrics implements MetsListener, MetsMetricsMXBean {
+    private static final String DOCUMENT = "document";
+    private final ObjectName objectName;
+    private volatile Stats read = new Stats();
+    private volatile Stats write = new Stats();
+
+    /**
+     * @param name
+     *            the <code>name</code> key of the ObjectName, to tell instances apart
+     * @throws IllegalArgumentException
+     *             if name can't be used in an ObjectName
+     */
+    public MetsMetrics(String name) {
+        try {
+            this.objectName = new ObjectName("com.anearalone.mets:type=MetsMetrics,name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("bad name: " + name, e);
+        }
+    }
+
+    /**
+     * Registers this with the platform MBeanServer.
+     *
+     * @throws JMException
+     *             if it can't be registered, e.g. if one of the same name already is
+     */
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+    }
+
+    /**
+     * Unregisters this from the platform MBeanServer.
+     *
+     * @throws JMException
+     *             if it isn't registered
+     */
+    public void unregister() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+    }
+
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void onSection(Operation operation, Section section, long nanos, long elements) {
+        Stats stats = stats(operation);
+        stats.sections[section.ordinal()].record(nanos);
+        stats.sectionElements.addAndGet(section.ordinal(), elements);
+    }
+
+    @Override
+    public void onDocument(Operation operation, long nanos, long bytes, long elements) {
+        Stats stats = stats(operation);
+        stats.document.record(nanos);
+        stats.bytes.addAndGet(bytes);
+        stats.elements.addAndGet(elements);
+        stats.rate.record();
+    }
+
+    @Override
+    public void onFailure(Operation operation, long nanos, Exception e) {
+        ConcurrentMap<String, AtomicLong> failures = stats(operation).failures;
+        String type = e.getClass().getName();
+        AtomicLong count = failures.get(type);
+        if (count == null) {
+            AtomicLong first = failures.putIfAbsent(type, count = new AtomicLong());
+            if (first != null)
+                count = first;
+        }
+        count.incrementAndGet();
+    }
+
+    private Stats stats(Operation operation) {
+        return operation == Operation.READ ? this.read : this.write;
+    }
+
+    @Override
+    public long getDocumentsRead() {
+        return read.document.getCount();
+    }
+
+    @Override
+    public long getDocumentsWritten() {
+        return write.document.getCount();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return read.bytes.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return write.bytes.get();
+    }
+
+    @Override
+    public long getElementsRead() {
+        return read.elements.get();
+    }
+
+    @Override
+    public long getElementsWritten() {
+        return write.elements.get();
+    }
+
+    @Override
+    public double getReadsPerSecond() {
+        return read.rate.perSecond();
+    }
+
+    @Override
+    public double getWritesPerSecond() {
+        return write.rate.perSecond();
+    }
+
+    @Override
+    public Map<String, Latency> getReadLatency() {
+        return read.latency();
+    }
+
+    @Override
+    public Map<String, Latency> getWriteLatency() {
+        return write.latency();
+    }
+
+    @Override
+    public Map<String, Long> getElementsReadBySection() {
+        return read.sectionElements();
+    }
+
+    @Override
+    public Map<String, Long> getElementsWrittenBySection() {
+        return write.sectionElements();
+    }
+
+    @Override
+    public Map<String, Long> getReadFailures() {
+        return read.failures();
+    }
+
+    @Override
+    public Map<String, Long> getWriteFailures() {
+        return write.failures();
+    }
+
+    @Override
+    public void reset() {
+        this.read = new Stats();
+        this.write = new Stats();
+    }
+
+    @Override
+    public String toString() {
+        return objectName + ": " + getDocumentsRead() + " read (" + getBytesRead() + " bytes), "
+                + getDocumentsWritten() + " written (" + getBytesWritten() + " bytes)";
+    }
+
+    /*
+     * Everything about one operation
+     */
+    private static final class Stats {
+        private final Histogram document = new Histogram();
+        private final Histogram[] sections = new Histogram[Section.values().length];
+        private final AtomicLongArray sectionElements = new AtomicLongArray(Section.values().length);
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong elements = new AtomicLong();
+        private final ConcurrentMap<String, AtomicLong> failures = new ConcurrentHashMap<String, AtomicLong>();
+        private final Rate rate = new Rate();
+
+        Stats() {
+            for (int i = 0; i < sections.length; i++)
+                sections[i] = new Histogram();
+        }
+
+        Map<String, Latency> latency() {
+            Map<String, Latency> latency = new TreeMap<String, Latency>();
+            latency.put(DOCUMENT, document.snapshot());
+            for (Section section : Section.values()) {
+                Histogram h = sections[section.ordinal()];
+                if (h.getCount() > 0)
+                    latency.put(section.localName(), h.snapshot());
+            }
+            return latency;
+        }
+
+        Map<String, Long> sectionElements() {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Section section : Section.values()) {
+                if (sections[section.ordinal()].getCount() > 0)
+                    counts.put(section.localName(), sectionElements.get(section.ordinal()));
+            }
+            return counts;
+        }
+
+        Map<String, Long> failures() {
+            Map<String, Long> counts = new TreeMap<String, Long>();
+            for (Map.Entry<String, AtomicLong> e : failures.entrySet())
+                counts.put(e.getKey(), e.getValue().get());
+            return counts;
+        }
+    }
+
+    /*
+     * Nanosecond values in buckets: exact below 8, then eight to each power of two
+     */
+    static final class Histogram {
+        private static final int SUB_BUCKETS = 8;
+        private final AtomicLongArray buckets = new AtomicLongArray(SUB_BUCKETS * 61);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(index(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long m;
+            while (value < (m = min.get()) && !min.compareAndSet(m, value))
+                ;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value))
+                ;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        static int index(long value) {
+            if (value < SUB_BUCKETS)
+                return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+            return (exponent - 2) * SUB_BUCKETS + sub;
+        }
+
+        static long lowerBound(int index) {
+            if (index < SUB_BUCKETS)
+                return index;
+            int exponent = index / SUB_BUCKETS + 2;
+            return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - 3);
+        }
+
+        /*
+         * The middle of the bucket the quantile falls in, within what has been seen
+         */
+        private long quantile(long[] counts, long total, double q, long min, long max) {
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && counts[i] > 0) {
+                    long low = lowerBound(i);
+                    long high = i + 1 < counts.length ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                    long mid = low + (high - low) / 2;
+                    return Math.max(min, Math.min(max, mid));
+                }
+            }
+            return max;
+        }
+
+        Latency snapshot() {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++)
+                total += counts[i] = buckets.get(i);
+            if (total == 0)
+                return new Latency(0, 0, 0, 0, 0, 0, 0, 0);
+            long min = this.min.get();
+            long max = this.max.get();
+            return new Latency(total, micros(sum.get()) / count.get(), micros(min), micros(max), micros(quantile(
+                    counts, total, 0.5, min, max)), micros(quantile(counts, total, 0.9, min, max)), micros(quantile(
+                    counts, total, 0.99, min, max)), micros(quantile(counts, total, 0.999, min, max)));
+        }
+
+        private static double micros(long nanos) {
+            return nanos / 1000.0;
+        }
+    }
+
+    /*
+     * Events over the last minute, in one-second buckets
+     */
+    private static final class Rate {
+        private static final int SECONDS = 60;
+        private final long[] counts = new long[SECONDS];
+        private final long[] seconds = new long[SECONDS];
+        private final long origin = System.nanoTime();
+
+        Rate() {
+            Arrays.fill(seconds, -SECONDS);
+        }
+
+        synchronized void record() {
+            long now = second();
+            int i = (int) (now % SECONDS);
+            if (seconds[i] != now) {
+                seconds[i] = now;
+                counts[i] = 0;
+            }
+            counts[i]++;
+        }
+
+        synchronized double perSecond() {
+            long now = second();
+            long total = 0;
+            for (int i = 0; i < SECONDS; i++) {
+                if (now - seconds[i] < SECONDS)
+                    total += counts[i];
+            }
+            // not a full minute yet
+            long window = Math.min(SECONDS, now + 1);
+            return (double) total / window;
+        }
+
+        // since this was made, as nanoTime may be negative
+        private long second() {
+            return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - origin);
+        }
+    }
+
+    /**
+     * A summary of a histogram of times, in microseconds.
+     */
+    public static class Latency {
+        private final long count;
+        private final double mean;
+        private final double min;
+        private final double max;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+        private final double p999;
+
+        @ConstructorProperties({ "count", "mean", "min", "max", "p50", "p90", "p99", "p999" })
+        public Latency(long count, double mean, double min, double max, double p50, double p90, double p99,
+                double p999) {
+            this.count = count;
+            this.mean = mean;
+            this.min = min;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+            this.p999 = p999;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getP50() {
+            return p50;
+        }
+
+        public double getP90() {
+            return p90;
+        }
+
+        public double getP99() {
+            return p99;
+        }
+
+        public double getP999() {
+            return p999;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d, mean %.1fus, p50 %.1fus, p90 %.1fus, p99 %.1fus, p99.9 %.1fus, max %.1fus",
+                    count, mean, p50, p90, p99, p999, max);
+        }
+    }
+}
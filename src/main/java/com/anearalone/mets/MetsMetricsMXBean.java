@@ -0,0 +1,70 @@
+/**
+ * MetsMetricsMXBean.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.util.Map;
+
+import com.anearalone.mets.MetsMetrics.Latency;
+
+/**
+ * The management interface of {@link MetsMetrics}. Times are in microseconds; maps are keyed by
+ * section (<code>metsHdr</code>, <code>dmdSec</code> etc., and <code>document</code> for whole
+ * documents), or by exception class.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public interface MetsMetricsMXBean {
+
+    public long getDocumentsRead();
+
+    public long getDocumentsWritten();
+
+    public long getBytesRead();
+
+    public long getBytesWritten();
+
+    public long getElementsRead();
+
+    public long getElementsWritten();
+
+    /**
+     * @return documents read per second, over the last minute
+     */
+    public double getReadsPerSecond();
+
+    /**
+     * @return documents written per second, over the last minute
+     */
+    public double getWritesPerSecond();
+
+    public Map<String, Latency> getReadLatency();
+
+    public Map<String, Latency> getWriteLatency();
+
+    public Map<String, Long> getElementsReadBySection();
+
+    public Map<String, Long> getElementsWrittenBySection();
+
+    public Map<String, Long> getReadFailures();
+
+    public Map<String, Long> getWriteFailures();
+
+    /**
+     * Starts counting again from zero.
+     */
+    public void reset();
+}
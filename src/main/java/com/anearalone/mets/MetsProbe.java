@@ -0,0 +1,297 @@
+/**
+ * MetsProbe.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.w3c.dom.Element;
+
+import com.anearalone.mets.Mets.Section;
+import com.anearalone.mets.MetsListener.Operation;
+import com.anearalone.utils.FormattingXMLStreamWriter;
+
+/**
+ * Measures one document being read or written, for a {@link MetsListener}: adds up the time and
+ * elements of each kind of section, and reports them when the document is done. Only made when
+ * there is a listener, or a flight recording that wants the events (see {@link MetsEvents}, whose
+ * probes extend this); everywhere else a null probe means nothing is measured.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+class MetsProbe {
+    private final MetsListener listener;
+    final Operation operation;
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[Section.values().length];
+    private final long[] elements = new long[Section.values().length];
+    private final boolean[] seen = new boolean[Section.values().length];
+    private CountingReader reader;
+    private FormattingXMLStreamWriter writer;
+    private long domElements;
+    private long mark;
+    private Mets mets;
+
+    /**
+     * @param listener
+     *            null if only the subclass wants to know
+     * @param operation
+     */
+    MetsProbe(MetsListener listener, Operation operation) {
+        this.listener = listener;
+        this.operation = operation;
+    }
+
+    /**
+     * @param mets
+     *            the document being read or written
+     */
+    void document(Mets mets) {
+        this.mets = mets;
+    }
+
+    /**
+     * @return the OBJID of the document, if it has been read
+     */
+    String objid() {
+        return this.mets == null ? null : this.mets.getOBJID();
+    }
+
+    /**
+     * Counts the elements <code>r</code> reads from here on.
+     *
+     * @param r
+     * @return the reader to read from instead
+     */
+    XMLStreamReader count(XMLStreamReader r) {
+        this.reader = new CountingReader(r);
+        return this.reader;
+    }
+
+    /**
+     * Counts the elements written to <code>w</code>.
+     *
+     * @param w
+     */
+    void count(FormattingXMLStreamWriter w) {
+        this.writer = w;
+    }
+
+    /**
+     * @return the time a section started
+     */
+    long start() {
+        this.mark = elementCount();
+        return System.nanoTime();
+    }
+
+    /**
+     * A section, which was read or written with a counted reader or writer, is done.
+     *
+     * @param section
+     * @param start
+     *            what {@link #start()} returned
+     */
+    void end(Section section, long start) {
+        add(section, System.nanoTime() - start, elementCount() - this.mark);
+    }
+
+    /**
+     * A section, which was unmarshalled from or marshalled to <code>e</code>, is done.
+     *
+     * @param section
+     * @param start
+     *            what {@link #start()} returned
+     * @param e
+     */
+    void end(Section section, long start, Element e) {
+        long nanos = System.nanoTime() - start;
+        long count = 1 + e.getElementsByTagName("*").getLength();
+        this.domElements += count;
+        add(section, nanos, count);
+    }
+
+    void add(Section section, long nanos, long count) {
+        int i = section.ordinal();
+        this.nanos[i] += nanos;
+        this.elements[i] += count;
+        this.seen[i] = true;
+    }
+
+    /**
+     * The DOM is about to be transformed to XML.
+     */
+    void beginTransform() {
+    }
+
+    /**
+     * The DOM has been transformed.
+     */
+    void endTransform() {
+    }
+
+    private long elementCount() {
+        if (this.reader != null)
+            return this.reader.count;
+        if (this.writer != null)
+            return this.writer.getElementCount();
+        return this.domElements;
+    }
+
+    /**
+     * The document is done: reports it, and its sections.
+     *
+     * @param bytes
+     *            the size of the XML
+     */
+    void done(long bytes) {
+        if (this.listener == null)
+            return;
+        long nanos = System.nanoTime() - this.start;
+        Section[] sections = Section.values();
+        for (int i = 0; i < sections.length; i++) {
+            if (this.seen[i])
+                this.listener.onSection(this.operation, sections[i], this.nanos[i], this.elements[i]);
+        }
+        this.listener.onDocument(this.operation, nanos, bytes, elements());
+    }
+
+    /**
+     * The document couldn't be read or written.
+     *
+     * @param e
+     */
+    void failed(Exception e) {
+        if (this.listener != null)
+            this.listener.onFailure(this.operation, System.nanoTime() - this.start, e);
+    }
+
+    /**
+     * @return the elements read or written so far
+     */
+    long elements() {
+        // plus the root element, for the DOM
+        return this.reader != null || this.writer != null ? elementCount() : this.domElements + 1;
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0)
+                this.count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0)
+                this.count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            // a reset would count bytes twice
+            return false;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it.
+     */
+    static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // FilterOutputStream would write them a byte at a time
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+
+        long getCount() {
+            return this.count;
+        }
+    }
+
+    /*
+     * Counts start tags as they're read
+     */
+    private static final class CountingReader extends StreamReaderDelegate {
+        private long count;
+
+        CountingReader(XMLStreamReader r) {
+            super(r);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                this.count++;
+            return event;
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+            int event = super.nextTag();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                this.count++;
+            return event;
+        }
+    }
+}
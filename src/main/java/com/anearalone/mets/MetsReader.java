@@ -27,8 +27,12 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.anearalone.mets.MetsListener.Operation;
+import com.anearalone.mets.MetsProbe.CountingInputStream;
+
 /**
- * Creates METS objects from InputStreams. A given instance can, and should, be reused.
+ * Creates METS objects from InputStreams. A given instance can, and should, be reused, and may be
+ * shared between threads.
  * 
  * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
  * @since Aug 23, 2010
@@ -51,10 +55,27 @@ public class MetsReader extends MetsIO {
      *             and its related methods.
      */
     public Mets read(InputStream in) throws SAXException, ParseException, IOException {
-        Mets mets = new Mets();
-        Document doc = docBuilder.parse(in);
-        mets.unmarshal(doc.getDocumentElement());
-        return mets;
+        MetsProbe probe = probe(Operation.READ);
+        if (probe == null) {
+            Mets mets = new Mets();
+            Document doc = threadDocBuilder().parse(in);
+            mets.unmarshal(doc.getDocumentElement());
+            return index(mets);
+        }
+        try {
+            CountingInputStream counted = new CountingInputStream(in);
+            Mets mets = new Mets();
+            probe.document(mets);
+            // the sections are timed from here, the document from the start of the parse
+            Document doc = threadDocBuilder().parse(counted);
+            mets.unmarshal(doc.getDocumentElement(), probe);
+            index(mets);
+            probe.done(counted.getCount());
+            return mets;
+        } catch (Exception e) {
+            probe.failed(e);
+            throw e;
+        }
     }
 
     public static List<String> parseIDREFAttr(String value) {
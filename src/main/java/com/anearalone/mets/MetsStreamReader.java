@@ -0,0 +1,457 @@
+/**
+ * MetsStreamReader.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.Set;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.Mets.Section;
+import com.anearalone.mets.MetsListener.Operation;
+import com.anearalone.mets.MetsProbe.CountingInputStream;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.mets.StructMap.Div.Mptr;
+import com.anearalone.utils.ByteBufferInputStream;
+import com.anearalone.utils.StAXHelp;
+
+/**
+ * Creates METS objects from InputStreams using a StAX pull parser. Unlike {@link MetsReader}, no
+ * DOM of the whole document is ever built: each class populates itself directly from parser events
+ * via {@link ElementInterface#unmarshal(XMLStreamReader)}, so peak memory is roughly the size of the
+ * resulting {@link Mets} object. The contents of <code>xmlData</code> are kept as {@link XmlData}
+ * (bytes), and only become DOM {@link org.w3c.dom.Element}s if
+ * {@link MdSec.MdWrap#getXmlData()} is called. <code>binData</code> is decoded as it is read, into
+ * a temporary file (see {@link BinData}). <code>behaviorSec</code>s aren't supported, and are
+ * skipped.
+ * <p>
+ * For documents too large to hold in memory, {@link #parse(InputStream, MetsHandler)} reports the
+ * document to a {@link MetsHandler} instead of building a {@link Mets}.
+ * <p>
+ * A given instance can, and should, be reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsStreamReader extends MetsIO {
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    protected XMLInputFactory xmlInputFactory;
+    private volatile Path binDataDirectory;
+
+    public MetsStreamReader() throws ParserConfigurationException, DatatypeConfigurationException {
+        super();
+        xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        // keep CDATA sections in xmlData, as the DOM does
+        if (xmlInputFactory.isPropertySupported(REPORT_CDATA))
+            xmlInputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+    }
+
+    /**
+     * @param in
+     * @return
+     * @throws XMLStreamException
+     *             When the InputStream cannot be parsed as XML
+     */
+    public Mets read(InputStream in) throws XMLStreamException {
+        return read(in, null, null);
+    }
+
+    /**
+     * Like {@link #read(InputStream)}, but reads <code>file</code> through a memory map, and
+     * doesn't copy any <code>xmlData</code>: each is kept as the range of the map between its tags,
+     * and only parsed if {@link MdSec.MdWrap#getXmlData()} (or
+     * {@link FileSec.FileGrp.File.FContent#getXmlData()}) is called. The parser still has to scan
+     * it, but nothing is built or stored. The file must not be changed while the {@link Mets} is
+     * in use.
+     * <p>
+     * This needs a UTF-8 document without a DTD, as the ranges are reparsed out of context, and a
+     * parser that reports exact line and column numbers (such as the JDK's). Otherwise, and for files over
+     * 2GB, <code>xmlData</code> is copied as for {@link #read(InputStream)}.
+     *
+     * @param file
+     * @return
+     * @throws XMLStreamException
+     *             When the file cannot be parsed as XML
+     * @throws IOException
+     *             When the file cannot be read
+     */
+    public Mets readMapped(java.io.File file) throws XMLStreamException, IOException {
+        return readMapped(file, null);
+    }
+
+    /**
+     * Like {@link #readMapped(java.io.File)}, but only unmarshals the given sections, as
+     * {@link #read(InputStream, EnumSet)} does.
+     *
+     * @param file
+     * @param sections
+     *            the sections to unmarshal, or null for all of them
+     * @return
+     * @throws XMLStreamException
+     *             When the file cannot be parsed as XML
+     * @throws IOException
+     *             When the file cannot be read
+     */
+    public Mets readMapped(java.io.File file, EnumSet<Section> sections) throws XMLStreamException, IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                return read(in, sections, null);
+            MetsProbe probe = probe(Operation.READ);
+            try {
+                Mets mets = readMapped(file, channel, sections, probe);
+                if (probe != null)
+                    probe.done(channel.size());
+                return mets;
+            } catch (Exception e) {
+                if (probe != null)
+                    probe.failed(e);
+                throw e;
+            }
+        } finally {
+            // the map outlives the channel
+            in.close();
+        }
+    }
+
+    private Mets readMapped(java.io.File file, FileChannel channel, EnumSet<Section> sections, MetsProbe probe)
+            throws XMLStreamException, IOException {
+        ByteBuffer map = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        XMLStreamReader r = createXMLStreamReader(new ByteBufferInputStream(map));
+        if (probe != null)
+            r = probe.count(r);
+        try {
+            while (r.getEventType() != XMLStreamConstants.START_ELEMENT
+                    && r.getEventType() != XMLStreamConstants.DTD && r.hasNext())
+                r.next();
+            String encoding = r.getEncoding();
+            if (r.getEventType() != XMLStreamConstants.DTD
+                    && (encoding == null || encoding.equalsIgnoreCase("UTF-8")))
+                r = new XmlData.MappedReader(r, map, file);
+            return read(r, sections, null, probe);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * Like {@link #read(InputStream)}, but only unmarshals the given sections. The others are
+     * skipped by the parser without being built. The root element's attributes are always read.
+     *
+     * @param in
+     * @param sections
+     *            the sections to unmarshal
+     * @return
+     * @throws XMLStreamException
+     *             When the InputStream cannot be parsed as XML
+     */
+    public Mets read(InputStream in, EnumSet<Section> sections) throws XMLStreamException {
+        return read(in, sections, null);
+    }
+
+    /**
+     * Like {@link #read(InputStream, EnumSet)}, additionally only unmarshalling the
+     * <code>fileGrp</code>s of the <code>fileSec</code> whose <code>@USE</code> is in
+     * <code>fileGrpUse</code>. A matching <code>fileGrp</code> is read whole. A
+     * <code>fileGrp</code> that doesn't match has its <code>file</code>s skipped, and is only kept
+     * (as a container) if one of its descendant <code>fileGrp</code>s matches.
+     *
+     * @param in
+     * @param sections
+     *            the sections to unmarshal, or null for all of them
+     * @param fileGrpUse
+     *            <code>@USE</code> values of the <code>fileGrp</code>s to unmarshal, or null for all
+     * @return
+     * @throws XMLStreamException
+     *             When the InputStream cannot be parsed as XML
+     */
+    public Mets read(InputStream in, EnumSet<Section> sections, Set<String> fileGrpUse)
+            throws XMLStreamException {
+        MetsProbe probe = probe(Operation.READ);
+        CountingInputStream counted = probe == null ? null : new CountingInputStream(in);
+        try {
+            XMLStreamReader r = createXMLStreamReader(counted == null ? in : counted);
+            if (probe != null)
+                r = probe.count(r);
+            try {
+                Mets mets = read(r, sections, fileGrpUse, probe);
+                if (probe != null)
+                    probe.done(counted.getCount());
+                return mets;
+            } finally {
+                r.close();
+            }
+        } catch (Exception e) {
+            if (probe != null)
+                probe.failed(e);
+            throw e;
+        }
+    }
+
+    /*
+     * Null sections are all of them; each section is timed if there is a probe
+     */
+    private Mets read(XMLStreamReader r, EnumSet<Section> sections, Set<String> fileGrpUse, MetsProbe probe)
+            throws XMLStreamException {
+        Mets mets = new Mets();
+        if (probe != null)
+            probe.document(mets);
+        toRootElement(r);
+        mets.unmarshalAttributes(r);
+        while (StAXHelp.nextChildElement(r)) {
+            Section section = Section.fromLocalName(r.getLocalName());
+            if (sections != null && (section == null || !sections.contains(section))) {
+                StAXHelp.skipElement(r);
+                continue;
+            }
+            long start = probe == null ? 0 : probe.start();
+            if (section == Section.FILE_SEC && fileGrpUse != null) {
+                FileSec fileSec = new FileSec();
+                fileSec.unmarshalAttributes(r);
+                while (StAXHelp.nextChildElement(r)) {
+                    FileGrp fileGrp = readFileGrp(r, fileGrpUse);
+                    if (fileGrp != null)
+                        fileSec.getFileGrp().add(fileGrp);
+                }
+                mets.setFileSec(fileSec);
+            } else
+                mets.unmarshalChild(r);
+            if (probe != null && section != null)
+                probe.end(section, start);
+        }
+        return index(mets);
+    }
+
+    /*
+     * Returns null if neither the fileGrp nor any of its descendants match
+     */
+    private static FileGrp readFileGrp(XMLStreamReader r, Set<String> fileGrpUse) throws XMLStreamException {
+        FileGrp fileGrp = new FileGrp();
+        fileGrp.unmarshalAttributes(r);
+        if (fileGrp.getUse() != null && fileGrpUse.contains(fileGrp.getUse())) {
+            while (StAXHelp.nextChildElement(r))
+                fileGrp.unmarshalChild(r);
+            return fileGrp;
+        }
+        while (StAXHelp.nextChildElement(r)) {
+            if (r.getLocalName().equals("fileGrp")) {
+                FileGrp subFileGrp = readFileGrp(r, fileGrpUse);
+                if (subFileGrp != null)
+                    fileGrp.getFileGrp().add(subFileGrp);
+            } else
+                StAXHelp.skipElement(r);
+        }
+        return fileGrp.fileGrp == null ? null : fileGrp;
+    }
+
+    /**
+     * Reads the document in a single pass, reporting it to <code>handler</code> as it goes. No
+     * {@link Mets} tree is built; see {@link MetsHandler} for what is (and isn't) unmarshalled.
+     * <code>behaviorSec</code>s are skipped.
+     *
+     * @param in
+     * @param handler
+     * @throws XMLStreamException
+     *             When the InputStream cannot be parsed as XML
+     */
+    public void parse(InputStream in, MetsHandler handler) throws XMLStreamException {
+        XMLStreamReader r = createXMLStreamReader(in);
+        try {
+            toRootElement(r);
+            Mets mets = new Mets();
+            mets.unmarshalAttributes(r);
+            if (handler.onMetsStart(mets)) {
+                while (StAXHelp.nextChildElement(r))
+                    parseMetsChild(r, handler);
+                handler.onMetsEnd(mets);
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    private static void parseMetsChild(XMLStreamReader r, MetsHandler handler) throws XMLStreamException {
+        String localName = r.getLocalName();
+        if (localName.equals("metsHdr")) {
+            MetsHdr metsHdr = new MetsHdr();
+            metsHdr.unmarshal(r);
+            handler.onMetsHdr(metsHdr);
+        } else if (localName.equals("dmdSec")) {
+            parseMdSec(r, handler);
+        } else if (localName.equals("amdSec")) {
+            AmdSec amdSec = new AmdSec();
+            amdSec.unmarshalAttributes(r);
+            if (handler.onAmdSecStart(amdSec)) {
+                while (StAXHelp.nextChildElement(r))
+                    parseMdSec(r, handler);
+                handler.onAmdSecEnd(amdSec);
+            } else
+                StAXHelp.skipElement(r);
+        } else if (localName.equals("fileSec")) {
+            FileSec fileSec = new FileSec();
+            fileSec.unmarshalAttributes(r);
+            if (handler.onFileSecStart(fileSec)) {
+                while (StAXHelp.nextChildElement(r))
+                    parseFileGrp(r, handler);
+                handler.onFileSecEnd(fileSec);
+            } else
+                StAXHelp.skipElement(r);
+        } else if (localName.equals("structMap")) {
+            StructMap structMap = new StructMap();
+            structMap.unmarshalAttributes(r);
+            if (handler.onStructMapStart(structMap)) {
+                while (StAXHelp.nextChildElement(r)) {
+                    if (r.getLocalName().equals("div"))
+                        parseDiv(r, handler);
+                    else
+                        StAXHelp.skipElement(r);
+                }
+                handler.onStructMapEnd(structMap);
+            } else
+                StAXHelp.skipElement(r);
+        } else if (localName.equals("structLink")) {
+            StructLink structLink = new StructLink();
+            structLink.unmarshal(r);
+            handler.onStructLink(structLink);
+        } else
+            StAXHelp.skipElement(r);
+    }
+
+    private static void parseMdSec(XMLStreamReader r, MetsHandler handler) throws XMLStreamException {
+        String localName = r.getLocalName();
+        MdSec mdSec = new MdSec();
+        mdSec.unmarshalAttributes(r);
+        if (!handler.onMdSecStart(localName, mdSec)) {
+            StAXHelp.skipElement(r);
+            return;
+        }
+        while (StAXHelp.nextChildElement(r))
+            mdSec.unmarshalChild(r);
+        handler.onMdSec(localName, mdSec);
+    }
+
+    private static void parseFileGrp(XMLStreamReader r, MetsHandler handler) throws XMLStreamException {
+        FileGrp fileGrp = new FileGrp();
+        fileGrp.unmarshalAttributes(r);
+        if (!handler.onFileGrpStart(fileGrp)) {
+            StAXHelp.skipElement(r);
+            return;
+        }
+        while (StAXHelp.nextChildElement(r)) {
+            String localName = r.getLocalName();
+            if (localName.equals("fileGrp"))
+                parseFileGrp(r, handler);
+            else if (localName.equals("file")) {
+                File file = new File();
+                file.unmarshal(r);
+                handler.onFile(file);
+            } else
+                StAXHelp.skipElement(r);
+        }
+        handler.onFileGrpEnd(fileGrp);
+    }
+
+    private static void parseDiv(XMLStreamReader r, MetsHandler handler) throws XMLStreamException {
+        Div div = new Div();
+        div.unmarshalAttributes(r);
+        if (!handler.onDivStart(div)) {
+            StAXHelp.skipElement(r);
+            return;
+        }
+        while (StAXHelp.nextChildElement(r)) {
+            String localName = r.getLocalName();
+            if (localName.equals("div"))
+                parseDiv(r, handler);
+            else if (localName.equals("fptr")) {
+                Fptr fptr = new Fptr();
+                fptr.unmarshal(r);
+                handler.onFptr(fptr);
+            } else if (localName.equals("mptr")) {
+                Mptr mptr = new Mptr();
+                mptr.unmarshal(r);
+                handler.onMptr(mptr);
+            } else
+                StAXHelp.skipElement(r);
+        }
+        handler.onDivEnd(div);
+    }
+
+    /*
+     * Factories aren't guaranteed to be thread-safe, but the readers they create are independent
+     */
+    protected XMLStreamReader createXMLStreamReader(InputStream in) throws XMLStreamException {
+        XMLStreamReader r;
+        synchronized (xmlInputFactory) {
+            r = xmlInputFactory.createXMLStreamReader(in);
+        }
+        Path dir = this.binDataDirectory;
+        return dir == null ? r : new BinData.TempDirectoryReader(r, dir);
+    }
+
+    /**
+     * Advances past the prolog to the document element.
+     */
+    protected static void toRootElement(XMLStreamReader r) throws XMLStreamException {
+        while (r.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            if (!r.hasNext())
+                throw new XMLStreamException("No document element", r.getLocation());
+            r.next();
+        }
+    }
+
+    /**
+     * @return where the temporary files holding decoded <code>binData</code> go, or null for
+     *         <code>java.io.tmpdir</code> (the default)
+     */
+    public Path getBinDataDirectory() {
+        return binDataDirectory;
+    }
+
+    /**
+     * @param binDataDirectory
+     *            where the temporary files holding decoded <code>binData</code> go, or null for
+     *            <code>java.io.tmpdir</code>. Being on the same file system as where they'll end
+     *            up makes {@link BinData#moveTo(Path)} a rename.
+     */
+    public void setBinDataDirectory(Path binDataDirectory) {
+        this.binDataDirectory = binDataDirectory;
+    }
+
+    /**
+     * @return the XMLInputFactory
+     */
+    public XMLInputFactory getXMLInputFactory() {
+        return xmlInputFactory;
+    }
+
+}
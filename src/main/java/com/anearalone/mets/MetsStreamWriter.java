@@ -0,0 +1,178 @@
+/**
+ * MetsStreamWriter.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.anearalone.mets.MetsListener.Operation;
+import com.anearalone.mets.MetsProbe.CountingOutputStream;
+import com.anearalone.utils.FormattingXMLStreamWriter;
+
+/**
+ * Writes METS objects without building a DOM. Unlike {@link MetsWriter}, each class streams itself
+ * straight to the output via {@link ElementInterface#marshal(XMLStreamWriter)}, so no copy of the
+ * document (or of its <code>xmlData</code>) is made, and no {@link javax.xml.transform.Transformer}
+ * is involved.
+ * <p>
+ * By default the output is byte-for-byte what {@link MetsWriter} writes for the same {@link Mets}
+ * (other than <code>LASTMODDATE</code>, which is always the time of writing). With
+ * {@link #setIndent(boolean)} set to false no whitespace is added, which is smaller and faster
+ * still. Like {@link MetsWriter}, it doesn't write <code>behaviorSec</code>s or
+ * <code>smLinkGrp</code>s, which aren't supported.
+ * <p>
+ * With {@link #setVerbatimXmlData(boolean)} set, <code>xmlData</code> that was read and hasn't
+ * been touched since is copied to the output byte-for-byte as it was read (from the source file
+ * itself, for large payloads read with {@link MetsStreamReader#readMapped(java.io.File)}), rather
+ * than being re-serialized. The result is equivalent, but is no longer identical to what
+ * {@link MetsWriter} writes: the payloads keep their original formatting.
+ * <p>
+ * A given instance may be reused as necessary, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsStreamWriter extends MetsIO {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private volatile boolean indent = true;
+    private volatile boolean verbatimXmlData;
+
+    public MetsStreamWriter() throws ParserConfigurationException, DatatypeConfigurationException {
+        super();
+    }
+
+    public void writeToFile(Mets mets, File file) throws XMLStreamException, IOException {
+        MetsProbe probe = probe(Operation.WRITE);
+        try {
+            OutputStream out = new FileOutputStream(file);
+            try {
+                write(mets, out, probe);
+            } finally {
+                out.close();
+            }
+            if (probe != null)
+                probe.done(file.length());
+        } catch (Exception e) {
+            if (probe != null)
+                probe.failed(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes <code>mets</code> as UTF-8. The stream is flushed but not closed.
+     *
+     * @param mets
+     * @param out
+     * @throws XMLStreamException
+     */
+    public void writeToOutputStream(Mets mets, OutputStream out) throws XMLStreamException {
+        MetsProbe probe = probe(Operation.WRITE);
+        if (probe == null) {
+            write(mets, out, null);
+            return;
+        }
+        try {
+            if (out instanceof FileOutputStream) {
+                // not wrapped, so that verbatim xmlData can still be copied straight to the file
+                FileChannel channel = ((FileOutputStream) out).getChannel();
+                long start = position(channel);
+                write(mets, out, probe);
+                probe.done(position(channel) - start);
+            } else {
+                CountingOutputStream counted = new CountingOutputStream(out);
+                write(mets, counted, probe);
+                probe.done(counted.getCount());
+            }
+        } catch (Exception e) {
+            probe.failed(e);
+            throw e;
+        }
+    }
+
+    private void write(Mets mets, OutputStream out, MetsProbe probe) throws XMLStreamException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, UTF8), BUFFER_SIZE);
+        FormattingXMLStreamWriter w;
+        if (this.verbatimXmlData)
+            w = new VerbatimXMLStreamWriter(writer, out, this.indent);
+        else
+            w = new FormattingXMLStreamWriter(writer, this.indent);
+        if (probe != null) {
+            probe.document(mets);
+            probe.count(w);
+        }
+        w.writeStartDocument("UTF-8", "1.0", false);
+        w.writeStartElement("mets", "mets", NS.METS.ns());
+        mets.marshal(w, probe);
+        w.writeEndElement();
+        w.writeEndDocument();
+        w.close();
+    }
+
+    private static long position(FileChannel channel) throws XMLStreamException {
+        try {
+            return channel.position();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    /**
+     * @return whether whitespace is added to indent elements (the default)
+     */
+    public boolean isIndent() {
+        return indent;
+    }
+
+    /**
+     * @param indent
+     *            true to indent as {@link MetsWriter} does, false to add no whitespace
+     */
+    public void setIndent(boolean indent) {
+        this.indent = indent;
+    }
+
+    /**
+     * @return whether unmodified <code>xmlData</code> is copied as it was read
+     */
+    public boolean isVerbatimXmlData() {
+        return verbatimXmlData;
+    }
+
+    /**
+     * @param verbatimXmlData
+     *            true to copy <code>xmlData</code> that hasn't been asked for (via
+     *            <code>getXmlData()</code>) since it was read to the output as it is, false to
+     *            re-serialize it as {@link MetsWriter} would (the default)
+     */
+    public void setVerbatimXmlData(boolean verbatimXmlData) {
+        this.verbatimXmlData = verbatimXmlData;
+    }
+
+}
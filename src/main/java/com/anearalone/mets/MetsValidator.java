@@ -0,0 +1,544 @@
+/**
+ * MetsValidator.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import com.anearalone.mets.BehaviorSec.Behavior;
+import com.anearalone.mets.FileSec.FileGrp;
+import com.anearalone.mets.FileSec.FileGrp.File;
+import com.anearalone.mets.FileSec.FileGrp.File.Stream;
+import com.anearalone.mets.MetsHdr.Agent;
+import com.anearalone.mets.MetsHdr.RecordID;
+import com.anearalone.mets.StructLink.SmLink;
+import com.anearalone.mets.StructLink.StructLinkChild;
+import com.anearalone.mets.StructMap.Div;
+import com.anearalone.mets.StructMap.Div.Fptr;
+import com.anearalone.mets.StructMap.Div.Fptr.Area;
+import com.anearalone.mets.StructMap.Div.Fptr.FptrChild;
+import com.anearalone.mets.StructMap.Div.Fptr.Par;
+import com.anearalone.mets.StructMap.Div.Fptr.Seq;
+import com.anearalone.mets.StructMap.Div.Mptr;
+
+/**
+ * Checks the referential integrity of a {@link Mets}: that every <code>@ID</code> is unique, and
+ * that every <code>FILEID</code>, <code>DMDID</code>, <code>ADMID</code> and <code>STRUCTID</code>
+ * refers to an <code>@ID</code> in the document. <code>CONTENTIDS</code> are URIs rather than
+ * IDREFs, so only those that are same-document references (<code>#ID</code>) are checked.
+ * <p>
+ * The document is walked once, collecting IDs and references into hash tables, and the references
+ * are then looked up, so the time taken is linear in the size of the document. Given an
+ * {@link ExecutorService}, the sections of the document (the header and metadata sections, the
+ * <code>fileSec</code>, each <code>structMap</code>, and the rest) are walked in parallel.
+ * <p>
+ * Every problem is reported, with the path to the offending attribute. A given instance may be
+ * reused, and may be shared between threads.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class MetsValidator {
+    private final ExecutorService executor;
+
+    /**
+     * A validator that walks documents on the calling thread.
+     */
+    public MetsValidator() {
+        this(null);
+    }
+
+    /**
+     * @param executor
+     *            used to walk the sections of a document in parallel, or null to walk them on the
+     *            calling thread. It is not shut down by the validator.
+     */
+    public MetsValidator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param mets
+     * @return the problems found, in document order; empty if there are none
+     */
+    public List<Problem> validate(final Mets mets) {
+        MetsEvents.Validation event = MetsEvents.INSTANCE.validation(getClass());
+        final Path root = new Path(null, "mets:mets", 0);
+        List<Callable<Walker>> sections = new ArrayList<Callable<Walker>>();
+        sections.add(new Callable<Walker>() {
+            @Override
+            public Walker call() {
+                Walker w = new Walker();
+                w.walkHeadAndMdSecs(mets, root);
+                return w;
+            }
+        });
+        if (mets.fileSec != null) {
+            sections.add(new Callable<Walker>() {
+                @Override
+                public Walker call() {
+                    Walker w = new Walker();
+                    w.walkFileSec(mets.fileSec, root);
+                    return w;
+                }
+            });
+        }
+        if (mets.structMap != null) {
+            for (int i = 0; i < mets.structMap.size(); i++) {
+                final StructMap smap = mets.structMap.get(i);
+                final int position = i + 1;
+                sections.add(new Callable<Walker>() {
+                    @Override
+                    public Walker call() {
+                        Walker w = new Walker();
+                        w.walkStructMap(smap, new Path(root, "mets:structMap", position));
+                        return w;
+                    }
+                });
+            }
+        }
+        sections.add(new Callable<Walker>() {
+            @Override
+            public Walker call() {
+                Walker w = new Walker();
+                w.walkTail(mets, root);
+                return w;
+            }
+        });
+
+        List<Walker> walked = walk(sections);
+
+        // IDs first, in document order, so that the first occurrence is the one that counts
+        Map<String, Path> ids = new HashMap<String, Path>();
+        for (Walker w : walked) {
+            for (int i = 0; i < w.values.size(); i++) {
+                if (!w.refs.get(i) && !ids.containsKey(w.values.get(i)))
+                    ids.put(w.values.get(i), w.paths.get(i));
+            }
+        }
+        // then the problems, IDs and references together, in document order
+        List<Problem> problems = new ArrayList<Problem>();
+        for (Walker w : walked) {
+            for (int i = 0; i < w.values.size(); i++) {
+                String value = w.values.get(i);
+                Path path = w.paths.get(i);
+                Path first = ids.get(value);
+                if (w.refs.get(i)) {
+                    if (first == null)
+                        problems.add(new Problem(Problem.Type.UNRESOLVED_IDREF, path, value,
+                                "no element with ID \"" + value + "\""));
+                } else if (first != path)
+                    problems.add(new Problem(Problem.Type.DUPLICATE_ID, path, value, "duplicate ID \""
+                            + value + "\"; first used at " + first));
+            }
+        }
+        if (event != null)
+            event.end(mets.getOBJID(), problems.size());
+        return problems;
+    }
+
+    /**
+     * @param mets
+     * @return true if {@link #validate(Mets)} finds no problems
+     */
+    public boolean isValid(Mets mets) {
+        return validate(mets).isEmpty();
+    }
+
+    private List<Walker> walk(List<Callable<Walker>> sections) {
+        List<Walker> walked = new ArrayList<Walker>(sections.size());
+        try {
+            if (executor == null) {
+                for (Callable<Walker> c : sections)
+                    walked.add(c.call());
+            } else {
+                for (Future<Walker> f : executor.invokeAll(sections))
+                    walked.add(f.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while validating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (Exception e) {
+            // only from Callable.call(), which ours don't throw
+            throw new IllegalStateException(e);
+        }
+        return walked;
+    }
+
+    /**
+     * A problem found by {@link MetsValidator#validate(Mets)}.
+     */
+    public static class Problem {
+        public enum Type {
+            /** An <code>@ID</code> that was already used */
+            DUPLICATE_ID,
+            /** An IDREF to an <code>@ID</code> that doesn't exist */
+            UNRESOLVED_IDREF
+        }
+
+        private final Type type;
+        private final Path path;
+        private final String value;
+        private final String message;
+
+        Problem(Type type, Path path, String value, String message) {
+            this.type = type;
+            this.path = path;
+            this.value = value;
+            this.message = message;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return an XPath to the offending attribute, e.g.
+         *         <code>/mets:mets/mets:structMap[1]/mets:div[1]/mets:fptr[2]/@FILEID</code>
+         */
+        public String getPath() {
+            return path.toString();
+        }
+
+        /**
+         * @return the offending ID
+         */
+        public String getValue() {
+            return value;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return getPath() + ": " + message;
+        }
+    }
+
+    /*
+     * A location in the document. Paths share their ancestors, and are only turned into Strings
+     * when there's a problem to report.
+     */
+    private static class Path {
+        final Path parent;
+        final String name;
+        final int position;
+
+        Path(Path parent, String name, int position) {
+            this.parent = parent;
+            this.name = name;
+            this.position = position;
+        }
+
+        Path attribute(String attribute) {
+            return new Path(this, "@" + attribute, 0);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            append(sb);
+            return sb.toString();
+        }
+
+        private void append(StringBuilder sb) {
+            if (parent != null)
+                parent.append(sb);
+            sb.append('/').append(name);
+            if (position > 0)
+                sb.append('[').append(position).append(']');
+        }
+    }
+
+    /*
+     * Collects the IDs and references of one or more sections, together and in document order.
+     * Fields are read directly so that the getters don't create empty lists along the way.
+     */
+    private static class Walker {
+        final List<String> values = new ArrayList<String>();
+        final List<Path> paths = new ArrayList<Path>();
+        // set for the values that are references rather than IDs
+        final BitSet refs = new BitSet();
+
+        void id(IDElement e, Path path) {
+            if (e.id != null) {
+                values.add(e.id);
+                paths.add(path.attribute("ID"));
+            }
+        }
+
+        void ref(Path path, String attribute, String target) {
+            if (target != null) {
+                refs.set(values.size());
+                values.add(target);
+                paths.add(path.attribute(attribute));
+            }
+        }
+
+        void ref(Path path, String attribute, List<String> targets) {
+            if (targets == null)
+                return;
+            Path attr = null;
+            for (String target : targets) {
+                if (attr == null)
+                    attr = path.attribute(attribute);
+                refs.set(values.size());
+                values.add(target);
+                paths.add(attr);
+            }
+        }
+
+        // only same-document references (#ID) are IDREFs
+        void contentIDs(Path path, List<String> uris) {
+            if (uris == null)
+                return;
+            for (String uri : uris)
+                if (uri.length() > 1 && uri.charAt(0) == '#')
+                    ref(path, "CONTENTIDS", uri.substring(1));
+        }
+
+        /*
+         * sections
+         */
+
+        void walkHeadAndMdSecs(Mets mets, Path root) {
+            id(mets, root);
+            MetsHdr hdr = mets.metsHdr;
+            if (hdr != null) {
+                Path p = new Path(root, "mets:metsHdr", 1);
+                id(hdr, p);
+                ref(p, "ADMID", hdr.admid);
+                if (hdr.agent != null) {
+                    int n = 0;
+                    for (Agent a : hdr.agent)
+                        id(a, new Path(p, "mets:agent", ++n));
+                }
+                if (hdr.altRecordID != null) {
+                    int n = 0;
+                    for (RecordID rid : hdr.altRecordID)
+                        id(rid, new Path(p, "mets:altRecordID", ++n));
+                }
+                if (hdr.metsDocumentID != null)
+                    id(hdr.metsDocumentID, new Path(p, "mets:metsDocumentID", 1));
+            }
+            walkMdSecs(mets.dmdSec, root, "mets:dmdSec");
+            if (mets.amdSec != null) {
+                int n = 0;
+                for (AmdSec amd : mets.amdSec) {
+                    Path p = new Path(root, "mets:amdSec", ++n);
+                    id(amd, p);
+                    walkMdSecs(amd.techMD, p, "mets:techMD");
+                    walkMdSecs(amd.rightsMD, p, "mets:rightsMD");
+                    walkMdSecs(amd.sourceMD, p, "mets:sourceMD");
+                    walkMdSecs(amd.digiprovMD, p, "mets:digiprovMD");
+                }
+            }
+        }
+
+        void walkFileSec(FileSec fileSec, Path root) {
+            Path p = new Path(root, "mets:fileSec", 1);
+            id(fileSec, p);
+            walkFileGrps(fileSec.fileGrp, p);
+        }
+
+        void walkStructMap(StructMap smap, Path p) {
+            id(smap, p);
+            if (smap.div != null)
+                walkDiv(smap.div, new Path(p, "mets:div", 1));
+        }
+
+        void walkTail(Mets mets, Path root) {
+            if (mets.structLink != null) {
+                Path p = new Path(root, "mets:structLink", 1);
+                id(mets.structLink, p);
+                if (mets.structLink.smLinkOrSmLinkGrp != null) {
+                    // positions are counted per element name
+                    int smLinks = 0, smLinkGrps = 0;
+                    for (StructLinkChild slc : mets.structLink.smLinkOrSmLinkGrp) {
+                        if (slc instanceof SmLink)
+                            id(slc, new Path(p, "mets:smLink", ++smLinks));
+                        else
+                            id(slc, new Path(p, "mets:smLinkGrp", ++smLinkGrps));
+                    }
+                }
+            }
+            walkBehaviorSecs(mets.behaviorSec, root);
+        }
+
+        /*
+         * elements
+         */
+
+        void walkMdSecs(List<MdSec> mdSecs, Path parent, String name) {
+            if (mdSecs == null)
+                return;
+            int n = 0;
+            for (MdSec md : mdSecs) {
+                Path p = new Path(parent, name, ++n);
+                id(md, p);
+                ref(p, "ADMID", md.admid);
+                if (md.mdRef != null)
+                    id(md.mdRef, new Path(p, "mets:mdRef", 1));
+                if (md.mdWrap != null)
+                    id(md.mdWrap, new Path(p, "mets:mdWrap", 1));
+            }
+        }
+
+        void walkFileGrps(List<FileGrp> fileGrps, Path parent) {
+            if (fileGrps == null)
+                return;
+            int n = 0;
+            for (FileGrp fg : fileGrps) {
+                Path p = new Path(parent, "mets:fileGrp", ++n);
+                id(fg, p);
+                walkFileGrps(fg.fileGrp, p);
+                walkFiles(fg.file, p);
+            }
+        }
+
+        void walkFiles(List<File> files, Path parent) {
+            if (files == null)
+                return;
+            int n = 0;
+            for (File f : files) {
+                Path p = new Path(parent, "mets:file", ++n);
+                id(f, p);
+                ref(p, "ADMID", f.admid);
+                ref(p, "DMDID", f.dmdid);
+                if (f.fLocat != null) {
+                    int c = 0;
+                    for (IDElement e : f.fLocat)
+                        id(e, new Path(p, "mets:FLocat", ++c));
+                }
+                if (f.fContent != null)
+                    id(f.fContent, new Path(p, "mets:FContent", 1));
+                if (f.stream != null) {
+                    int c = 0;
+                    for (Stream st : f.stream) {
+                        Path sp = new Path(p, "mets:stream", ++c);
+                        id(st, sp);
+                        ref(sp, "ADMID", st.admid);
+                        ref(sp, "DMDID", st.dmdid);
+                    }
+                }
+                if (f.transformFile != null) {
+                    int c = 0;
+                    for (IDElement e : f.transformFile)
+                        id(e, new Path(p, "mets:transformFile", ++c));
+                }
+                walkFiles(f.file, p);
+            }
+        }
+
+        void walkDiv(Div div, Path p) {
+            id(div, p);
+            ref(p, "DMDID", div.dmdid);
+            ref(p, "ADMID", div.admid);
+            contentIDs(p, div.contentids);
+            if (div.mptr != null) {
+                int n = 0;
+                for (Mptr m : div.mptr) {
+                    Path mp = new Path(p, "mets:mptr", ++n);
+                    id(m, mp);
+                    contentIDs(mp, m.contentids);
+                }
+            }
+            if (div.fptr != null) {
+                int n = 0;
+                for (Fptr fptr : div.fptr) {
+                    Path fp = new Path(p, "mets:fptr", ++n);
+                    id(fptr, fp);
+                    ref(fp, "FILEID", fptr.fileid);
+                    contentIDs(fp, fptr.contentids);
+                    if (fptr.par != null)
+                        walkFptrChild(fptr.par, new Path(fp, "mets:par", 1));
+                    if (fptr.seq != null)
+                        walkFptrChild(fptr.seq, new Path(fp, "mets:seq", 1));
+                    if (fptr.area != null)
+                        walkFptrChild(fptr.area, new Path(fp, "mets:area", 1));
+                }
+            }
+            if (div.div != null) {
+                int n = 0;
+                for (Div d : div.div)
+                    walkDiv(d, new Path(p, "mets:div", ++n));
+            }
+        }
+
+        void walkFptrChild(FptrChild child, Path p) {
+            id(child, p);
+            List<FptrChild> children = null;
+            if (child instanceof Area) {
+                Area area = (Area) child;
+                ref(p, "FILEID", area.fileid);
+                ref(p, "ADMID", area.admid);
+                contentIDs(p, area.contentids);
+            } else if (child instanceof Par)
+                children = ((Par) child).areaOrSeq;
+            else if (child instanceof Seq)
+                children = ((Seq) child).areaOrPar;
+            if (children == null)
+                return;
+            // positions are counted per element name
+            int areas = 0, pars = 0, seqs = 0;
+            for (FptrChild c : children) {
+                if (c instanceof Area)
+                    walkFptrChild(c, new Path(p, "mets:area", ++areas));
+                else if (c instanceof Par)
+                    walkFptrChild(c, new Path(p, "mets:par", ++pars));
+                else
+                    walkFptrChild(c, new Path(p, "mets:seq", ++seqs));
+            }
+        }
+
+        void walkBehaviorSecs(List<BehaviorSec> behaviorSecs, Path parent) {
+            if (behaviorSecs == null)
+                return;
+            int n = 0;
+            for (BehaviorSec bs : behaviorSecs) {
+                Path p = new Path(parent, "mets:behaviorSec", ++n);
+                id(bs, p);
+                walkBehaviorSecs(bs.behaviorSec, p);
+                if (bs.behavior != null) {
+                    int c = 0;
+                    for (Behavior b : bs.behavior) {
+                        Path bp = new Path(p, "mets:behavior", ++c);
+                        id(b, bp);
+                        ref(bp, "STRUCTID", b.structid);
+                        ref(bp, "ADMID", b.admid);
+                        if (b.interfaceDef != null)
+                            id(b.interfaceDef, new Path(bp, "mets:interfaceDef", 1));
+                        if (b.mechanism != null)
+                            id(b.mechanism, new Path(bp, "mets:mechanism", 1));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.OutputStream;
 
 import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
@@ -34,65 +35,102 @@ import javax.xml.transform.stream.StreamResult;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import com.anearalone.mets.MetsListener.Operation;
+import com.anearalone.mets.MetsProbe.CountingOutputStream;
+
 /**
- * Factory class for writing out METS objects. A given instance may be reused as necessary.
+ * Factory class for writing out METS objects. A given instance may be reused as necessary, and may
+ * be shared between threads: each thread writes with its own {@link Document} and
+ * {@link Transformer}.
  * 
  * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
  * @since Aug 23, 2010
  */
 
 public class MetsWriter extends MetsIO {
-    private static Document doc;
-    private static TransformerFactory xfac;
-    private static Transformer xformer;
+    private static final TransformerFactory xfac = TransformerFactory.newInstance();
+    private static final ThreadLocal<Transformer> xformers = new ThreadLocal<Transformer>();
 
     public MetsWriter() throws DatatypeConfigurationException, ParserConfigurationException {
         super();
-        xfac = TransformerFactory.newInstance();
         try {
-            xformer = xfac.newTransformer();
+            getTransformer();
         } catch (TransformerConfigurationException e) {
             // TODO Auto-generated catch block
             System.err.println(e.getMessage());
         }
-        xformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        xformer.setOutputProperty(OutputKeys.METHOD, "xml");
     }
 
     public void writeToFile(Mets mets, File file) throws TransformerException {
-
-        doc = docBuilder.newDocument();
-        Element root = doc.createElementNS(NS.METS.ns(), "mets:mets");
-        mets.marshal(root, doc);
-        doc.appendChild(root);
-        // Prepare the DOM document for writing
-        Source source = new DOMSource(doc);
-        // Prepare the output file
-
-        Result result = new StreamResult(file);
-        // Write the DOM document to the file
-        xformer.transform(source, result);
-
-        docBuilder.reset();
+        MetsProbe probe = probe(Operation.WRITE);
+        if (probe == null) {
+            // Prepare the output file
+            write(mets, new StreamResult(file), null);
+            return;
+        }
+        try {
+            write(mets, new StreamResult(file), probe);
+            probe.done(file.length());
+        } catch (Exception e) {
+            probe.failed(e);
+            throw e;
+        }
     }
 
     public void writeToOutputStream(Mets mets, OutputStream out) throws TransformerException {
+        MetsProbe probe = probe(Operation.WRITE);
+        if (probe == null) {
+            write(mets, new StreamResult(out), null);
+            return;
+        }
+        try {
+            CountingOutputStream counted = new CountingOutputStream(out);
+            write(mets, new StreamResult(counted), probe);
+            probe.done(counted.getCount());
+        } catch (Exception e) {
+            probe.failed(e);
+            throw e;
+        }
+    }
 
-        doc = docBuilder.newDocument();
+    private void write(Mets mets, Result result, MetsProbe probe) throws TransformerException {
+        DocumentBuilder docBuilder = threadDocBuilder();
+        Document doc = docBuilder.newDocument();
         Element root = doc.createElementNS(NS.METS.ns(), "mets:mets");
-        mets.marshal(root, doc);
+        if (probe != null)
+            probe.document(mets);
+        mets.marshal(root, doc, probe);
         doc.appendChild(root);
         // Prepare the DOM document for writing
         Source source = new DOMSource(doc);
-        // Prepare the output file
-
-        Result result = new StreamResult(out);
         // Write the DOM document to the file
-        xformer.transform(source, result);
+        if (probe != null)
+            probe.beginTransform();
+        getTransformer().transform(source, result);
+        if (probe != null)
+            probe.endTransform();
 
         docBuilder.reset();
     }
 
+    /**
+     * @return the calling thread's Transformer, which must not be handed to other threads
+     * @throws TransformerConfigurationException
+     */
+    protected static Transformer getTransformer() throws TransformerConfigurationException {
+        Transformer xformer = xformers.get();
+        if (xformer == null) {
+            // factories aren't thread-safe
+            synchronized (xfac) {
+                xformer = xfac.newTransformer();
+            }
+            xformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            xformer.setOutputProperty(OutputKeys.METHOD, "xml");
+            xformers.set(xformer);
+        }
+        return xformer;
+    }
+
     public static String listToString(List<String> strings) {
         String value = "";
         for (int c = 0; c < strings.size(); c++) {
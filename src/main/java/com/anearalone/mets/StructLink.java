@@ -20,10 +20,13 @@ package com.anearalone.mets;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.mets.LocatorElement.ACTUATE;
 import com.anearalone.mets.LocatorElement.SHOW;
@@ -79,6 +82,20 @@ public class StructLink extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+        if (this.smLinkOrSmLinkGrp != null) {
+            for (StructLinkChild slc : this.smLinkOrSmLinkGrp) {
+                if (slc instanceof SmLink) {
+                    w.writeStartElement("mets", "smLink", NS.METS.ns());
+                    slc.marshal(w);
+                    w.writeEndElement();
+                } // smLinkGrp isn't supported, so it isn't written
+            }
+        }
+    }
+
     @Override
     public void unmarshal(Element slink) {
         // TODO
@@ -97,6 +114,18 @@ public class StructLink extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        if (r.getLocalName().equals("smLink")) {
+            SmLink smLink = new SmLink();
+            smLink.unmarshal(r);
+            this.getSmLinkOrSmLinkGrp().add(smLink);
+        } else {
+            // smLinkGrp not implemented
+            super.unmarshalChild(r);
+        }
+    }
+
     /**
      * An empty class to help enforce type safety in {@link StructLink#smLinkOrSmLinkGrp}
      * 
@@ -274,27 +303,40 @@ public class StructLink extends IDElement implements ElementInterface {
         }
 
         @Override
-        public void unmarshal(Element smLink) {
-            // TODO
-            super.unmarshal(smLink);
-            NamedNodeMap attrs = smLink.getAttributes();
-            for (int i = 0; i < attrs.getLength(); i++) {
-                Attr attr = (Attr) attrs.item(i);
-                String name = attr.getName();
-                String value = attr.getNodeValue();
-                if (name.equals("xlink:from"))
-                    this.xlinkFrom = value;
-                if (name.equals("xlink:to"))
-                    this.xlinkTo = value;
-                if (name.equals("xlink:actuate"))
-                    this.xlinkActuate = ACTUATE.fromValue(value);
-                if (name.equals("xlink:arcrole"))
-                    this.xlinkArcRole = value;
-                if (name.equals("xlink:show"))
-                    this.xlinkShow = SHOW.fromValue(value);
-                if (name.equals("xlink:title"))
-                    this.xlinkTitle = value;
-            }
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+            String xns = NS.XLINK.ns(); // to keep lines short.
+
+            if (this.xlinkArcRole != null)
+                w.writeAttribute("xlink", xns, "arcrole", this.xlinkArcRole);
+            if (this.xlinkTitle != null)
+                w.writeAttribute("xlink", xns, "title", this.xlinkTitle);
+            if (this.xlinkTo != null)
+                w.writeAttribute("xlink", xns, "to", this.xlinkTo);
+            if (this.xlinkFrom != null)
+                w.writeAttribute("xlink", xns, "from", this.xlinkFrom);
+            if (this.xlinkShow != null)
+                w.writeAttribute("xlink", xns, "show", this.xlinkShow.value());
+            if (this.xlinkActuate != null)
+                w.writeAttribute("xlink", xns, "actuate", this.xlinkActuate.value());
+        }
+
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("xlink:from"))
+                this.xlinkFrom = value;
+            else if (name.equals("xlink:to"))
+                this.xlinkTo = value;
+            else if (name.equals("xlink:actuate"))
+                this.xlinkActuate = ACTUATE.fromValue(value);
+            else if (name.equals("xlink:arcrole"))
+                this.xlinkArcRole = value;
+            else if (name.equals("xlink:show"))
+                this.xlinkShow = SHOW.fromValue(value);
+            else if (name.equals("xlink:title"))
+                this.xlinkTitle = value;
+            else
+                super.unmarshalAttribute(name, value);
         }
 
     }
@@ -19,10 +19,13 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
 
 import com.anearalone.utils.DOMHelp;
 
@@ -134,13 +137,26 @@ public class StructMap extends IDElement implements ElementInterface {
         smap.appendChild(div);
     }
 
+    @Override
+    public void marshal(XMLStreamWriter w) throws XMLStreamException {
+        super.marshal(w);
+
+        if (this.type != null)
+            w.writeAttribute("TYPE", this.type);
+        if (this.label != null)
+            w.writeAttribute("LABEL", this.label);
+
+        // The root div is required, so make it if it doesn't exist
+        if (this.div == null)
+            this.div = new Div();
+        w.writeStartElement("mets", "div", NS.METS.ns());
+        this.div.marshal(w);
+        w.writeEndElement();
+    }
+
     @Override
     public void unmarshal(Element smap) {
         super.unmarshal(smap);
-        if (smap.hasAttribute("LABEL"))
-            this.label = smap.getAttribute("LABEL");
-        if (smap.hasAttribute("TYPE"))
-            this.type = smap.getAttribute("TYPE");
         Element divE = DOMHelp.getFirstChildElement(smap);
         if (divE != null) {
             this.div = new Div();
@@ -148,6 +164,26 @@ public class StructMap extends IDElement implements ElementInterface {
         }
     }
 
+    @Override
+    protected void unmarshalAttribute(String name, String value) {
+        if (name.equals("LABEL"))
+            this.label = value;
+        else if (name.equals("TYPE"))
+            this.type = value;
+        else
+            super.unmarshalAttribute(name, value);
+    }
+
+    @Override
+    protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+        if (r.getLocalName().equals("div")) {
+            this.div = new Div();
+            this.div.unmarshal(r);
+        } else {
+            super.unmarshalChild(r);
+        }
+    }
+
     /**
      * Representation of a <code>mets:div</code>.
      * <p>
@@ -376,29 +412,6 @@ public class StructMap extends IDElement implements ElementInterface {
         public void unmarshal(Element e) {
             super.unmarshal(e);
 
-            NamedNodeMap attrs = e.getAttributes();
-            for (int i = 0; i < attrs.getLength(); i++) {
-                Attr attr = (Attr) attrs.item(i);
-                String name = attr.getName();
-                String value = attr.getNodeValue();
-                if (name.equals("ORDERLABEL"))
-                    this.orderlabel = value;
-                if (name.equals("LABEL"))
-                    this.label = value;
-                if (name.equals("TYPE"))
-                    this.type = value;
-                if (name.equals("ORDER"))
-                    this.order = new BigInteger(value);
-                if (name.equals("xlink:label"))
-                    this.orderlabel = value;
-                if (name.equals("ADMID"))
-                    this.admid = MetsReader.parseIDREFAttr(value);
-                if (name.equals("DMDID"))
-                    this.dmdid = MetsReader.parseIDREFAttr(value);
-                if (name.equals("CONTENTIDS"))
-                    this.contentids = MetsReader.parseIDREFAttr(value);
-            }
-
             List<Element> children = DOMHelp.getChildElements(e);
             for (Element child : children) {
                 String localName = child.getLocalName();
@@ -420,6 +433,48 @@ public class StructMap extends IDElement implements ElementInterface {
             }
         }
 
+        @Override
+        protected void unmarshalAttribute(String name, String value) {
+            if (name.equals("ORDERLABEL"))
+                this.orderlabel = value;
+            else if (name.equals("LABEL"))
+                this.label = value;
+            else if (name.equals("TYPE"))
+                this.type = value;
+            else if (name.equals("ORDER"))
+                this.order = new BigInteger(value);
+            else if (name.equals("xlink:label"))
+                this.xlinkLabel = value;
+            else if (name.equals("ADMID"))
+                this.admid = MetsReader.parseIDREFAttr(value);
+            else if (name.equals("DMDID"))
+                this.dmdid = MetsReader.parseIDREFAttr(value);
+            else if (name.equals("CONTENTIDS"))
+                this.contentids = MetsReader.parseIDREFAttr(value);
+            else
+                super.unmarshalAttribute(name, value);
+        }
+
+        @Override
+        protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+            String localName = r.getLocalName();
+            if (localName.equals("div")) {
+                Div subDiv = new Div();
+                subDiv.unmarshal(r);
+                this.getDiv().add(subDiv);
+            } else if (localName.equals("mptr")) {
+                Mptr mptr = new Mptr();
+                mptr.unmarshal(r);
+                this.getMptr().add(mptr);
+            } else if (localName.equals("fptr")) {
+                Fptr fptr = new Fptr();
+                fptr.unmarshal(r);
+                this.getFptr().add(fptr);
+            } else {
+                super.unmarshalChild(r);
+            }
+        }
+
         @Override
         public void marshal(Element div, Document doc) {
             super.marshal(div, doc);
@@ -435,7 +490,7 @@ public class StructMap extends IDElement implements ElementInterface {
             if (this.type != null)
                 div.setAttribute("TYPE", this.type);
             if (this.xlinkLabel != null)
-                div.setAttributeNS(NS.XLINK.ns(), "TYPE", this.type);
+                div.setAttributeNS(NS.XLINK.ns(), "xlink:label", this.xlinkLabel);
             if (this.admid != null) {
                 Attr admid = doc.createAttribute("ADMID");
                 admid.setNodeValue(MetsWriter.listToString(this.admid));
@@ -474,6 +529,51 @@ public class StructMap extends IDElement implements ElementInterface {
             }
         }
 
+        @Override
+        public void marshal(XMLStreamWriter w) throws XMLStreamException {
+            super.marshal(w);
+
+            String metsNs = NS.METS.ns();
+
+            if (this.orderlabel != null)
+                w.writeAttribute("ORDERLABEL", this.orderlabel);
+            if (this.order != null)
+                w.writeAttribute("ORDER", this.order.toString());
+            if (this.label != null)
+                w.writeAttribute("LABEL", this.label);
+            if (this.type != null)
+                w.writeAttribute("TYPE", this.type);
+            if (this.xlinkLabel != null)
+                w.writeAttribute("xlink", NS.XLINK.ns(), "label", this.xlinkLabel);
+            if (this.admid != null)
+                w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+            if (this.dmdid != null)
+                w.writeAttribute("DMDID", MetsWriter.listToString(this.dmdid));
+            if (this.contentids != null)
+                w.writeAttribute("CONTENTIDS", MetsWriter.listToString(this.contentids));
+            if (this.mptr != null) {
+                for (Mptr m : this.mptr) {
+                    w.writeStartElement("mets", "mptr", metsNs);
+                    m.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+            if (this.fptr != null) {
+                for (Fptr m : this.fptr) {
+                    w.writeStartElement("mets", "fptr", metsNs);
+                    m.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+            if (this.div != null) {
+                for (Div d : this.div) {
+                    w.writeStartElement("mets", "div", metsNs);
+                    d.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+        }
+
         /**
          * Representation of a <code>mets:fptr</code>.
          * <p>
@@ -621,19 +721,35 @@ public class StructMap extends IDElement implements ElementInterface {
             }
 
             @Override
-            public void unmarshal(Element fptr) {
-                super.unmarshal(fptr);
+            public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                super.marshal(w);
 
-                NamedNodeMap attrs = fptr.getAttributes();
-                for (int i = 0; i < attrs.getLength(); i++) {
-                    Attr attr = (Attr) attrs.item(i);
-                    String name = attr.getName();
-                    String value = attr.getNodeValue();
-                    if (name.equals("FILEID"))
-                        this.fileid = value;
-                    if (name.equals("CONTENTIDS"))
-                        this.contentids = MetsReader.parseIDREFAttr(value);
+                String metsNs = NS.METS.ns();
+
+                if (this.contentids != null)
+                    w.writeAttribute("CONTENTIDS", MetsWriter.listToString(this.contentids));
+                if (this.fileid != null)
+                    w.writeAttribute("FILEID", this.fileid);
+                if (this.par != null) {
+                    w.writeStartElement("mets", "par", metsNs);
+                    this.par.marshal(w);
+                    w.writeEndElement();
+                }
+                if (this.seq != null) {
+                    w.writeStartElement("mets", "seq", metsNs);
+                    this.seq.marshal(w);
+                    w.writeEndElement();
                 }
+                if (this.area != null) {
+                    w.writeStartElement("mets", "area", metsNs);
+                    this.area.marshal(w);
+                    w.writeEndElement();
+                }
+            }
+
+            @Override
+            public void unmarshal(Element fptr) {
+                super.unmarshal(fptr);
 
                 List<Element> children = DOMHelp.getChildElements(fptr);
                 for (Element child : children) {
@@ -653,6 +769,33 @@ public class StructMap extends IDElement implements ElementInterface {
                 }
             }
 
+            @Override
+            protected void unmarshalAttribute(String name, String value) {
+                if (name.equals("FILEID"))
+                    this.fileid = value;
+                else if (name.equals("CONTENTIDS"))
+                    this.contentids = MetsReader.parseIDREFAttr(value);
+                else
+                    super.unmarshalAttribute(name, value);
+            }
+
+            @Override
+            protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+                String localName = r.getLocalName();
+                if (localName.equals("par")) {
+                    this.par = new Par();
+                    this.par.unmarshal(r);
+                } else if (localName.equals("seq")) {
+                    this.seq = new Seq();
+                    this.seq.unmarshal(r);
+                } else if (localName.equals("area")) {
+                    this.area = new Area();
+                    this.area.unmarshal(r);
+                } else {
+                    super.unmarshalChild(r);
+                }
+            }
+
             /**
              * An empty class to help enforce type safety in {@link Par#areaOrSeq} and
              * {@link Seq#areaOrPar}.
@@ -713,6 +856,19 @@ public class StructMap extends IDElement implements ElementInterface {
                     }
                 }
 
+                @Override
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.areaOrSeq != null) {
+                        for (FptrChild f : this.areaOrSeq) {
+                            String cname = f.getClass().getSimpleName();
+                            w.writeStartElement("mets", cname.toLowerCase(), NS.METS.ns());
+                            f.marshal(w);
+                            w.writeEndElement();
+                        }
+                    }
+                }
+
                 @Override
                 public void unmarshal(Element par) {
                     super.unmarshal(par);
@@ -731,6 +887,22 @@ public class StructMap extends IDElement implements ElementInterface {
                         }
                     }
                 }
+
+                @Override
+                protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+                    String localName = r.getLocalName();
+                    if (localName.equals("area")) {
+                        Area area = new Area();
+                        area.unmarshal(r);
+                        this.getAreaOrSeq().add(area);
+                    } else if (localName.equals("seq")) {
+                        Seq seq = new Seq();
+                        seq.unmarshal(r);
+                        this.getAreaOrSeq().add(seq);
+                    } else {
+                        super.unmarshalChild(r);
+                    }
+                }
             }
 
             /**
@@ -779,6 +951,21 @@ public class StructMap extends IDElement implements ElementInterface {
                     }
                 }
 
+                @Override
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    // ID
+                    super.marshal(w);
+                    if (this.areaOrPar != null) {
+                        for (FptrChild f : this.areaOrPar) {
+                            // class and element have the same name.
+                            String cname = f.getClass().getSimpleName();
+                            w.writeStartElement("mets", cname.toLowerCase(), NS.METS.ns());
+                            f.marshal(w);
+                            w.writeEndElement();
+                        }
+                    }
+                }
+
                 @Override
                 public void unmarshal(Element seq) {
                     super.unmarshal(seq);
@@ -797,6 +984,22 @@ public class StructMap extends IDElement implements ElementInterface {
                         }
                     }
                 }
+
+                @Override
+                protected void unmarshalChild(XMLStreamReader r) throws XMLStreamException {
+                    String localName = r.getLocalName();
+                    if (localName.equals("area")) {
+                        Area area = new Area();
+                        area.unmarshal(r);
+                        this.getAreaOrPar().add(area);
+                    } else if (localName.equals("par")) {
+                        Par par = new Par();
+                        par.unmarshal(r);
+                        this.getAreaOrPar().add(par);
+                    } else {
+                        super.unmarshalChild(r);
+                    }
+                }
             }
 
             /**
@@ -1110,35 +1313,54 @@ public class StructMap extends IDElement implements ElementInterface {
                 }
 
                 @Override
-                public void unmarshal(Element area) {
-                    // ID
-                    super.unmarshal(area);
-                    NamedNodeMap attrs = area.getAttributes();
-                    for (int i = 0; i < attrs.getLength(); i++) {
-                        Attr attr = (Attr) attrs.item(i);
-                        String name = attr.getName();
-                        String value = attr.getNodeValue();
-                        if (name.equals("FILEID"))
-                            this.fileid = value;
-                        if (name.equals("EXTENT"))
-                            this.extent = value;
-                        if (name.equals("COORDS"))
-                            this.coords = value;
-                        if (name.equals("BEGIN"))
-                            this.begin = value;
-                        if (name.equals("END"))
-                            this.end = value;
-                        if (name.equals("CONTENTIDS"))
-                            this.contentids = MetsReader.parseIDREFAttr(value);
-                        if (name.equals("ADMID"))
-                            this.admid = MetsReader.parseIDREFAttr(value);
-                        if (name.equals("SHAPE"))
-                            this.shape = SHAPE.fromValue(value);
-                        if (name.equals("BETYPE"))
-                            this.betype = BETYPE.fromValue(value);
-                        if (name.equals("EXTTYPE"))
-                            this.exttype = EXTTYPE.fromValue(value);
-                    }
+                public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                    super.marshal(w);
+                    if (this.fileid != null)
+                        w.writeAttribute("FILEID", this.fileid);
+                    if (this.extent != null)
+                        w.writeAttribute("EXTENT", this.extent);
+                    if (this.coords != null)
+                        w.writeAttribute("COORDS", this.coords);
+                    if (this.begin != null)
+                        w.writeAttribute("BEGIN", this.begin);
+                    if (this.end != null)
+                        w.writeAttribute("END", this.end);
+                    if (this.contentids != null)
+                        w.writeAttribute("CONTENTIDS", MetsWriter.listToString(this.contentids));
+                    if (this.admid != null)
+                        w.writeAttribute("ADMID", MetsWriter.listToString(this.admid));
+                    if (this.shape != null)
+                        w.writeAttribute("SHAPE", this.shape.value());
+                    if (this.betype != null)
+                        w.writeAttribute("BETYPE", this.betype.value());
+                    if (this.exttype != null)
+                        w.writeAttribute("EXTTYPE", this.exttype.value());
+                }
+
+                @Override
+                protected void unmarshalAttribute(String name, String value) {
+                    if (name.equals("FILEID"))
+                        this.fileid = value;
+                    else if (name.equals("EXTENT"))
+                        this.extent = value;
+                    else if (name.equals("COORDS"))
+                        this.coords = value;
+                    else if (name.equals("BEGIN"))
+                        this.begin = value;
+                    else if (name.equals("END"))
+                        this.end = value;
+                    else if (name.equals("CONTENTIDS"))
+                        this.contentids = MetsReader.parseIDREFAttr(value);
+                    else if (name.equals("ADMID"))
+                        this.admid = MetsReader.parseIDREFAttr(value);
+                    else if (name.equals("SHAPE"))
+                        this.shape = SHAPE.fromValue(value);
+                    else if (name.equals("BETYPE"))
+                        this.betype = BETYPE.fromValue(value);
+                    else if (name.equals("EXTTYPE"))
+                        this.exttype = EXTTYPE.fromValue(value);
+                    else
+                        super.unmarshalAttribute(name, value);
                 }
             }
         }
@@ -1200,12 +1422,18 @@ public class StructMap extends IDElement implements ElementInterface {
             }
 
             @Override
-            public void unmarshal(Element e) {
-                super.unmarshal(e);
-                if (e.hasAttribute("CONTENTIDS")) {
-                    String value = e.getAttribute("CONTENTIDS");
+            public void marshal(XMLStreamWriter w) throws XMLStreamException {
+                super.marshal(w);
+                if (this.contentids != null)
+                    w.writeAttribute("CONTENTIDS", MetsWriter.listToString(this.contentids));
+            }
+
+            @Override
+            protected void unmarshalAttribute(String name, String value) {
+                if (name.equals("CONTENTIDS"))
                     this.contentids = MetsReader.parseIDREFAttr(value);
-                }
+                else
+                    super.unmarshalAttribute(name, value);
             }
         }
     }
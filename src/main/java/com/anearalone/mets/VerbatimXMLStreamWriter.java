@@ -0,0 +1,131 @@
+/**
+ * VerbatimXMLStreamWriter.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import com.anearalone.utils.FormattingXMLStreamWriter;
+
+/**
+ * A {@link FormattingXMLStreamWriter} that {@link XmlData#writeTo(javax.xml.stream.XMLStreamWriter)}
+ * copies its bytes to as they are, rather than replaying them as events. Large payloads go straight
+ * to the underlying stream, and from file to file with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)} when the <code>xmlData</code> was read with
+ * {@link MetsStreamReader#readMapped(java.io.File)} and the output is a {@link FileOutputStream}.
+ *
+ * @see MetsStreamWriter#setVerbatimXmlData(boolean)
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+class VerbatimXMLStreamWriter extends FormattingXMLStreamWriter {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    // smaller payloads are decoded and written through the Writer, which saves a flush
+    private static final int DIRECT_THRESHOLD = 64 * 1024;
+    private final OutputStream out;
+    // null unless out is a file
+    private final FileChannel outChannel;
+
+    /**
+     * @param writer
+     *            a UTF-8 Writer on <code>out</code>
+     * @param out
+     * @param indent
+     */
+    VerbatimXMLStreamWriter(Writer writer, OutputStream out, boolean indent) {
+        super(writer, indent);
+        this.out = out;
+        this.outChannel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : null;
+    }
+
+    /**
+     * Writes the content of an <code>xmlData</code>, whose start tag must be the last thing
+     * written.
+     *
+     * @param data
+     * @throws XMLStreamException
+     */
+    void writeVerbatim(XmlData data) throws XMLStreamException {
+        // the bytes rely on namespaces declared on their ancestors in the source
+        Map<String, String> namespaces = data.getNamespaces();
+        for (Map.Entry<String, String> ns : namespaces.entrySet())
+            writeNamespace(ns.getKey(), ns.getValue());
+        if (!namespaces.containsKey(""))
+            writeDefaultNamespace("");
+        ByteBuffer content = data.getContent();
+        if (content.remaining() < DIRECT_THRESHOLD) {
+            writeRaw(UTF8.decode(content).toString());
+            return;
+        }
+        writeRaw("");
+        flush();
+        try {
+            if (outChannel != null && data.getSourceFile() != null)
+                transfer(data, content);
+            else
+                write(content);
+            out.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void transfer(XmlData data, ByteBuffer content) throws IOException {
+        FileInputStream in = new FileInputStream(data.getSourceFile());
+        try {
+            FileChannel source = in.getChannel();
+            long position = data.getSourceOffset();
+            long end = position + content.remaining();
+            while (position < end) {
+                long n = source.transferTo(position, end - position, outChannel);
+                if (n <= 0)
+                    break;
+                position += n;
+            }
+            // whatever transferTo didn't copy is written from the map
+            content.position(content.position() + (int) (position - data.getSourceOffset()));
+        } finally {
+            in.close();
+        }
+        write(content);
+    }
+
+    private void write(ByteBuffer content) throws IOException {
+        if (outChannel != null) {
+            while (content.hasRemaining())
+                outChannel.write(content);
+        } else if (content.hasArray()) {
+            out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+            content.position(content.limit());
+        } else {
+            byte[] chunk = new byte[Math.min(DIRECT_THRESHOLD, content.remaining())];
+            while (content.hasRemaining()) {
+                int len = Math.min(chunk.length, content.remaining());
+                content.get(chunk, 0, len);
+                out.write(chunk, 0, len);
+            }
+        }
+    }
+}
@@ -0,0 +1,567 @@
+/**
+ * XmlData.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.mets;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.anearalone.utils.ByteBufferInputStream;
+import com.anearalone.utils.DOMHelp;
+import com.anearalone.utils.FormattingXMLStreamWriter;
+import com.anearalone.utils.StAXHelp;
+
+/**
+ * The child elements of a <code>mets:xmlData</code> as they were read, held as UTF-8 bytes rather
+ * than as DOM nodes, so that a {@link Mets} doesn't keep the source document (or a DOM per
+ * <code>xmlData</code>) alive. The bytes are only parsed when the elements are asked for, and are
+ * written out without building a DOM at all by {@link MetsStreamWriter} (or, with
+ * {@link MetsStreamWriter#setVerbatimXmlData(boolean)}, without even being parsed).
+ * <p>
+ * Documents read with {@link MetsStreamReader#readMapped(java.io.File)} aren't copied at all: their
+ * <code>xmlData</code> is kept as the range of the memory-mapped file between the
+ * <code>xmlData</code> tags.
+ * <p>
+ * Namespaces that the elements use but that were declared on their ancestors (usually
+ * <code>mets:mets</code>) are kept alongside the bytes, so that the elements come back exactly as
+ * they were read: with the same names, and with namespace declarations only where the source had
+ * them.
+ * <p>
+ * Instances are immutable, and so may be shared between threads (though a mapped file must not
+ * change while they are in use).
+ *
+ * @see MdSec.MdWrap#getXmlData()
+ * @see FileSec.FileGrp.File.FContent#getXmlData()
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public final class XmlData {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+    private static final XMLInputFactory inputFactory;
+    static {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        if (inputFactory.isPropertySupported(REPORT_CDATA))
+            inputFactory.setProperty(REPORT_CDATA, Boolean.TRUE);
+    }
+
+    // serialized elements, or the source's own bytes from between the xmlData tags
+    private final ByteBuffer content;
+    // prefix -> URI of the namespaces inherited from outside of the elements
+    private final Map<String, String> namespaces;
+    // the mapped file that content is a range of, if it is
+    private final File sourceFile;
+    private final long sourceOffset;
+
+    private XmlData(ByteBuffer content, Map<String, String> namespaces) {
+        this(content, namespaces, null, 0);
+    }
+
+    private XmlData(ByteBuffer content, Map<String, String> namespaces, File sourceFile, long sourceOffset) {
+        this.content = content;
+        this.namespaces = namespaces;
+        this.sourceFile = sourceFile;
+        this.sourceOffset = sourceOffset;
+    }
+
+    /**
+     * Reads the children of a <code>mets:xmlData</code>.
+     *
+     * @param r
+     *            positioned on the <code>mets:xmlData</code> <code>START_ELEMENT</code>; left on
+     *            its <code>END_ELEMENT</code>
+     * @return null if the <code>mets:xmlData</code> has no child elements
+     * @throws XMLStreamException
+     */
+    static XmlData read(XMLStreamReader r) throws XMLStreamException {
+        if (r instanceof MappedReader && ((MappedReader) r).atRangeStart())
+            return ((MappedReader) r).readRange();
+        InheritedNamespaces inherited = new InheritedNamespaces(r);
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        XMLStreamWriter w = newFragmentWriter(buf, new FixedNamespaceContext(inherited.namespaces));
+        boolean empty = true;
+        while (StAXHelp.nextChildElement(inherited)) {
+            StAXHelp.copyElement(inherited, w);
+            empty = false;
+        }
+        w.close();
+        return empty ? null : new XmlData(ByteBuffer.wrap(buf.toByteArray()), inherited.namespaces);
+    }
+
+    /**
+     * Serializes the child elements of a <code>mets:xmlData</code> from a DOM.
+     *
+     * @param xmlData
+     *            a <code>mets:xmlData</code> element
+     * @return null if <code>xmlData</code> has no child elements
+     */
+    static XmlData read(final Element xmlData) {
+        List<Element> children = DOMHelp.getChildElements(xmlData);
+        if (children.isEmpty())
+            return null;
+        final Map<String, String> namespaces = new LinkedHashMap<String, String>();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+            XMLStreamWriter w = newFragmentWriter(buf, new FixedNamespaceContext(namespaces) {
+                @Override
+                public String getNamespaceURI(String prefix) {
+                    String uri = xmlData.lookupNamespaceURI(prefix.length() == 0 ? null : prefix);
+                    if (uri != null)
+                        namespaces.put(prefix, uri);
+                    return uri;
+                }
+            });
+            for (Element e : children)
+                StAXHelp.writeNode(w, e);
+            w.close();
+        } catch (XMLStreamException e) {
+            // can't happen: there's no I/O, and the DOM is well-formed
+            throw new IllegalStateException(e);
+        }
+        return new XmlData(ByteBuffer.wrap(buf.toByteArray()), namespaces);
+    }
+
+    /**
+     * @return the elements, parsed into a new {@link Document} of their own
+     */
+    public List<Element> toElements() {
+        Document doc = MetsIO.newDocument();
+        List<Element> elements = new ArrayList<Element>();
+        XMLStreamReader r = parse();
+        try {
+            while (StAXHelp.nextChildElement(r))
+                elements.add(StAXHelp.readElement(r, doc));
+            r.close();
+        } catch (XMLStreamException e) {
+            throw unparseable(e);
+        }
+        return elements;
+    }
+
+    /**
+     * Parses the elements into <code>xmlData</code>'s document and appends them to it.
+     *
+     * @param xmlData
+     */
+    public void appendTo(Element xmlData) {
+        Document doc = xmlData.getOwnerDocument();
+        XMLStreamReader r = parse();
+        try {
+            while (StAXHelp.nextChildElement(r))
+                xmlData.appendChild(StAXHelp.readElement(r, doc));
+            r.close();
+        } catch (XMLStreamException e) {
+            throw unparseable(e);
+        }
+    }
+
+    /**
+     * Writes the elements to <code>w</code>, as {@link StAXHelp#writeNode(XMLStreamWriter, org.w3c.dom.Node)}
+     * would write the result of {@link #toElements()}. If <code>w</code> is writing
+     * <code>xmlData</code> verbatim (see {@link MetsStreamWriter#setVerbatimXmlData(boolean)}), the
+     * stored bytes are copied to it instead.
+     *
+     * @param w
+     * @throws XMLStreamException
+     *             if <code>w</code> does
+     */
+    public void writeTo(XMLStreamWriter w) throws XMLStreamException {
+        if (w instanceof VerbatimXMLStreamWriter) {
+            ((VerbatimXMLStreamWriter) w).writeVerbatim(this);
+            return;
+        }
+        XMLStreamReader r = parse();
+        try {
+            while (StAXHelp.nextChildElement(r))
+                StAXHelp.copyElement(r, w);
+        } finally {
+            r.close();
+        }
+    }
+
+    /**
+     * @return the size of the stored elements, in bytes
+     */
+    public int getLength() {
+        return content.remaining();
+    }
+
+    /*
+     * For VerbatimXMLStreamWriter
+     */
+    ByteBuffer getContent() {
+        return content.duplicate();
+    }
+
+    Map<String, String> getNamespaces() {
+        return Collections.unmodifiableMap(namespaces);
+    }
+
+    File getSourceFile() {
+        return sourceFile;
+    }
+
+    long getSourceOffset() {
+        return sourceOffset;
+    }
+
+    /*
+     * Reads the bytes inside of an element declaring the inherited namespaces, leaving the reader
+     * on that element.
+     */
+    private XMLStreamReader parse() {
+        StringBuilder wrapper = new StringBuilder("<xmlData");
+        for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+            wrapper.append(ns.getKey().length() == 0 ? " xmlns" : " xmlns:" + ns.getKey());
+            wrapper.append("=\"").append(escape(ns.getValue())).append('"');
+        }
+        wrapper.append('>');
+        InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(wrapper.toString().getBytes(UTF8)),
+                new ByteBufferInputStream(content),
+                new ByteArrayInputStream("</xmlData>".getBytes(UTF8)))));
+        try {
+            XMLStreamReader r;
+            // factories aren't guaranteed to be thread-safe
+            synchronized (inputFactory) {
+                r = inputFactory.createXMLStreamReader(in, "UTF-8");
+            }
+            while (r.getEventType() != XMLStreamConstants.START_ELEMENT)
+                r.next();
+            return r;
+        } catch (XMLStreamException e) {
+            throw unparseable(e);
+        }
+    }
+
+    private static XMLStreamWriter newFragmentWriter(ByteArrayOutputStream buf, NamespaceContext inherited)
+            throws XMLStreamException {
+        FormattingXMLStreamWriter w = new FormattingXMLStreamWriter(new OutputStreamWriter(buf, UTF8), false);
+        w.setNamespaceContext(inherited);
+        w.setPreserveCData(true);
+        return w;
+    }
+
+    private static String escape(String uri) {
+        return uri.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;");
+    }
+
+    private static IllegalStateException unparseable(XMLStreamException e) {
+        // can't happen: the bytes were written by us from well-formed XML
+        return new IllegalStateException("Stored xmlData could not be parsed", e);
+    }
+
+    /*
+     * A context that answers from a map.
+     */
+    private static class FixedNamespaceContext implements NamespaceContext {
+        private final Map<String, String> namespaces;
+
+        FixedNamespaceContext(Map<String, String> namespaces) {
+            this.namespaces = namespaces;
+        }
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            return namespaces.get(prefix);
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            for (Map.Entry<String, String> ns : namespaces.entrySet()) {
+                if (ns.getValue().equals(namespaceURI))
+                    return ns.getKey();
+            }
+            return null;
+        }
+
+        @Override
+        public Iterator<String> getPrefixes(String namespaceURI) {
+            String prefix = getPrefix(namespaceURI);
+            if (prefix == null)
+                return Collections.<String> emptyList().iterator();
+            return Collections.singletonList(prefix).iterator();
+        }
+    }
+
+    /*
+     * Notes, as the reader reaches each element, the bindings of prefixes used by the element and
+     * its attributes that weren't declared within the xmlData. This has to happen as each element
+     * is reached, rather than when the writer asks, as by then the reader may have moved on to a
+     * child that redeclares the prefix.
+     */
+    private static class InheritedNamespaces extends StreamReaderDelegate {
+        final Map<String, String> namespaces = new LinkedHashMap<String, String>();
+        private final List<String> declared = new ArrayList<String>();
+        private final List<Integer> declaredCounts = new ArrayList<Integer>();
+
+        InheritedNamespaces(XMLStreamReader r) {
+            super(r);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (event == START_ELEMENT) {
+                int count = getNamespaceCount();
+                for (int i = 0; i < count; i++)
+                    declared.add(getNamespacePrefix(i) == null ? "" : getNamespacePrefix(i));
+                declaredCounts.add(count);
+                note(getPrefix(), getNamespaceURI());
+                for (int i = 0; i < getAttributeCount(); i++) {
+                    String uri = getAttributeNamespace(i);
+                    if (uri != null && uri.length() > 0)
+                        note(getAttributePrefix(i), uri);
+                }
+            } else if (event == END_ELEMENT && !declaredCounts.isEmpty()) {
+                int count = declaredCounts.remove(declaredCounts.size() - 1);
+                for (int i = 0; i < count; i++)
+                    declared.remove(declared.size() - 1);
+            }
+            return event;
+        }
+
+        private void note(String prefix, String uri) {
+            if (prefix == null)
+                prefix = "";
+            if (prefix.equals(XMLConstants.XML_NS_PREFIX) || uri == null || uri.length() == 0 || declared.contains(prefix) || namespaces.containsKey(prefix))
+                return;
+            namespaces.put(prefix, uri);
+        }
+    }
+
+    /*
+     * Reads a memory-mapped document, recording each xmlData as the range of the map between its
+     * tags rather than copying it (see MetsStreamReader#readMapped). The ranges are reparsed on
+     * their own, so this is only for UTF-8 documents without a DTD.
+     */
+    static final class MappedReader extends StreamReaderDelegate {
+        private final ByteBuffer source;
+        private final File sourceFile;
+        // where the last position was found. The parser's character offsets can't be relied upon
+        // (the JDK's drift once its buffer has been refilled), but its lines and columns can, and
+        // every position found is checked against the source anyway.
+        private int line = 1;
+        private int column = 1;
+        private int loneCRs;
+        private int bytePos;
+        private int rangeStart;
+
+        MappedReader(XMLStreamReader r, ByteBuffer source, File sourceFile) {
+            super(r);
+            this.source = source;
+            this.sourceFile = sourceFile;
+        }
+
+        /*
+         * Whether the reader, on a START_ELEMENT, can say where in the source the element's
+         * content begins. If not, the content has to be copied.
+         */
+        boolean atRangeStart() {
+            rangeStart = toBytePos(getLocation());
+            if (rangeStart <= 0 || source.get(rangeStart - 1) != '>')
+                return false;
+            // back to the '<', which can't appear in attribute values
+            int tagStart = rangeStart - 1;
+            while (tagStart > 0 && source.get(tagStart) != '<')
+                tagStart--;
+            return nameAt(tagStart + 1, qName());
+        }
+
+        /*
+         * Skips to the END_ELEMENT, noting the namespaces the children inherit, and returns the
+         * range in between, or null if there are no children. The end tag is found by hand rather
+         * than from the parser's position, so that a position that can't be trusted only ever
+         * costs a copy (in read()), and never an error.
+         */
+        XmlData readRange() throws XMLStreamException {
+            String qName = qName();
+            if (source.get(rangeStart - 2) == '/') {
+                // <xmlData/>
+                StAXHelp.skipElement(this);
+                return null;
+            }
+            InheritedNamespaces inherited = new InheritedNamespaces(this);
+            boolean empty = true;
+            while (StAXHelp.nextChildElement(inherited)) {
+                StAXHelp.skipElement(inherited);
+                empty = false;
+            }
+            int endTag = findEndTag(rangeStart);
+            if (endTag < 0 || !nameAt(endTag + 2, qName))
+                throw new XMLStreamException("Could not find the end of the xmlData in the source",
+                        getLocation());
+            if (empty)
+                return null;
+            ByteBuffer content = source.duplicate();
+            content.limit(endTag).position(rangeStart);
+            return new XmlData(content.slice(), inherited.namespaces, sourceFile, rangeStart);
+        }
+
+        private String qName() {
+            String prefix = getPrefix();
+            return prefix == null || prefix.length() == 0 ? getLocalName() : prefix + ":" + getLocalName();
+        }
+
+        /*
+         * Whether qName (which is ASCII) is at pos, followed by whitespace, '/' or '>'
+         */
+        private boolean nameAt(int pos, String qName) {
+            if (pos + qName.length() >= source.limit())
+                return false;
+            for (int i = 0; i < qName.length(); i++) {
+                if (source.get(pos + i) != qName.charAt(i))
+                    return false;
+            }
+            byte after = source.get(pos + qName.length());
+            return after == '>' || after == '/' || after == ' ' || after == '\t' || after == '\n'
+                    || after == '\r';
+        }
+
+        /*
+         * Returns the position of the "</" that closes the element whose content starts at pos,
+         * or -1
+         */
+        private int findEndTag(int pos) {
+            int limit = source.limit();
+            int depth = 0;
+            while ((pos = indexOf('<', pos)) >= 0 && pos + 1 < limit) {
+                byte next = source.get(pos + 1);
+                if (next == '/') {
+                    if (depth == 0)
+                        return pos;
+                    depth--;
+                    pos = indexOf('>', pos);
+                } else if (next == '?')
+                    pos = indexOf("?>", pos + 2);
+                else if (next == '!') {
+                    if (pos + 3 < limit && source.get(pos + 2) == '-' && source.get(pos + 3) == '-')
+                        pos = indexOf("-->", pos + 4);
+                    else
+                        pos = indexOf("]]>", pos + 2);
+                } else {
+                    // a start tag; attribute values may contain '>'
+                    byte quote = 0;
+                    byte prev = 0;
+                    for (pos++; pos < limit; pos++) {
+                        byte b = source.get(pos);
+                        if (quote != 0) {
+                            if (b == quote)
+                                quote = 0;
+                        } else if (b == '"' || b == '\'')
+                            quote = b;
+                        else if (b == '>')
+                            break;
+                        prev = b;
+                    }
+                    if (pos < limit && prev != '/')
+                        depth++;
+                }
+                if (pos < 0)
+                    return -1;
+            }
+            return -1;
+        }
+
+        private int indexOf(char c, int from) {
+            for (int i = from; i < source.limit(); i++) {
+                if (source.get(i) == c)
+                    return i;
+            }
+            return -1;
+        }
+
+        private int indexOf(String s, int from) {
+            int last = source.limit() - s.length();
+            outer: for (int i = from; i <= last; i++) {
+                for (int j = 0; j < s.length(); j++) {
+                    if (source.get(i + j) != s.charAt(j))
+                        continue outer;
+                }
+                return i;
+            }
+            return -1;
+        }
+
+        /*
+         * Positions only ever move forward, so this walks the UTF-8 from where it last left off.
+         * Columns count UTF-16 chars.
+         */
+        private int toBytePos(Location location) {
+            int toLine = location.getLineNumber();
+            int toColumn = location.getColumnNumber();
+            if (toLine < line || (toLine == line && toColumn < column))
+                return -1;
+            int limit = source.limit();
+            while (line < toLine && bytePos < limit) {
+                byte b = source.get(bytePos++);
+                if (b == '\n' || b == '\r') {
+                    if (b == '\r' && bytePos < limit && source.get(bytePos) == '\n')
+                        bytePos++;
+                    else if (b == '\r')
+                        loneCRs++;
+                    line++;
+                    // as the JDK's parser counts: one less for each lone \r in a row
+                    column = 1 - loneCRs;
+                } else
+                    loneCRs = 0;
+            }
+            while (line == toLine && column < toColumn && bytePos < limit) {
+                loneCRs = 0;
+                int b = source.get(bytePos) & 0xFF;
+                if (b < 0x80) {
+                    bytePos++;
+                    column++;
+                } else if (b >= 0xF0) {
+                    // a supplementary character, i.e. a surrogate pair
+                    bytePos += 4;
+                    column += 2;
+                } else {
+                    bytePos += b >= 0xE0 ? 3 : 2;
+                    column++;
+                }
+            }
+            return line == toLine && column == toColumn ? bytePos : -1;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Base64DecodingWriter.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.utils;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Decodes Base64 (RFC 4648) as it is written, writing the bytes to an {@link OutputStream}. The
+ * chars may be written in pieces of any size; whitespace, as allowed in
+ * <code>xsd:base64Binary</code>, is ignored.
+ *
+ * @see Base64EncodingReader
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class Base64DecodingWriter extends Writer {
+    private static final int[] VALUES = new int[128];
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < Base64EncodingReader.ALPHABET.length; i++)
+            VALUES[Base64EncodingReader.ALPHABET[i]] = i;
+    }
+    private final OutputStream out;
+    private final byte[] buf = new byte[8192];
+    private int bufLen;
+    // the bits of the current group, and how many chars they came from
+    private int group;
+    private int count;
+    private boolean padded;
+    private boolean morePadding;
+    private long length;
+
+    public Base64DecodingWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            char c = cbuf[i];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                continue;
+            if (c == '=') {
+                if (morePadding)
+                    morePadding = false;
+                else if (padded || count < 2)
+                    throw invalid("Unexpected '='");
+                else if (count == 2) {
+                    put(group >> 4);
+                    morePadding = true;
+                } else {
+                    put(group >> 10);
+                    put(group >> 2);
+                }
+                padded = true;
+                count = 0;
+                continue;
+            }
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0)
+                throw invalid("Invalid character '" + c + "'");
+            if (padded)
+                throw invalid("Data after padding");
+            group = (group << 6) | value;
+            if (++count == 4) {
+                put(group >> 16);
+                put(group >> 8);
+                put(group);
+                group = 0;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Writes any decoded bytes that are buffered, and flushes the stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (bufLen > 0) {
+            out.write(buf, 0, bufLen);
+            bufLen = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * Flushes and closes the stream.
+     *
+     * @throws CharConversionException
+     *             if the input ended part-way through a group
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (count != 0 || morePadding)
+                throw invalid("Truncated input");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the number of bytes decoded so far
+     */
+    public long getLength() {
+        return length;
+    }
+
+    private void put(int b) throws IOException {
+        if (bufLen == buf.length) {
+            out.write(buf, 0, bufLen);
+            bufLen = 0;
+        }
+        buf[bufLen++] = (byte) b;
+        length++;
+    }
+
+    private static CharConversionException invalid(String message) {
+        return new CharConversionException(message + " in Base64");
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Base64EncodingReader.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads the Base64 encoding (RFC 4648, without line breaks) of a stream of bytes, a buffer at a
+ * time, so that the bytes never have to be held in memory all at once.
+ *
+ * @see Base64DecodingWriter
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class Base64EncodingReader extends Reader {
+    static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .toCharArray();
+    private final ReadableByteChannel in;
+    // unencoded bytes, ready to be read from (i.e. flipped)
+    private final ByteBuffer bytes = ByteBuffer.allocate(3 * 4096);
+    private boolean eof;
+    // the encoding of the last group, when it didn't fit in the caller's buffer
+    private final char[] pending = new char[4];
+    private int pendingPos;
+    private int pendingLen;
+
+    public Base64EncodingReader(ReadableByteChannel in) {
+        this.in = in;
+        this.bytes.flip();
+    }
+
+    public Base64EncodingReader(InputStream in) {
+        this(Channels.newChannel(in));
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            if (pendingPos < pendingLen) {
+                cbuf[off + n++] = pending[pendingPos++];
+                continue;
+            }
+            if (!fill())
+                break;
+            int groups = Math.min(bytes.remaining() / 3, (len - n) / 4);
+            if (groups > 0) {
+                for (int i = 0; i < groups; i++) {
+                    encode(cbuf, off + n);
+                    n += 4;
+                }
+            } else {
+                encode(pending, 0);
+                pendingPos = 0;
+                pendingLen = 4;
+            }
+        }
+        return n == 0 && len > 0 ? -1 : n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /*
+     * Makes sure there's a whole group to encode, unless the input has run out. Returns false if
+     * there's nothing left at all.
+     */
+    private boolean fill() throws IOException {
+        while (bytes.remaining() < 3 && !eof) {
+            bytes.compact();
+            while (bytes.hasRemaining()) {
+                if (in.read(bytes) < 0) {
+                    eof = true;
+                    break;
+                }
+            }
+            bytes.flip();
+        }
+        return bytes.hasRemaining();
+    }
+
+    /*
+     * Encodes the next group of three bytes (or fewer, padded, at the end) as four chars
+     */
+    private void encode(char[] out, int off) {
+        int remaining = bytes.remaining();
+        int b0 = bytes.get() & 0xFF;
+        int b1 = remaining > 1 ? bytes.get() & 0xFF : 0;
+        int b2 = remaining > 2 ? bytes.get() & 0xFF : 0;
+        out[off] = ALPHABET[b0 >> 2];
+        out[off + 1] = ALPHABET[((b0 & 0x03) << 4) | (b1 >> 4)];
+        out[off + 2] = remaining > 1 ? ALPHABET[((b1 & 0x0F) << 2) | (b2 >> 6)] : '=';
+        out[off + 3] = remaining > 2 ? ALPHABET[b2 & 0x3F] : '=';
+    }
+}
@@ -9,6 +9,7 @@ package com.anearalone.utils;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -19,6 +20,9 @@ import org.w3c.dom.NodeList;
  * 
  */
 public class DOMHelp {
+
+	private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
 	/**
 	 * Gets the first element child of the provided Element. Returns null if the
 	 * element has no child elements. Equiv. to XPath
@@ -59,6 +63,19 @@ public class DOMHelp {
 		}
 		return childElements;
 	}
-	
-	
+
+	/**
+	 * Gets the name of an attribute as the METS classes expect to see it:
+	 * XLink attributes are always reported as <code>xlink:</code> + local
+	 * name, regardless of the prefix used in the document. Everything else is
+	 * reported by its qualified name.
+	 * 
+	 * @param attr
+	 * @return
+	 */
+	public static String getAttributeName(Attr attr) {
+		if (XLINK_NS.equals(attr.getNamespaceURI()))
+			return "xlink:" + attr.getLocalName();
+		return attr.getName();
+	}
 }
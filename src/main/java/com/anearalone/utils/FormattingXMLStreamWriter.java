@@ -0,0 +1,911 @@
+/**
+ * FormattingXMLStreamWriter.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * An {@link XMLStreamWriter} that writes exactly what the JDK's identity
+ * {@link javax.xml.transform.Transformer} writes for the equivalent DOM, so that documents
+ * streamed through it are byte-for-byte the same as those written via a DOM. In particular:
+ * <ul>
+ * <li>attributes are written sorted by qualified name, as a DOM keeps them, with explicit
+ * namespace declarations first;</li>
+ * <li>namespaces used by elements and attributes but not in scope are declared automatically
+ * (after the attributes), and redundant declarations are dropped;</li>
+ * <li>characters are escaped as the Transformer escapes them (e.g. <code>&gt;</code> and
+ * <code>&amp;#13;</code> in text, <code>&amp;#10;</code> in attributes, supplementary characters as
+ * character references);</li>
+ * <li>when indenting, whitespace is added by the same rules as
+ * <code>OutputKeys.INDENT="yes"</code> with the default indent of 4, including the treatment of
+ * text and <code>xml:space</code>.</li>
+ * </ul>
+ * Output is assumed to be encoded as UTF-8 (or another encoding of all of Unicode) by the
+ * underlying {@link Writer}. {@link #close()} does not close the Writer.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class FormattingXMLStreamWriter implements XMLStreamWriter {
+
+    private static final int INDENT_AMOUNT = 4;
+    private static final String SPACES = "                                ";
+    private static final String CDATA_OPEN = "<![CDATA[";
+    private static final String CDATA_CLOSE = "]]>";
+    private static final String CDATA_CONTINUE = "]]]]><![CDATA[>";
+
+    private static final Comparator<String[]> BY_NAME = new Comparator<String[]>() {
+        @Override
+        public int compare(String[] a, String[] b) {
+            return a[0].compareTo(b[0]);
+        }
+    };
+
+    private final Writer out;
+    private final boolean indent;
+    private final String lineSep;
+
+    // element context
+    private int depth;
+    private final Deque<String> elementNames = new ArrayDeque<String>();
+
+    // the start tag being written; name/value pairs
+    private boolean startTagOpen;
+    private boolean emptyElement;
+    private String elementPrefix;
+    private String elementURI;
+    private final List<String[]> pendingNamespaces = new ArrayList<String[]>();
+    private final List<String[]> pendingAttributes = new ArrayList<String[]>();
+
+    // formatting state
+    private boolean startNewLine;
+    private boolean isPrevText;
+    private boolean preserveSpace;
+    private boolean cdataOpen;
+    private int childNodeNum;
+    private final Deque<Integer> childNodeNums = new ArrayDeque<Integer>();
+    private final Deque<Boolean> preserveSpaces = new ArrayDeque<Boolean>();
+    private final List<String> bufferedText = new ArrayList<String>();
+
+    // namespaces in scope: prefix -> stack of URIs, and what was declared at which depth
+    private final Map<String, Deque<String>> namespaces = new HashMap<String, Deque<String>>();
+    private final Deque<String> declaredPrefixes = new ArrayDeque<String>();
+    private final Deque<Integer> declaredDepths = new ArrayDeque<Integer>();
+    private final Map<String, String> boundPrefixes = new HashMap<String, String>();
+    private NamespaceContext rootContext;
+    private boolean preserveCData;
+    private long elementCount;
+
+    /**
+     * @param out
+     *            where to write
+     * @param indent
+     *            whether to add whitespace as <code>OutputKeys.INDENT="yes"</code> would
+     */
+    public FormattingXMLStreamWriter(Writer out, boolean indent) {
+        this.out = out;
+        this.indent = indent;
+        this.lineSep = System.getProperty("line.separator");
+        push("", "", 0);
+        push(XMLConstants.XML_NS_PREFIX, XMLConstants.XML_NS_URI, 0);
+        // the initial mappings are never popped
+        declaredPrefixes.clear();
+        declaredDepths.clear();
+    }
+
+    /**
+     * Writes the XML declaration with a <code>standalone</code> pseudo-attribute, as the
+     * Transformer does for a DOM Document.
+     *
+     * @param encoding
+     * @param version
+     * @param standalone
+     * @throws XMLStreamException
+     */
+    public void writeStartDocument(String encoding, String version, boolean standalone)
+            throws XMLStreamException {
+        writeXMLDeclaration(encoding, version, standalone ? "yes" : "no");
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        writeXMLDeclaration("UTF-8", "1.0", null);
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        writeXMLDeclaration("UTF-8", version, null);
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) throws XMLStreamException {
+        writeXMLDeclaration(encoding, version, null);
+    }
+
+    private void writeXMLDeclaration(String encoding, String version, String standalone)
+            throws XMLStreamException {
+        write("<?xml version=\"");
+        write(version == null ? "1.0" : version);
+        write("\" encoding=\"");
+        write(encoding == null ? "UTF-8" : encoding);
+        write('"');
+        if (standalone != null) {
+            write(" standalone=\"");
+            write(standalone);
+            write('"');
+        }
+        write("?>");
+        if (indent && standalone != null)
+            write(lineSep);
+        startNewLine = false;
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        writeStartElement("", localName, "");
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        String prefix = getPrefix(namespaceURI);
+        if (prefix == null)
+            throw new XMLStreamException("No prefix bound to " + namespaceURI);
+        writeStartElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        endEmptyElement();
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+        if (cdataOpen)
+            closeCDATA();
+        if (startTagOpen)
+            closeStartTag();
+        if (shouldIndent() && startNewLine)
+            indent(depth);
+        startNewLine = true;
+
+        String qname = qName(prefix, localName);
+        write('<');
+        write(qname);
+
+        if (indent) {
+            preserveSpace = preserveSpaces.isEmpty() ? false : preserveSpaces.peek();
+            preserveSpaces.push(preserveSpace);
+            childNodeNums.push(childNodeNum);
+            childNodeNum = 0;
+        }
+        depth++;
+        elementCount++;
+        elementNames.push(qname);
+        elementPrefix = prefix == null ? "" : prefix;
+        elementURI = namespaceURI == null ? "" : namespaceURI;
+        startTagOpen = true;
+        isPrevText = false;
+    }
+
+    /**
+     * @return the number of elements started (or written empty) so far, not counting any written
+     *         with {@link #writeRaw(String)}
+     */
+    public long getElementCount() {
+        return elementCount;
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeStartElement(localName);
+        emptyElement = true;
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeStartElement(namespaceURI, localName);
+        emptyElement = true;
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI)
+            throws XMLStreamException {
+        writeStartElement(prefix, localName, namespaceURI);
+        emptyElement = true;
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        writeAttribute("", "", localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        String prefix = getPrefix(namespaceURI);
+        writeAttribute(prefix == null ? "" : prefix, namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        if (!startTagOpen)
+            throw new XMLStreamException("Attribute " + localName + " written outside of a start tag");
+        String qname = qName(prefix, localName);
+        put(pendingAttributes, new String[] { qname, value, prefix == null ? "" : prefix,
+                namespaceURI == null ? "" : namespaceURI, localName });
+        if (indent && qname.equals("xml:space")) {
+            if (value.equals("preserve"))
+                preserveSpace = true;
+            else if (value.equals("default"))
+                preserveSpace = false;
+            else
+                return;
+            preserveSpaces.pop();
+            preserveSpaces.push(preserveSpace);
+        }
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) throws XMLStreamException {
+        if (prefix == null || prefix.length() == 0 || prefix.equals(XMLConstants.XMLNS_ATTRIBUTE)) {
+            writeDefaultNamespace(namespaceURI);
+            return;
+        }
+        if (!startTagOpen)
+            throw new XMLStreamException("Namespace " + prefix + " written outside of a start tag");
+        put(pendingNamespaces, new String[] { "xmlns:" + prefix, namespaceURI, prefix });
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) throws XMLStreamException {
+        if (!startTagOpen)
+            throw new XMLStreamException("Namespace written outside of a start tag");
+        put(pendingNamespaces, new String[] { "xmlns", namespaceURI, "" });
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        endEmptyElement();
+        if (depth == 0)
+            throw new XMLStreamException("No element to end");
+        if (indent)
+            flushText(false);
+        if (startTagOpen) {
+            List<String[]> attributes = resolveAttributes();
+            popNamespaces();
+            writeAttributes(attributes);
+            write("/>");
+            startTagOpen = false;
+        } else {
+            popNamespaces();
+            if (cdataOpen)
+                closeCDATA();
+            if (shouldIndent() && (childNodeNum > 1 || !isPrevText))
+                indent(depth - 1);
+            write("</");
+            write(elementNames.peek());
+            write('>');
+        }
+        if (indent) {
+            preserveSpaces.pop();
+            preserveSpace = preserveSpaces.isEmpty() ? false : preserveSpaces.peek();
+            childNodeNum = childNodeNums.pop();
+            isPrevText = false;
+        }
+        elementNames.pop();
+        depth--;
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        endEmptyElement();
+        while (depth > 0)
+            writeEndElement();
+        if (indent)
+            flushText(false);
+        if (indent && !isPrevText)
+            write(lineSep);
+        flush();
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        endEmptyElement();
+        if (text.length() == 0)
+            return;
+        boolean format = shouldFormat();
+        if (startTagOpen)
+            closeStartTag();
+        if (cdataOpen)
+            closeCDATA();
+        if (format)
+            bufferedText.add(text);
+        else
+            writeText(text, 0);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    /**
+     * Writes <code>text</code> as it is, without escaping, e.g. markup that has already been
+     * serialized. Any start tag is closed first. For indenting, it is treated as text, so nothing
+     * is added around it.
+     *
+     * @param text
+     * @throws XMLStreamException
+     */
+    public void writeRaw(String text) throws XMLStreamException {
+        endEmptyElement();
+        if (indent)
+            flushText(true);
+        if (startTagOpen)
+            closeStartTag();
+        if (cdataOpen)
+            closeCDATA();
+        write(text);
+        isPrevText = true;
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        endEmptyElement();
+        if (indent)
+            flushText(true);
+        if (data.length() == 0)
+            return;
+        if (startTagOpen)
+            closeStartTag();
+        if (!cdataOpen && shouldIndentText())
+            indent(depth);
+        boolean brackets = preserveCData || isRaw(data.charAt(0));
+        if (brackets && !cdataOpen) {
+            write(CDATA_OPEN);
+            cdataOpen = true;
+        }
+        int end = data.length();
+        for (int i = 0; i < end; i++) {
+            char c = data.charAt(i);
+            if (c == '\n')
+                write(lineSep);
+            else if (!isRaw(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(data.charAt(i + 1))) {
+                    write(data, i, 2);
+                    i++;
+                } else if (Character.isSurrogate(c))
+                    throw new XMLStreamException("Invalid UTF-16 surrogate in CDATA");
+                else
+                    writeCharRef(c);
+            } else if (c == ']' && i < end - 2 && data.charAt(i + 1) == ']'
+                    && data.charAt(i + 2) == '>') {
+                write(CDATA_CONTINUE);
+                i += 2;
+            } else {
+                if (!cdataOpen) {
+                    write(CDATA_OPEN);
+                    cdataOpen = true;
+                }
+                write(c);
+            }
+        }
+        if (brackets && data.charAt(end - 1) == ']')
+            closeCDATA();
+        isPrevText = true;
+        if (cdataOpen)
+            closeCDATA();
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        endEmptyElement();
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+        if (startTagOpen)
+            closeStartTag();
+        if (cdataOpen)
+            closeCDATA();
+        if (shouldIndent())
+            indent(depth);
+        write("<!--");
+        // "--" isn't allowed in comments
+        int start = 0;
+        boolean wasDash = false;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (wasDash && c == '-') {
+                write(data, start, i - start);
+                write(" -");
+                start = i + 1;
+            }
+            wasDash = c == '-';
+        }
+        if (data.length() > 0) {
+            write(data, start, data.length() - start);
+            if (data.charAt(data.length() - 1) == '-')
+                write(' ');
+        }
+        write("-->");
+        startNewLine = true;
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) throws XMLStreamException {
+        writeProcessingInstruction(target, "");
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) throws XMLStreamException {
+        endEmptyElement();
+        if (data == null)
+            data = "";
+        if (indent) {
+            childNodeNum++;
+            flushText(false);
+        }
+        if (startTagOpen)
+            closeStartTag();
+        if (cdataOpen)
+            closeCDATA();
+        if (shouldIndent())
+            indent(depth);
+        write("<?");
+        write(target);
+        if (data.length() > 0 && !Character.isSpaceChar(data.charAt(0)))
+            write(' ');
+        int qlt = data.indexOf("?>");
+        if (qlt >= 0) {
+            write(data.substring(0, qlt));
+            write("? >");
+            write(data.substring(qlt + 2));
+        } else
+            write(data);
+        write("?>");
+        startNewLine = true;
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        write(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        endEmptyElement();
+        if (startTagOpen)
+            closeStartTag();
+        if (indent)
+            flushText(true);
+        if (cdataOpen)
+            closeCDATA();
+        write('&');
+        write(name);
+        write(';');
+        isPrevText = true;
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        for (Map.Entry<String, Deque<String>> e : namespaces.entrySet()) {
+            if (!e.getValue().isEmpty() && e.getValue().peek().equals(uri))
+                return e.getKey();
+        }
+        return boundPrefixes.get(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) throws XMLStreamException {
+        boundPrefixes.put(uri, prefix);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        boundPrefixes.put(uri, "");
+    }
+
+    /**
+     * @param preserveCData
+     *            true to always start CDATA sections with the brackets, so that what's written
+     *            reads back as the same CDATA nodes. The Transformer (and so the default) writes a
+     *            leading supplementary character ahead of the brackets, where it reads back as
+     *            text.
+     */
+    public void setPreserveCData(boolean preserveCData) {
+        this.preserveCData = preserveCData;
+    }
+
+    /**
+     * Sets bindings that are to be taken as already in scope, e.g. those of the ancestors of a
+     * fragment being written on its own. Namespaces bound by <code>context</code> are not declared
+     * when elements and attributes use them, but explicit declarations (via
+     * {@link #writeNamespace(String, String)} and {@link #writeDefaultNamespace(String)}) of
+     * prefixes not yet declared in the output are always written. Must be called before the first
+     * element is started.
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) throws XMLStreamException {
+        if (depth > 0)
+            throw new XMLStreamException("The namespace context must be set before writing elements");
+        this.rootContext = context;
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(String prefix) {
+                return inScope(prefix);
+            }
+
+            @Override
+            public String getPrefix(String namespaceURI) {
+                try {
+                    return FormattingXMLStreamWriter.this.getPrefix(namespaceURI);
+                } catch (XMLStreamException e) {
+                    return null;
+                }
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(String namespaceURI) {
+                String prefix = getPrefix(namespaceURI);
+                if (prefix == null)
+                    return Collections.<String> emptyList().iterator();
+                return Collections.singletonList(prefix).iterator();
+            }
+        };
+    }
+
+    @Override
+    public Object getProperty(String name) throws IllegalArgumentException {
+        throw new IllegalArgumentException(name);
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    /*
+     * Start tags
+     */
+
+    private void endEmptyElement() throws XMLStreamException {
+        if (emptyElement) {
+            emptyElement = false;
+            writeEndElement();
+        }
+    }
+
+    private void closeStartTag() throws XMLStreamException {
+        writeAttributes(resolveAttributes());
+        write('>');
+        startTagOpen = false;
+    }
+
+    /*
+     * Orders the attributes and namespace declarations as the Transformer does, declaring any
+     * namespaces that aren't in scope along the way.
+     */
+    private List<String[]> resolveAttributes() {
+        List<String[]> resolved = new ArrayList<String[]>(pendingNamespaces.size()
+                + pendingAttributes.size() + 1);
+        Collections.sort(pendingNamespaces, BY_NAME);
+        for (String[] ns : pendingNamespaces)
+            declare(ns[2], ns[1], true, resolved);
+        Collections.sort(pendingAttributes, BY_NAME);
+        int generated = 0;
+        for (String[] attr : pendingAttributes) {
+            String uri = attr[3];
+            if (uri.length() > 0) {
+                String prefix = attr[2].length() > 0 ? attr[2] : "ns" + generated++;
+                declare(prefix, uri, false, resolved);
+                put(resolved, new String[] { prefix + ":" + attr[4], attr[1] });
+            } else
+                put(resolved, new String[] { attr[0], attr[1] });
+        }
+        declare(elementURI.length() > 0 ? elementPrefix : "", elementURI, false, resolved);
+        pendingNamespaces.clear();
+        pendingAttributes.clear();
+        return resolved;
+    }
+
+    private void declare(String prefix, String uri, boolean explicit, List<String[]> attributes) {
+        if (prefix.startsWith(XMLConstants.XML_NS_PREFIX))
+            return;
+        // what a root context doesn't know may still be in scope, so explicit declarations stay
+        boolean keep = explicit && rootContext != null && !declaredPrefixes.contains(prefix);
+        if (!keep && uri.equals(inScope(prefix)))
+            return;
+        push(prefix, uri, depth);
+        if (prefix.length() == 0)
+            put(attributes, new String[] { "xmlns", uri });
+        else if (uri.length() > 0)
+            put(attributes, new String[] { "xmlns:" + prefix, uri });
+    }
+
+    private String inScope(String prefix) {
+        if (rootContext != null && !declaredPrefixes.contains(prefix)) {
+            String uri = rootContext.getNamespaceURI(prefix);
+            if (uri != null && uri.length() > 0)
+                return uri;
+            return prefix.length() == 0 ? "" : null;
+        }
+        Deque<String> uris = namespaces.get(prefix);
+        return uris == null || uris.isEmpty() ? null : uris.peek();
+    }
+
+    private void push(String prefix, String uri, int atDepth) {
+        Deque<String> uris = namespaces.get(prefix);
+        if (uris == null) {
+            uris = new ArrayDeque<String>();
+            namespaces.put(prefix, uris);
+        }
+        uris.push(uri);
+        declaredPrefixes.push(prefix);
+        declaredDepths.push(atDepth);
+    }
+
+    private void popNamespaces() {
+        while (!declaredDepths.isEmpty() && declaredDepths.peek() >= depth) {
+            declaredDepths.pop();
+            namespaces.get(declaredPrefixes.pop()).pop();
+        }
+    }
+
+    private void writeAttributes(List<String[]> attributes) throws XMLStreamException {
+        for (String[] attr : attributes) {
+            write(' ');
+            write(attr[0]);
+            write("=\"");
+            writeAttributeValue(attr[1]);
+            write('"');
+        }
+    }
+
+    /*
+     * Adds name/value, replacing the value of an existing entry with the same name
+     */
+    private static void put(List<String[]> list, String[] entry) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i)[0].equals(entry[0])) {
+                list.set(i, entry);
+                return;
+            }
+        }
+        list.add(entry);
+    }
+
+    /*
+     * Formatting
+     */
+
+    private boolean shouldFormat() {
+        return indent && !preserveSpace;
+    }
+
+    private boolean shouldIndent() {
+        return shouldFormat() && depth > 0;
+    }
+
+    private boolean shouldIndentText() {
+        return shouldIndent() && childNodeNum > 1;
+    }
+
+    private void indent(int level) throws XMLStreamException {
+        if (startNewLine)
+            write(lineSep);
+        int n = level * INDENT_AMOUNT;
+        while (n > 0) {
+            int len = Math.min(n, SPACES.length());
+            write(SPACES, 0, len);
+            n -= len;
+        }
+    }
+
+    /*
+     * Text is held back until the next node so that it can be indented (or not) depending on what
+     * follows.
+     */
+    private void flushText(boolean isText) throws XMLStreamException {
+        if (shouldFormat() && !bufferedText.isEmpty()) {
+            if (!isText)
+                childNodeNum++;
+            boolean skipNewlines = false;
+            if (shouldIndentText()) {
+                indent(depth);
+                startNewLine = true;
+                skipNewlines = true;
+            }
+            for (String text : bufferedText) {
+                int start = 0;
+                if (skipNewlines) {
+                    while (start < text.length() && text.charAt(start) == '\n')
+                        start++;
+                    if (start == text.length())
+                        continue;
+                    skipNewlines = false;
+                }
+                writeText(text, start);
+            }
+        }
+        bufferedText.clear();
+    }
+
+    private void closeCDATA() throws XMLStreamException {
+        write(CDATA_CLOSE);
+        cdataOpen = false;
+    }
+
+    /*
+     * Escaping
+     */
+
+    // true if c can be written as-is in UTF-8; false for control characters and surrogates
+    private static boolean isRaw(char c) {
+        if (c < 127)
+            return c >= 0x20 || c == '\n' || c == '\r' || c == '\t';
+        return !Character.isSurrogate(c);
+    }
+
+    private static boolean isControl(char c) {
+        return (c >= 0x01 && c <= 0x1F && c != '\t' && c != '\n' && c != '\r')
+                || (c >= 0x7F && c <= 0x9F);
+    }
+
+    private void writeText(String text, int start) throws XMLStreamException {
+        int end = text.length();
+        int clean = start;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            String replacement;
+            if (c == '\n')
+                replacement = lineSep;
+            else if (c == '<')
+                replacement = "&lt;";
+            else if (c == '>')
+                replacement = "&gt;";
+            else if (c == '&')
+                replacement = "&amp;";
+            else if (c == '\r' || c == 0 || isControl(c) || Character.isLowSurrogate(c))
+                replacement = "&#" + (int) c + ";";
+            else if (Character.isHighSurrogate(c)) {
+                if (i + 1 >= end || !Character.isLowSurrogate(text.charAt(i + 1)))
+                    throw new XMLStreamException("Invalid UTF-16 surrogate in text");
+                replacement = "&#" + Character.toCodePoint(c, text.charAt(i + 1)) + ";";
+                write(text, clean, i - clean);
+                write(replacement);
+                clean = ++i + 1;
+                continue;
+            } else
+                continue;
+            write(text, clean, i - clean);
+            write(replacement);
+            clean = i + 1;
+        }
+        write(text, clean, end - clean);
+        isPrevText = true;
+    }
+
+    private void writeAttributeValue(String value) throws XMLStreamException {
+        int end = value.length();
+        int clean = 0;
+        for (int i = 0; i < end; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c == '"')
+                replacement = "&quot;";
+            else if (c == '&')
+                replacement = "&amp;";
+            else if (c == '<')
+                replacement = "&lt;";
+            else if (c == '>')
+                replacement = "&gt;";
+            else if (c == '\n' || c == '\r' || c == '\t' || c < 0x20 || Character.isLowSurrogate(c))
+                replacement = "&#" + (int) c + ";";
+            else if (Character.isHighSurrogate(c)) {
+                if (i + 1 >= end || !Character.isLowSurrogate(value.charAt(i + 1)))
+                    throw new XMLStreamException("Invalid UTF-16 surrogate in attribute");
+                replacement = "&#" + Character.toCodePoint(c, value.charAt(i + 1)) + ";";
+                write(value, clean, i - clean);
+                write(replacement);
+                clean = ++i + 1;
+                continue;
+            } else
+                continue;
+            write(value, clean, i - clean);
+            write(replacement);
+            clean = i + 1;
+        }
+        write(value, clean, end - clean);
+    }
+
+    private void writeCharRef(char c) throws XMLStreamException {
+        if (cdataOpen)
+            closeCDATA();
+        write("&#");
+        write(Integer.toString(c));
+        write(';');
+    }
+
+    private static String qName(String prefix, String localName) {
+        if (prefix == null || prefix.length() == 0)
+            return localName;
+        return prefix + ":" + localName;
+    }
+
+    /*
+     * Output
+     */
+
+    private void write(String s) throws XMLStreamException {
+        try {
+            out.write(s);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void write(String s, int off, int len) throws XMLStreamException {
+        if (len == 0)
+            return;
+        try {
+            out.write(s, off, len);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+
+    private void write(char c) throws XMLStreamException {
+        try {
+            out.write(c);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
+    }
+}
@@ -1,13 +1,13 @@
 /**
- * IDGen.java 
- * 
+ * IDGen.java
+ *
  * Copyright 2011 Jon Stroop
- * 
+ *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
  * in compliance with the License. You may obtain a copy of the License at
- * 
+ *
  * http://www.apache.org/licenses/LICENSE-2.0
- * 
+ *
  * Unless required by applicable law or agreed to in writing, software distributed under the License
  * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
  * or implied. See the License for the specific language governing permissions and limitations under
@@ -15,87 +15,130 @@
  */
 package com.anearalone.utils;
 
-import java.util.HashSet;
 import java.util.Random;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A simple class for generating random alphanumeric Strings. A given instance will not produce the
- * same string twice, and the first character will always be a letter (thus suitable for XML IDs).
- * 
- * This will only scale so far, since we're using {@link HashSet} to keep track of what's been
- * generated. It works fine for several hundred before it starts to slow.
- * 
+ * A simple class for generating random-looking alphanumeric Strings. A given instance will not
+ * produce the same string twice (until {@link #reset()}), and the first character will always be a
+ * letter (thus suitable for XML IDs).
+ * <p>
+ * Rather than remembering what has been generated, each instance numbers its IDs with a counter
+ * and scrambles the numbers with a random permutation of all the possible IDs of the given length.
+ * Minting is constant-time, memory use doesn't grow, and an instance may be shared between threads.
+ * Once every ID of the given length has been minted, {@link #mint()} throws an
+ * {@link IllegalStateException}; see {@link #getCapacity()}.
+ *
  * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
  * @since Aug 22, 2010
  */
 public class IDGen {
-    private static String[] alphaNums;
-    private static Random random;
-    private int length;
-    private Set<String> collection;
+    private static final char[] ALPHA_NUMS = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    // keeps capacity + capacity from overflowing in mulMod
+    private static final long MAX_CAPACITY = 1L << 62;
+    private static final long MAX_SAFE_FACTOR = 3037000499L; // floor(sqrt(Long.MAX_VALUE))
+
+    private final int length;
+    private final long capacity;
+    private final long multiplier;
+    private final long offset;
+    private final char[] padding;
+    private final AtomicLong counter = new AtomicLong();
 
     /**
      * Create a new ID generator.
-     * 
+     *
      * @param len
      *            The length of the IDs to be produced (e.g. 5 could result in "f5436")
      */
     public IDGen(int len) {
-        alphaNums = new String[36];
-        random = new Random();
-        this.collection = new HashSet<String>();
+        if (len < 1)
+            throw new IllegalArgumentException("IDs must be at least one character long");
         this.length = len;
-        buildAlphaNumArray();
+
+        // 26 * 36^(len-1), or as much of it as fits
+        long cap = 26;
+        int varying = 1;
+        for (; varying < len && cap <= MAX_CAPACITY / 36; varying++)
+            cap *= 36;
+        this.capacity = cap;
+
+        // characters beyond what fits are the same for every ID from this instance
+        Random random = new Random();
+        this.padding = new char[len - varying];
+        for (int c = 0; c < padding.length; c++)
+            padding[c] = ALPHA_NUMS[random.nextInt(36)];
+
+        // x -> (multiplier * x + offset) % capacity is a permutation when gcd(multiplier, capacity) == 1
+        long m;
+        do {
+            m = (random.nextLong() >>> 1) % capacity;
+        } while (gcd(m, capacity) != 1);
+        this.multiplier = m;
+        this.offset = (random.nextLong() >>> 1) % capacity;
     }
 
-    /*
-     * @see http://xkcd.com/530/
+    /**
+     * @return a random-looking string of the length given to the constructor.
+     * @throws IllegalStateException
+     *             when every ID has been minted
      */
-    private static void buildAlphaNumArray() {
-        int c = 0;
-        int codepoint = 97;
-        // a-z
-        while (codepoint <= 122) {
-            alphaNums[c] = Character.toString((char) codepoint);
-            c++;
-            codepoint++;
+    public String mint() {
+        long n = counter.getAndIncrement();
+        if (n >= capacity) {
+            counter.set(capacity); // don't let it wrap around
+            throw new IllegalStateException("All " + capacity + " IDs of length " + length
+                    + " have been minted");
         }
-        // 0-9
-        codepoint = 48;
-        while (codepoint <= 57) {
-            alphaNums[c] = Character.toString((char) codepoint);
-            c++;
-            codepoint++;
+        long x = (mulMod(multiplier, n, capacity) + offset) % capacity;
+
+        char[] chars = new char[length];
+        // always a letter in the first position
+        chars[0] = ALPHA_NUMS[(int) (x % 26)];
+        x /= 26;
+        for (int c = length - 1; c > padding.length; c--) {
+            chars[c] = ALPHA_NUMS[(int) (x % 36)];
+            x /= 36;
         }
+        System.arraycopy(padding, 0, chars, 1, padding.length);
+        return new String(chars);
     }
 
     /**
-     * @param length
-     *            the length of the string to be generated.
-     * @return a random string of the specied length.
+     * Starts over; IDs minted before the reset may be minted again.
      */
-    public String mint() {
-        String str = "";
-        boolean added;
-        do {
-            for (int c = 0; c < this.length; c++) {
-                if (c == 0) // always a letter in the first position
-                    str = alphaNums[random.nextInt(26)];
-                else
-                    str = str + alphaNums[random.nextInt(36)];
-            }
-            added = this.collection.add(str);
-        } while (!added); // keep doing until we get a unique string
-
-        return str;
+    public void reset() {
+        this.counter.set(0);
     }
 
     /**
-     * Empties the set of generated IDs.
+     * @return how many unique IDs this instance can mint
      */
-    public void reset() {
-        this.collection.clear();
+    public long getCapacity() {
+        return capacity;
+    }
+
+    private static long mulMod(long a, long b, long mod) {
+        if (a <= MAX_SAFE_FACTOR && b <= MAX_SAFE_FACTOR)
+            return (a * b) % mod;
+        long result = 0;
+        a %= mod;
+        while (b > 0) {
+            if ((b & 1) == 1)
+                result = (result + a) % mod;
+            a = (a + a) % mod;
+            b >>= 1;
+        }
+        return result;
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
     }
 
 }
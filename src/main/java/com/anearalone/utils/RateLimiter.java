@@ -0,0 +1,64 @@
+/**
+ * RateLimiter.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate of something (e.g. bytes read) shared between threads. Each call to
+ * {@link #acquire(long)} reserves the next slot in time for its permits and waits until that slot
+ * comes, so that callers together never go faster than the rate, however many of them there are.
+ * Time that isn't used isn't saved up, beyond one second's worth.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class RateLimiter {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private final double nanosPerPermit;
+    // when the permits reserved so far will have been used
+    private long next = System.nanoTime();
+
+    /**
+     * @param permitsPerSecond
+     *            must be greater than 0
+     */
+    public RateLimiter(long permitsPerSecond) {
+        if (permitsPerSecond <= 0)
+            throw new IllegalArgumentException("permitsPerSecond must be greater than 0");
+        this.nanosPerPermit = (double) SECOND / permitsPerSecond;
+    }
+
+    /**
+     * Waits until <code>permits</code> can be used without going over the rate.
+     *
+     * @param permits
+     * @throws InterruptedException
+     */
+    public void acquire(long permits) throws InterruptedException {
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            // a pause saves up at most a second's worth of permits
+            if (next < now - SECOND)
+                next = now - SECOND;
+            next += (long) (permits * nanosPerPermit);
+            wait = next - now;
+        }
+        if (wait > 0)
+            TimeUnit.NANOSECONDS.sleep(wait);
+    }
+}
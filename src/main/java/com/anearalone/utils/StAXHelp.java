@@ -0,0 +1,289 @@
+/**
+ * StAXHelp.java
+ *
+ * Copyright 2011 Jon Stroop
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.anearalone.utils;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * Pull-parser counterparts to {@link DOMHelp}. Unless noted otherwise, every method expects the
+ * reader to be positioned on a <code>START_ELEMENT</code> and leaves it on the matching
+ * <code>END_ELEMENT</code>.
+ *
+ * @author <a href="mailto:jpstroop@gmail.com">Jon Stroop</a>
+ * @since Oct 16, 2026
+ */
+public class StAXHelp {
+
+    private static final String XLINK_NS = "http://www.w3.org/1999/xlink";
+
+    /**
+     * Advances to the next child element of the current element. Text, comments and processing
+     * instructions are skipped. Equiv. to iterating over {@link DOMHelp#getChildElements(Element)}.
+     *
+     * @param r
+     * @return true if the reader is now on a child <code>START_ELEMENT</code>, false if it is on
+     *         the parent's <code>END_ELEMENT</code>
+     * @throws XMLStreamException
+     */
+    public static boolean nextChildElement(XMLStreamReader r) throws XMLStreamException {
+        while (true) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                return true;
+            if (event == XMLStreamConstants.END_ELEMENT)
+                return false;
+        }
+    }
+
+    /**
+     * Skips the current element and all of its descendants without inspecting them.
+     *
+     * @param r
+     * @throws XMLStreamException
+     */
+    public static void skipElement(XMLStreamReader r) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT)
+                depth++;
+            else if (event == XMLStreamConstants.END_ELEMENT)
+                depth--;
+        }
+    }
+
+    /**
+     * Gets the name of the attribute at <code>index</code> as the METS classes expect to see it:
+     * unqualified attributes by their local name, XLink attributes as <code>xlink:</code> + local
+     * name regardless of the prefix used in the document, and anything else by its qualified name.
+     *
+     * @param r
+     * @param index
+     * @return
+     */
+    public static String getAttributeName(XMLStreamReader r, int index) {
+        String ns = r.getAttributeNamespace(index);
+        String localName = r.getAttributeLocalName(index);
+        if (ns == null || ns.length() == 0)
+            return localName;
+        if (ns.equals(XLINK_NS))
+            return "xlink:" + localName;
+        String prefix = r.getAttributePrefix(index);
+        if (prefix == null || prefix.length() == 0)
+            return localName;
+        return prefix + ":" + localName;
+    }
+
+    /**
+     * Copies the current element and its descendants into a new {@link Element} owned by
+     * <code>doc</code>. The element is not appended to anything.
+     *
+     * @param r
+     * @param doc
+     * @return
+     * @throws XMLStreamException
+     */
+    public static Element readElement(XMLStreamReader r, Document doc) throws XMLStreamException {
+        Element root = createElement(r, doc);
+        Node current = root;
+        int depth = 1;
+        while (depth > 0) {
+            switch (r.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                Element child = createElement(r, doc);
+                current.appendChild(child);
+                current = child;
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                current = current.getParentNode();
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                current.appendChild(doc.createTextNode(r.getText()));
+                break;
+            case XMLStreamConstants.CDATA:
+                current.appendChild(doc.createCDATASection(r.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                current.appendChild(doc.createComment(r.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                current.appendChild(doc.createProcessingInstruction(r.getPITarget(), r.getPIData()));
+                break;
+            default:
+                break;
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Writes a DOM node and its descendants, the reverse of
+     * {@link #readElement(XMLStreamReader, Document)}. Namespace declarations are written as they
+     * appear on the DOM; any others that are needed are left to the writer. Unlike the other
+     * methods here, this one has nothing to do with a reader's position.
+     *
+     * @param w
+     * @param n
+     * @throws XMLStreamException
+     */
+    public static void writeNode(XMLStreamWriter w, Node n) throws XMLStreamException {
+        switch (n.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            String uri = n.getNamespaceURI();
+            String localName = n.getLocalName() == null ? n.getNodeName() : n.getLocalName();
+            w.writeStartElement(n.getPrefix() == null ? "" : n.getPrefix(), localName, uri == null ? "" : uri);
+            NamedNodeMap attrs = n.getAttributes();
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Attr attr = (Attr) attrs.item(i);
+                String name = attr.getName();
+                if (name.equals("xmlns"))
+                    w.writeDefaultNamespace(attr.getValue());
+                else if (name.startsWith("xmlns:"))
+                    w.writeNamespace(name.substring(6), attr.getValue());
+                else if (attr.getNamespaceURI() != null) {
+                    String prefix = attr.getPrefix() == null ? "" : attr.getPrefix();
+                    w.writeAttribute(prefix, attr.getNamespaceURI(), attr.getLocalName(), attr.getValue());
+                } else
+                    w.writeAttribute(name, attr.getValue());
+            }
+            for (Node child = n.getFirstChild(); child != null; child = child.getNextSibling())
+                writeNode(w, child);
+            w.writeEndElement();
+            break;
+        case Node.TEXT_NODE:
+            w.writeCharacters(n.getNodeValue());
+            break;
+        case Node.CDATA_SECTION_NODE:
+            w.writeCData(n.getNodeValue());
+            break;
+        case Node.COMMENT_NODE:
+            w.writeComment(n.getNodeValue());
+            break;
+        case Node.PROCESSING_INSTRUCTION_NODE:
+            ProcessingInstruction pi = (ProcessingInstruction) n;
+            w.writeProcessingInstruction(pi.getTarget(), pi.getData());
+            break;
+        default:
+            for (Node child = n.getFirstChild(); child != null; child = child.getNextSibling())
+                writeNode(w, child);
+            break;
+        }
+    }
+
+    /**
+     * Copies the current element and its descendants to <code>w</code>, making the same calls that
+     * {@link #writeNode(XMLStreamWriter, Node)} would make for the result of
+     * {@link #readElement(XMLStreamReader, Document)}, but without building anything.
+     *
+     * @param r
+     * @param w
+     * @throws XMLStreamException
+     */
+    public static void copyElement(XMLStreamReader r, XMLStreamWriter w) throws XMLStreamException {
+        writeStartElement(r, w);
+        int depth = 1;
+        while (depth > 0) {
+            switch (r.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                writeStartElement(r, w);
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                w.writeEndElement();
+                depth--;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                w.writeCharacters(r.getText());
+                break;
+            case XMLStreamConstants.CDATA:
+                w.writeCData(r.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                w.writeComment(r.getText());
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                w.writeProcessingInstruction(r.getPITarget(), r.getPIData());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private static void writeStartElement(XMLStreamReader r, XMLStreamWriter w) throws XMLStreamException {
+        String uri = r.getNamespaceURI();
+        w.writeStartElement(nullToEmpty(r.getPrefix()), r.getLocalName(), nullToEmpty(uri));
+        for (int i = 0; i < r.getNamespaceCount(); i++) {
+            String prefix = r.getNamespacePrefix(i);
+            if (prefix == null || prefix.length() == 0)
+                w.writeDefaultNamespace(nullToEmpty(r.getNamespaceURI(i)));
+            else
+                w.writeNamespace(prefix, nullToEmpty(r.getNamespaceURI(i)));
+        }
+        for (int i = 0; i < r.getAttributeCount(); i++) {
+            String ns = r.getAttributeNamespace(i);
+            if (ns == null || ns.length() == 0)
+                w.writeAttribute(r.getAttributeLocalName(i), r.getAttributeValue(i));
+            else
+                w.writeAttribute(nullToEmpty(r.getAttributePrefix(i)), ns, r.getAttributeLocalName(i),
+                        r.getAttributeValue(i));
+        }
+    }
+
+    private static Element createElement(XMLStreamReader r, Document doc) {
+        Element e = doc.createElementNS(emptyToNull(r.getNamespaceURI()), qName(r.getPrefix(), r.getLocalName()));
+        for (int i = 0; i < r.getNamespaceCount(); i++) {
+            String prefix = r.getNamespacePrefix(i);
+            String qname = (prefix == null || prefix.length() == 0) ? "xmlns" : "xmlns:" + prefix;
+            String uri = r.getNamespaceURI(i);
+            e.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, qname, uri == null ? "" : uri);
+        }
+        for (int i = 0; i < r.getAttributeCount(); i++) {
+            String qname = qName(r.getAttributePrefix(i), r.getAttributeLocalName(i));
+            e.setAttributeNS(emptyToNull(r.getAttributeNamespace(i)), qname, r.getAttributeValue(i));
+        }
+        return e;
+    }
+
+    private static String qName(String prefix, String localName) {
+        if (prefix == null || prefix.length() == 0)
+            return localName;
+        return prefix + ":" + localName;
+    }
+
+    private static String emptyToNull(String s) {
+        return (s == null || s.length() == 0) ? null : s;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}